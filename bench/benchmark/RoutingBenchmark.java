@@ -0,0 +1,128 @@
+package benchmark;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import geography.GeographicPoint;
+import roadgraph.MapGraph;
+import util.GraphLoader;
+
+/**
+ * Benchmarks the route searches of {@link MapGraph} on each map of
+ *  {@code data/maps}.<br>
+ * Every invocation routes the next of a fixed list of origin-destination
+ *  pairs, drawn with a seeded random from the map's vertices, so all runs
+ *  search the same routes. Throughput gives ops/s and sample time gives the
+ *  latency percentiles; run with {@code -prof gc} (as {@link #main(String[])}
+ *  does) for the allocation rate.
+ *
+ * @author Miri Yehezkel
+ *
+ */
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class RoutingBenchmark {
+	/** Directory of map files, relative to the working directory */
+	static final String MAP_DIR = System.getProperty("mapDir", "data/maps");
+
+	/** Seed of origin-destination pairs */
+	static final long SEED = 42;
+
+	/** Number of origin-destination pairs */
+	static final int NUM_PAIRS = 256;
+
+	@Param({ "hollywood_small.map", "newbury_verysmall.map", "newbury_small.map", "ucsd.map",
+			"utc.map", "san_diego.map", "new_york.map", "hollywood_large.map", "TLV.map" })
+	public String mapFile;
+
+	private MapGraph graph;
+
+	private GeographicPoint[] starts;
+
+	private GeographicPoint[] goals;
+
+	/** Index of next pair */
+	private int next;
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		graph = new MapGraph();
+		GraphLoader.loadRoadMap(MAP_DIR + "/" + mapFile, graph);
+		graph.freeze();
+
+		//sort vertices so pairs don't depend on hash order
+		List<GeographicPoint> vertices = new ArrayList<>(graph.getVertices());
+		vertices.sort(Comparator.comparingDouble(GeographicPoint::getX)
+				.thenComparingDouble(GeographicPoint::getY));
+		Random random = new Random(SEED);
+		starts = new GeographicPoint[NUM_PAIRS];
+		goals = new GeographicPoint[NUM_PAIRS];
+		for (int i = 0; i < NUM_PAIRS; i++) {
+			starts[i] = vertices.get(random.nextInt(vertices.size()));
+			goals[i] = vertices.get(random.nextInt(vertices.size()));
+		}
+	}
+
+	private int nextPair() {
+		int i = next;
+		next = i + 1 == NUM_PAIRS ? 0 : i + 1;
+		return i;
+	}
+
+	@Benchmark
+	public List<GeographicPoint> bfs() {
+		int i = nextPair();
+		return graph.bfs(starts[i], goals[i]);
+	}
+
+	@Benchmark
+	public List<GeographicPoint> dijkstra() {
+		int i = nextPair();
+		return graph.dijkstra(starts[i], goals[i]);
+	}
+
+	@Benchmark
+	public List<GeographicPoint> aStarSearch() {
+		int i = nextPair();
+		return graph.aStarSearch(starts[i], goals[i]);
+	}
+
+	/**
+	 * Runs the benchmarks of this class with the GC profiler.
+	 * @param args Unused
+	 * @throws RunnerException If a benchmark fails.
+	 */
+	public static void main(String[] args) throws RunnerException {
+		Options options = new OptionsBuilder()
+				.include(RoutingBenchmark.class.getSimpleName())
+				.addProfiler(GCProfiler.class)
+				.build();
+		new Runner(options).run();
+	}
+
+}
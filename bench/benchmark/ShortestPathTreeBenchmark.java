@@ -0,0 +1,115 @@
+package benchmark;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import geography.GeographicPoint;
+import roadgraph.MapGraph;
+import roadgraph.ShortestPathTree;
+import util.GraphLoader;
+
+/**
+ * Benchmarks the parallel delta-stepping shortest-path tree of
+ *  {@link MapGraph} on 1, 2, 4 and 8 threads, on the larger maps of
+ *  {@code data/maps}. The speedup is the time on 1 thread over the time on
+ *  more threads; a bucket width of 0 selects the default width.<br>
+ * Every invocation computes the tree of the next of a fixed list of sources,
+ *  drawn with a seeded random from the map's vertices.
+ *
+ * @author Miri Yehezkel
+ *
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class ShortestPathTreeBenchmark {
+	/** Number of sources */
+	static final int NUM_SOURCES = 64;
+
+	@Param({ "new_york.map", "hollywood_large.map", "TLV.map" })
+	public String mapFile;
+
+	@Param({ "1", "2", "4", "8" })
+	public int threads;
+
+	/** Width of a bucket in km, 0 for the default width */
+	@Param({ "0" })
+	public double delta;
+
+	private MapGraph graph;
+
+	private ForkJoinPool pool;
+
+	private GeographicPoint[] sources;
+
+	/** Index of next source */
+	private int next;
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		graph = new MapGraph();
+		GraphLoader.loadRoadMap(RoutingBenchmark.MAP_DIR + "/" + mapFile, graph);
+		graph.freeze();
+		pool = new ForkJoinPool(threads);
+
+		//sort vertices so sources don't depend on hash order
+		List<GeographicPoint> vertices = new ArrayList<>(graph.getVertices());
+		vertices.sort(Comparator.comparingDouble(GeographicPoint::getX)
+				.thenComparingDouble(GeographicPoint::getY));
+		Random random = new Random(RoutingBenchmark.SEED);
+		sources = new GeographicPoint[NUM_SOURCES];
+		for (int i = 0; i < NUM_SOURCES; i++)
+			sources[i] = vertices.get(random.nextInt(vertices.size()));
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		pool.shutdown();
+	}
+
+	@Benchmark
+	public ShortestPathTree shortestPathTree() {
+		GeographicPoint source = sources[next];
+		next = next + 1 == NUM_SOURCES ? 0 : next + 1;
+		return delta > 0 ? graph.shortestPathTree(source, delta, pool)
+				: graph.shortestPathTree(source, pool);
+	}
+
+	/**
+	 * Runs the benchmarks of this class.
+	 * @param args Unused
+	 * @throws RunnerException If a benchmark fails.
+	 */
+	public static void main(String[] args) throws RunnerException {
+		Options options = new OptionsBuilder()
+				.include(ShortestPathTreeBenchmark.class.getSimpleName())
+				.build();
+		new Runner(options).run();
+	}
+
+}
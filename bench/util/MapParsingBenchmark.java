@@ -0,0 +1,141 @@
+package util;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import geography.GeographicPoint;
+
+/**
+ * Benchmarks parsing the lines of a map file, with the regular expression
+ *  {@link GraphLoader} used to split each line and with {@link MapFileParser}
+ *  over the memory-mapped file. It lives in {@code util} since the parser is
+ *  package-private.<br>
+ * The throughput in MB/s is the file size printed by {@link #setUp()}
+ *  times ops/s.
+ *
+ * @author Miri Yehezkel
+ *
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class MapParsingBenchmark {
+	/** Directory of map files, relative to the working directory */
+	static final String MAP_DIR = System.getProperty("mapDir", "data/maps");
+
+	@Param({ "hollywood_large.map", "TLV.map" })
+	public String mapFile;
+
+	private String filename;
+
+	private MappedByteBuffer buf;
+
+	/** Lines parsed from the mapped bytes, reused between invocations */
+	private final RoadLines lines = new RoadLines();
+
+	@Setup(Level.Trial)
+	public void setUp() throws IOException {
+		filename = MAP_DIR + "/" + mapFile;
+		buf = MapFileParser.map(filename);
+		System.out.println(mapFile + ": " + buf.limit() / 1e6 + " MB");
+	}
+
+	@Benchmark
+	public void regex(Blackhole blackhole) throws IOException {
+		try (BufferedReader reader = new BufferedReader(new FileReader(filename))) {
+			String nextLine;
+			while ((nextLine = reader.readLine()) != null)
+				blackhole.consume(splitInputString(nextLine));
+		}
+	}
+
+	@Benchmark
+	public RoadLines mappedBytes() throws IOException {
+		lines.clear();
+		new MapFileParser(buf, 0, buf.limit(), Charset.defaultCharset()).parseAll(lines);
+		return lines;
+	}
+
+	/**
+	 * Splits a line of a map file with a regular expression, the way
+	 *  {@link GraphLoader} did before {@link MapFileParser}.
+	 * @param input A line of a map file
+	 * @return The points, road name and road type of the line.
+	 */
+	static RoadLine splitInputString(String input) {
+		ArrayList<String> tokens = new ArrayList<String>();
+		Pattern tokSplitter = Pattern.compile("[^\\s\"']+|\"([^\"]*)\"");
+		Matcher m = tokSplitter.matcher(input);
+
+		while (m.find()) {
+			if (m.group(1) != null)
+				tokens.add(m.group(1));
+			else
+				tokens.add(m.group());
+		}
+
+		GeographicPoint p1 = new GeographicPoint(Double.parseDouble(tokens.get(0)),
+				Double.parseDouble(tokens.get(1)));
+		GeographicPoint p2 = new GeographicPoint(Double.parseDouble(tokens.get(2)),
+				Double.parseDouble(tokens.get(3)));
+		return new RoadLine(p1, p2, tokens.get(4), tokens.get(5));
+	}
+
+	/**
+	 * A line of a map file split by {@link #splitInputString(String)}.
+	 */
+	static final class RoadLine {
+		final GeographicPoint point1;
+		final GeographicPoint point2;
+		final String roadName;
+		final String roadType;
+
+		RoadLine(GeographicPoint point1, GeographicPoint point2, String roadName, String roadType) {
+			this.point1 = point1;
+			this.point2 = point2;
+			this.roadName = roadName;
+			this.roadType = roadType;
+		}
+	}
+
+	/**
+	 * Runs the benchmarks of this class.
+	 * @param args Unused
+	 * @throws RunnerException If a benchmark fails.
+	 */
+	public static void main(String[] args) throws RunnerException {
+		Options options = new OptionsBuilder()
+				.include(MapParsingBenchmark.class.getSimpleName())
+				.build();
+		new Runner(options).run();
+	}
+
+}
@@ -1,10 +1,13 @@
 package application;
 
+import java.io.File;
+import java.io.IOException;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Set;
 
 import geography.GeographicPoint;
+import roadgraph.GraphFile;
 import util.GraphLoader;
 
 /**
@@ -15,6 +18,9 @@ import util.GraphLoader;
  *
  */
 public class DataSet {
+	/** Suffix of the binary graph file cached next to each .map file */
+	private static final String GRAPH_FILE_SUFFIX = ".bin";
+
 	String filePath;
 	roadgraph.MapGraph graph;
 	Set<GeographicPoint> intersections;
@@ -59,11 +65,36 @@ public class DataSet {
     	return this.roads;
     }
 
+    /**
+     * Loads the graph from the binary cache of the .map file if it is up to
+     * date, otherwise parses the .map file and writes the cache for next time.
+     */
     public void initializeGraph() {
+        File mapFile = new File(filePath);
+        File cacheFile = new File(filePath + GRAPH_FILE_SUFFIX);
+        if (cacheFile.isFile() && cacheFile.lastModified() >= mapFile.lastModified()) {
+            graph = new roadgraph.MapGraph();
+            roads = new HashMap<>();
+            intersections = new HashSet<>();
+            try {
+                GraphFile.load(cacheFile.getPath(), graph, roads, intersections);
+                graph.freeze();
+                return;
+            } catch (IOException e) {
+                System.err.println("Problem loading graph file " + cacheFile + ": " + e.getMessage());
+            }
+        }
+
         graph = new roadgraph.MapGraph();
         roads = new HashMap<>();
         intersections = new HashSet<>();
     	GraphLoader.loadRoadMap(filePath, graph, roads, intersections);
+    	graph.freeze();
+    	try {
+    		GraphFile.write(cacheFile.getPath(), graph, roads);
+    	} catch (IOException e) {
+    		System.err.println("Problem writing graph file " + cacheFile + ": " + e.getMessage());
+    	}
     }
 
 	public String getFilePath() {
@@ -73,7 +73,8 @@ public class RouteController {
 	private void setupDisplayButtons() {
 		displayButton.setOnAction(e -> {
             if(startLabel.getItem() != null && endLabel.getItem() != null) {
-        			routeService.displayRoute(startLabel.getItem(), endLabel.getItem(), selectedToggle);
+        			routeService.displayRoute(startLabel.getItem(), endLabel.getItem(), selectedToggle,
+        					RouteService.MAX_ALTERNATIVES);
             }
             else {
             	MapApp.showErrorAlert("Route Display Error", "Make sure to choose points for both start and destination.");
@@ -18,13 +18,21 @@ import gmapsfx.javascript.object.LatLong;
 import gmapsfx.javascript.object.LatLongBounds;
 import gmapsfx.javascript.object.MVCArray;
 import gmapsfx.shapes.Polyline;
+import gmapsfx.shapes.PolylineOptions;
 
 public class RouteService {
+	/** Maximal number of alternative routes displayed */
+	public static final int MAX_ALTERNATIVES = 3;
+
+	/** Colors of the alternative routes, in order */
+	private static final String[] ALTERNATIVE_COLORS = { "#1E88E5", "#43A047", "#FB8C00" };
+
 	private GoogleMap map;
 
     // static variable
     private MarkerManager markerManager;
     private Polyline routeLine;
+    private List<Polyline> alternativeLines = new ArrayList<>();
     private RouteVisualization rv;
 
 	public RouteService(GoogleMapView mapComponent, MarkerManager manager) {
@@ -35,17 +43,32 @@ public class RouteService {
 	
 	
 	/**
-	 * Displays route on Google Map
+	 * Displays route and its alternatives on Google Map
+	 * @param route The route to display
+	 * @param alternatives The alternative routes, drawn below route in different colors
 	 * @return returns false if route fails to display
 	 */
-	private boolean displayRoute(List<LatLong> route) {
+	private boolean displayRoute(List<LatLong> route, List<List<LatLong>> alternatives) {
 
         if(routeLine != null) {
         	removeRouteLine();
         }
-		routeLine = new Polyline();
-		MVCArray path = new MVCArray();
 		LatLongBounds bounds = new LatLongBounds();
+		for(int i = 0; i < alternatives.size(); i++) {
+			MVCArray altPath = new MVCArray();
+			for(LatLong point : alternatives.get(i)) {
+				altPath.push(point);
+	            bounds = bounds.extend(point);
+			}
+			Polyline altLine = new Polyline(new PolylineOptions().path(altPath)
+					.strokeColor(ALTERNATIVE_COLORS[i % ALTERNATIVE_COLORS.length])
+					.strokeOpacity(0.7).zIndex(0));
+			alternativeLines.add(altLine);
+			map.addMapShape(altLine);
+		}
+
+		routeLine = new Polyline(new PolylineOptions().zIndex(1));
+		MVCArray path = new MVCArray();
 		for(LatLong point : route)  {
 			path.push(point);
             bounds = bounds.extend(point);
@@ -63,6 +86,7 @@ public class RouteService {
     public void hideRoute() {
     	if(routeLine != null) {
         	map.removeMapShape(routeLine);
+        	removeAlternativeLines();
         	if(markerManager.getVisualization() != null) {
         		markerManager.clearVisualization();
         	}
@@ -82,6 +106,20 @@ public class RouteService {
     
     
     public boolean displayRoute(geography.GeographicPoint start, geography.GeographicPoint end, int toggle) {
+        return displayRoute(start, end, toggle, 0);
+    }
+
+    /**
+     * Displays the route from start to end found by a search algorithm, and
+     * up to {@link #MAX_ALTERNATIVES} alternative routes in different colors.
+     * @param start The starting location
+     * @param end The goal location
+     * @param toggle The search algorithm of the route
+     * @param alternatives The number of alternative routes to display
+     * @return returns false if route fails to display
+     */
+    public boolean displayRoute(geography.GeographicPoint start, geography.GeographicPoint end, int toggle,
+    		int alternatives) {
         if(routeLine == null) {
         	if(markerManager.getVisualization() != null) {
         		markerManager.clearVisualization();
@@ -107,9 +145,18 @@ public class RouteService {
                 	return false;
                 }
             	List<LatLong> mapPath = constructMapPath(path);
+            	List<List<LatLong>> altPaths = new ArrayList<>();
+            	if (alternatives > 0) {
+            		List<List<geography.GeographicPoint>> routes = markerManager.getDataSet().getGraph()
+            				.alternativeRoutes(start, end, Math.min(alternatives, MAX_ALTERNATIVES));
+            		//first route is the shortest, drawn as the main route
+            		for (List<geography.GeographicPoint> route : routes.subList(Math.min(1, routes.size()), routes.size()))
+            			if (!route.equals(path))
+            				altPaths.add(constructMapPath(route));
+            	}
 
                 markerManager.setSelectMode(false);
-                return displayRoute(mapPath);
+                return displayRoute(mapPath, altPaths);
     		}
 
     		return false;
@@ -170,6 +217,14 @@ public class RouteService {
         if(routeLine != null) {
     		map.removeMapShape(routeLine);
         }
+        removeAlternativeLines();
+	}
+
+	private void removeAlternativeLines() {
+		for(Polyline altLine : alternativeLines) {
+			map.removeMapShape(altLine);
+		}
+		alternativeLines.clear();
 	}
 
 
@@ -66,6 +66,45 @@ public class RoadSegment {
 		return allPoints;
 	}
 	
+	/** Return the point at a distance along this segment from one of its
+	 * end points. The distance is measured in the units of the segment's 
+	 * length and spread over the geometry in proportion to its straight
+	 * line lengths, so the other end point is at the segment's length.
+	 * @param start The end point to measure from
+	 * @param distance The distance from start, clamped to the segment
+	 * @return The point on the geometry at distance from start
+	 * @throws IllegalArgumentException If start is not an end point of segment
+	 */
+	public GeographicPoint getPointAlong(GeographicPoint start, double distance)
+	{
+		if (!point1.equals(start) && !point2.equals(start)) {
+			throw new IllegalArgumentException("Start point does not "
+					+ "match end points of segment");
+		}
+		List<GeographicPoint> allPoints = getPoints(start, getOtherPoint(start));
+		double geometryLength = 0;
+		for (int i = 1; i < allPoints.size(); i++) {
+			geometryLength += allPoints.get(i - 1).distance(allPoints.get(i));
+		}
+		if (length <= 0 || geometryLength <= 0 || distance <= 0) {
+			return start;
+		}
+		
+		double remaining = Math.min(distance, length) / length * geometryLength;
+		for (int i = 1; i < allPoints.size(); i++) {
+			GeographicPoint from = allPoints.get(i - 1);
+			GeographicPoint to = allPoints.get(i);
+			double pieceLength = from.distance(to);
+			if (remaining <= pieceLength && pieceLength > 0) {
+				double ratio = remaining / pieceLength;
+				return new GeographicPoint(from.getX() + ratio * (to.getX() - from.getX()),
+						from.getY() + ratio * (to.getY() - from.getY()));
+			}
+			remaining -= pieceLength;
+		}
+		return allPoints.get(allPoints.size() - 1);
+	}
+	
 	/** Two road segments are equal if they have the same start and end points
 	 *  and they have the same road name.
 	 */
@@ -109,6 +148,19 @@ public class RoadSegment {
 	// get the length of the road segment
 	public double getLength() { return this.length; }
 	
+	// get the end points of the road segment
+	public GeographicPoint getPoint1() { return this.point1; }
+	public GeographicPoint getPoint2() { return this.point2; }
+	
+	// get the intermediate points of the road segment, from point1 to point2
+	public List<GeographicPoint> getGeometryPoints() { 
+		return Collections.unmodifiableList(this.geometryPoints); 
+	}
+	
+	// get the name and type of the road
+	public String getRoadName() { return this.roadName; }
+	public String getRoadType() { return this.roadType; }
+	
 	
 	// given one end, return the other.
 	public geography.GeographicPoint getOtherPoint(geography.GeographicPoint point) {
@@ -0,0 +1,326 @@
+package roadgraph;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+import geography.GeographicPoint;
+
+/**
+ * The shortest distance and path between every pair of intersections of a
+ *  small map, precomputed so that queries are table lookups.<br>
+ * Distances are kept in a {@code float} matrix, in km, and paths in a matrix
+ *  of the next intersection from each intersection toward each goal. The
+ *  matrices can be written to a file and loaded back through a memory-mapped
+ *  buffer, without reading them into the heap. The file is little-endian and
+ *  holds a header (magic number, version, number of vertices and method),
+ *  the vertex coordinates, and the two matrices by rows.<br>
+ * An instance is immutable and thread-safe.
+ *
+ * @author Miri Yehezkel
+ *
+ */
+public final class AllPairsShortestPaths {
+	/**
+	 * Algorithms computing all shortest paths.
+	 */
+	public enum Method {
+		/** Cache-blocked parallel Floyd-Warshall, best for dense graphs */
+		FLOYD_WARSHALL,
+
+		/** Parallel Dijkstra's search from each vertex, best for sparse graphs */
+		DIJKSTRA
+	}
+
+	/** Maximal number of vertices, whose matrices take 128MB */
+	public static final int MAX_VERTICES = 4096;
+
+	/**
+	 * Floyd-Warshall is chosen while {@code n * n} is below this factor times
+	 *  {@code m * log2(n)}, the ratio of the costs of the two methods, since
+	 *  its inner loop is much cheaper than a heap operation.
+	 */
+	static final int FLOYD_WARSHALL_FACTOR = 16;
+
+	/** Magic number at start of file, "APSP" */
+	private static final int MAGIC = 0x41505350;
+
+	/** Version of file format */
+	static final int VERSION = 1;
+
+	/** Size of header in bytes */
+	private static final int HEADER_SIZE = 4 * Integer.BYTES;
+
+	/** Locations of vertices, by index */
+	private final GeographicPoint[] points;
+
+	/** Index of each location */
+	private final Map<GeographicPoint, Integer> indices;
+
+	/** Distance from each vertex to each vertex, by rows */
+	private final FloatBuffer dist;
+
+	/** Next vertex from each vertex toward each vertex, by rows, {@code -1} if none */
+	private final IntBuffer next;
+
+	/** Algorithm the paths were computed with */
+	private final Method method;
+
+	private AllPairsShortestPaths(GeographicPoint[] points, FloatBuffer dist, IntBuffer next,
+			Method method) {
+		this.points = points;
+		this.dist = dist;
+		this.next = next;
+		this.method = method;
+		indices = new HashMap<>(2 * points.length);
+		for (int v = 0; v < points.length; v++)
+			indices.put(points[v], v);
+	}
+
+	/**
+	 * Chooses the cheaper method for a graph by its density.
+	 * @param graph Graph to compute
+	 * @return The {@link Method} expected to be faster.
+	 */
+	static Method chooseMethod(CompactGraph graph) {
+		long n = graph.numVertices;
+		double log = Math.log(Math.max(n, 2)) / Math.log(2);
+		return n * n < FLOYD_WARSHALL_FACTOR * graph.numEdges * log
+				? Method.FLOYD_WARSHALL : Method.DIJKSTRA;
+	}
+
+	/**
+	 * Computes all shortest paths of a graph.
+	 * @param graph Graph to compute, of at most {@link #MAX_VERTICES} vertices
+	 * @param method Algorithm to use
+	 * @param pool Pool the computation runs on
+	 * @return The shortest paths between all pairs of vertices.
+	 */
+	static AllPairsShortestPaths compute(CompactGraph graph, Method method, ForkJoinPool pool) {
+		int n = graph.numVertices;
+		float[] dist = new float[n * n];
+		int[] next = new int[n * n];
+		if (method == Method.FLOYD_WARSHALL) {
+			Arrays.fill(dist, Float.POSITIVE_INFINITY);
+			Arrays.fill(next, -1);
+			for (int u = 0; u < n; u++) {
+				dist[u * n + u] = 0;
+				next[u * n + u] = u;
+				for (int e = graph.firstEdge[u]; e < graph.firstEdge[u + 1]; e++) {
+					int v = graph.edgeTarget[e];
+					float w = (float) graph.edgeLength[e];
+					if (w < dist[u * n + v]) {
+						dist[u * n + v] = w;
+						next[u * n + v] = v;
+					}
+				}
+			}
+			FloydWarshall.run(n, dist, next, pool);
+		}
+		else {
+			pool.submit(() -> IntStream.range(0, n).parallel().forEach(s -> {
+				DijkstraEngine engine = new DijkstraEngine(graph);
+				engine.searchAll(s, false);
+				int[] parents = engine.getParents();
+				int row = s * n;
+				for (int v = 0; v < n; v++) {
+					double d = engine.getDistance(v);
+					dist[row + v] = (float) d;
+					next[row + v] = d == Double.POSITIVE_INFINITY ? -1 : v;
+				}
+				fillFirstHops(s, parents, next, row, n);
+			})).join();
+		}
+		GeographicPoint[] points = new GeographicPoint[n];
+		for (int v = 0; v < n; v++)
+			points[v] = graph.pointAt(v);
+		return new AllPairsShortestPaths(points, FloatBuffer.wrap(dist), IntBuffer.wrap(next), method);
+	}
+
+	/**
+	 * Sets the next hop from source toward each reached vertex, the child of
+	 *  source on the vertex's path in the shortest-path tree.
+	 * @param s Vertex id of source
+	 * @param parents Parent of each vertex in the tree of source
+	 * @param next Next-hop matrix, with {@code -1} for unreached vertices
+	 * @param row Index of source's row
+	 * @param n Number of vertices
+	 */
+	private static void fillFirstHops(int s, int[] parents, int[] next, int row, int n) {
+		boolean[] known = new boolean[n];
+		known[s] = true;
+		int[] stack = new int[n];
+		for (int v = 0; v < n; v++) {
+			if (known[v] || next[row + v] < 0)
+				continue;
+			//climb to a vertex whose hop is known, or a child of source
+			int size = 0;
+			int u = v;
+			while (!known[u] && parents[u] != s) {
+				stack[size++] = u;
+				u = parents[u];
+			}
+			int hop = known[u] ? next[row + u] : u;
+			if (!known[u]) {
+				next[row + u] = hop;
+				known[u] = true;
+			}
+			while (size > 0) {
+				int w = stack[--size];
+				next[row + w] = hop;
+				known[w] = true;
+			}
+		}
+	}
+
+	/** Get the number of vertices */
+	public int getNumVertices() { return points.length; }
+
+	/** Get the algorithm the paths were computed with */
+	public Method getMethod() { return method; }
+
+	/**
+	 * Get the shortest distance from one location to another.
+	 * @param from The starting location
+	 * @param to The goal location
+	 * @return The distance in km, or {@link Double#POSITIVE_INFINITY} if
+	 *   goal can't be reached.
+	 * @throws IllegalArgumentException If a location is null or not a vertex.
+	 */
+	public double getDistance(GeographicPoint from, GeographicPoint to)
+			throws IllegalArgumentException {
+		return dist.get(indexOf(from) * points.length + indexOf(to));
+	}
+
+	/**
+	 * Get the shortest path from one location to another.
+	 * @param from The starting location
+	 * @param to The goal location
+	 * @return The list of intersections that form the shortest path from
+	 *   start to goal (including both start and goal), or {@code null} if
+	 *   goal can't be reached.
+	 * @throws IllegalArgumentException If a location is null or not a vertex.
+	 */
+	public List<GeographicPoint> getPath(GeographicPoint from, GeographicPoint to)
+			throws IllegalArgumentException {
+		int n = points.length;
+		int u = indexOf(from);
+		int goal = indexOf(to);
+		if (next.get(u * n + goal) < 0)
+			return null;
+		List<GeographicPoint> path = new LinkedList<>();
+		path.add(points[u]);
+		//at most n hops, in case rounding of distances left a cycle
+		for (int hops = 0; u != goal && hops < n; hops++) {
+			u = next.get(u * n + goal);
+			path.add(points[u]);
+		}
+		return u == goal ? path : null;
+	}
+
+	private int indexOf(GeographicPoint location) throws IllegalArgumentException {
+		Integer index = location == null ? null : indices.get(location);
+		if (index == null)
+			throw new IllegalArgumentException("GeographicPoint doesn't exist in Map",
+					new Throwable("location=" + location));
+		return index;
+	}
+
+	/**
+	 * Writes the matrices to a file. The file is replaced only once it is
+	 *  fully written, like by {@link GraphFile#write(String, MapGraph, HashMap)}.
+	 * @param filename The file to write
+	 * @throws IOException If the file can't be written.
+	 */
+	public void write(String filename) throws IOException {
+		int n = points.length;
+		ByteBuffer buf = ByteBuffer.allocate(Math.max(HEADER_SIZE + 2 * n * Double.BYTES,
+				n * Integer.BYTES)).order(ByteOrder.LITTLE_ENDIAN);
+		GraphFile.writeAtomically(filename, channel -> {
+			buf.putInt(MAGIC).putInt(VERSION).putInt(n).putInt(method.ordinal());
+			for (GeographicPoint pt : points)
+				buf.putDouble(pt.getX());
+			for (GeographicPoint pt : points)
+				buf.putDouble(pt.getY());
+			writeFully(channel, buf);
+			//one row at a time, so the matrices aren't copied whole
+			for (int row = 0; row < n; row++) {
+				for (int v = 0; v < n; v++)
+					buf.putFloat(dist.get(row * n + v));
+				writeFully(channel, buf);
+			}
+			for (int row = 0; row < n; row++) {
+				for (int v = 0; v < n; v++)
+					buf.putInt(next.get(row * n + v));
+				writeFully(channel, buf);
+			}
+		});
+	}
+
+	private static void writeFully(FileChannel channel, ByteBuffer buf) throws IOException {
+		buf.flip();
+		while (buf.hasRemaining())
+			channel.write(buf);
+		buf.clear();
+	}
+
+	/**
+	 * Loads matrices written by {@link #write(String)}. The matrices are
+	 *  memory-mapped and read from the file as queries need them.
+	 * @param filename The file to read
+	 * @return The shortest paths of the file.
+	 * @throws IOException If the file can't be read or isn't a shortest paths
+	 *   file of a supported version.
+	 */
+	public static AllPairsShortestPaths load(String filename) throws IOException {
+		MappedByteBuffer buf;
+		try (FileChannel channel = FileChannel.open(Paths.get(filename), StandardOpenOption.READ)) {
+			buf = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+		}
+		buf.order(ByteOrder.LITTLE_ENDIAN);
+		if (buf.remaining() < HEADER_SIZE || buf.getInt() != MAGIC)
+			throw new IOException("Not a shortest paths file: " + filename);
+		int version = buf.getInt();
+		if (version != VERSION)
+			throw new IOException("Unsupported shortest paths file version " + version + ": " + filename);
+		int n = buf.getInt();
+		int ordinal = buf.getInt();
+		long matrixBytes = (long) n * n * Float.BYTES;
+		if (n < 0 || n > MAX_VERTICES || ordinal < 0 || ordinal >= Method.values().length
+				|| buf.remaining() != 2L * n * Double.BYTES + 2 * matrixBytes)
+			throw new IOException("Corrupt shortest paths file: " + filename);
+
+		GeographicPoint[] points = new GeographicPoint[n];
+		int lonStart = buf.position() + n * Double.BYTES;
+		for (int v = 0; v < n; v++)
+			points[v] = new GeographicPoint(buf.getDouble(), buf.getDouble(lonStart + v * Double.BYTES));
+		buf.position(lonStart + n * Double.BYTES);
+
+		//views of the mapped matrices, slices are big-endian until ordered
+		ByteBuffer distBytes = buf.slice().order(ByteOrder.LITTLE_ENDIAN);
+		distBytes.limit((int) matrixBytes);
+		buf.position(buf.position() + (int) matrixBytes);
+		ByteBuffer nextBytes = buf.slice().order(ByteOrder.LITTLE_ENDIAN);
+		return new AllPairsShortestPaths(points, distBytes.asFloatBuffer(), nextBytes.asIntBuffer(),
+				Method.values()[ordinal]);
+	}
+
+	@Override
+	public String toString() {
+		return "AllPairsShortestPaths [numVertices=" + points.length + ", method=" + method + "]";
+	}
+
+}
@@ -0,0 +1,236 @@
+package roadgraph;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Finds diverse alternatives to the shortest route, as shown by navigation
+ *  apps, over a {@link CompactGraph}.<br>
+ * A forward shortest-path tree from start and a backward one from goal are
+ *  built once. Their shared edges form plateaus, and each plateau gives a via
+ *  route: the forward tree to the plateau, the plateau and the backward tree
+ *  to goal. A plateau at least {@link #MIN_PLATEAU} of the shortest route
+ *  long makes its route locally optimal on that scale. Candidates are taken
+ *  longest plateau first, and a candidate is kept if it is loopless, at most
+ *  {@link #MAX_STRETCH} longer than the shortest route, and shares at most
+ *  {@link #MAX_SHARING} of the shortest route's length with the routes
+ *  kept so far.<br>
+ * If plateaus give too few alternatives, the edges of the routes found are
+ *  penalized and A* is run again, guided by the backward tree, so each
+ *  missing alternative takes about one more search.
+ *
+ * @author Miri Yehezkel
+ *
+ */
+final class AlternativeRoutes {
+	/** Maximal cost of an alternative over the shortest route's, as a fraction of it */
+	static final double MAX_STRETCH = 0.25;
+
+	/** Maximal cost an alternative shares with the routes kept before it, as a fraction of the shortest route's */
+	static final double MAX_SHARING = 0.8;
+
+	/** Minimal length of a plateau, as a fraction of the shortest route's cost */
+	static final double MIN_PLATEAU = 0.2;
+
+	/** Factor by which the weights of edges on found routes grow, per route */
+	static final double PENALTY = 0.5;
+
+	/** Graph to search */
+	private final CompactGraph graph;
+
+	/** Weight of each edge */
+	private final double[] weights;
+
+	/** Edges of the routes kept, as {@code from << 32 | to} */
+	private final Set<Long> keptEdges = new HashSet<>();
+
+	/** Routes kept, shortest first */
+	private final List<int[]> routes = new ArrayList<>();
+
+	/** Cost of the shortest route */
+	private double optimal;
+
+	/** Search of the forward tree, and later of penalized routes */
+	private DijkstraEngine forward;
+
+	/** Search of the backward tree */
+	private DijkstraEngine backward;
+
+	private AlternativeRoutes(CompactGraph graph, double[] weights) {
+		this.graph = graph;
+		this.weights = weights;
+	}
+
+	/**
+	 * Finds the shortest route from start to goal and its alternatives.
+	 * @param graph Graph to search
+	 * @param weights Weight of each edge, by edge id
+	 * @param start Vertex id of start
+	 * @param goal Vertex id of goal
+	 * @param maxAlternatives Maximal number of alternatives
+	 * @return The vertex ids of the shortest route followed by (at most)
+	 *   maxAlternatives alternatives, best first, or an empty list if goal
+	 *   can't be reached.
+	 */
+	static List<int[]> find(CompactGraph graph, double[] weights, int start, int goal,
+			int maxAlternatives) {
+		return new AlternativeRoutes(graph, weights).find(start, goal, maxAlternatives);
+	}
+
+	private List<int[]> find(int start, int goal, int maxAlternatives) {
+		forward = new DijkstraEngine(graph, SearchWorkspace.FORWARD);
+		backward = new DijkstraEngine(graph, SearchWorkspace.BACKWARD);
+		forward.searchAll(start, false, weights);
+		optimal = forward.getDistance(goal);
+		if (optimal == Double.POSITIVE_INFINITY)
+			return routes;
+		backward.searchAll(goal, true, weights);
+		int[] fromStart = forward.getParents();
+		int[] towardGoal = backward.getParents();
+		keep(treeRoute(start, goal, goal, fromStart, towardGoal));
+		if (start == goal)
+			return routes;
+
+		//first vertices of plateaus of admissible cost, with their lengths, longest first
+		double maxCost = (1 + MAX_STRETCH) * optimal;
+		List<double[]> plateaus = new ArrayList<>();
+		for (int v = 0; v < graph.numVertices; v++) {
+			double cost = forward.getDistance(v) + backward.getDistance(v);
+			if (!(cost <= maxCost) || !onPlateau(v, fromStart, towardGoal))
+				continue;
+			if (v != start && onPlateau(fromStart[v], fromStart, towardGoal))
+				continue;
+			int last = v;
+			while (onPlateau(last, fromStart, towardGoal))
+				last = towardGoal[last];
+			double length = forward.getDistance(last) - forward.getDistance(v);
+			if (length >= MIN_PLATEAU * optimal)
+				plateaus.add(new double[] { length, v });
+		}
+		plateaus.sort((a, b) -> Double.compare(b[0], a[0]));
+
+		for (double[] plateau : plateaus) {
+			if (routes.size() > maxAlternatives)
+				return routes;
+			int[] route = treeRoute(start, goal, (int) plateau[1], fromStart, towardGoal);
+			if (route != null && isDiverse(route))
+				keep(route);
+		}
+
+		//penalty method for the missing alternatives
+		double[] penalized = weights.clone();
+		for (int[] route : routes)
+			penalize(route, penalized);
+		for (int attempt = 2 * (maxAlternatives + 1 - routes.size()); attempt > 0
+				&& routes.size() <= maxAlternatives; attempt--) {
+			//distances to goal only grow with penalties, so they stay a consistent heuristic
+			if (!forward.search(start, goal, penalized, backward::getDistance, v -> {}))
+				break;
+			int[] route = path(start, goal, forward.getParents());
+			if (cost(route) <= maxCost && isDiverse(route))
+				keep(route);
+			penalize(route, penalized);
+		}
+		return routes;
+	}
+
+	/**
+	 * Whether the edge from a vertex toward goal is on both trees.
+	 */
+	private boolean onPlateau(int v, int[] fromStart, int[] towardGoal) {
+		if (backward.getDistance(v) == Double.POSITIVE_INFINITY)
+			return false;
+		int next = towardGoal[v];
+		return next >= 0 && forward.getDistance(next) < Double.POSITIVE_INFINITY
+				&& fromStart[next] == v;
+	}
+
+	/**
+	 * Builds the route through a plateau: the forward tree from start to its
+	 *  first vertex, and the backward tree, along the plateau, to goal.
+	 * @return The vertex ids of the route, or {@code null} if it has a loop.
+	 */
+	private int[] treeRoute(int start, int goal, int first, int[] fromStart, int[] towardGoal) {
+		int[] head = path(start, first, fromStart);
+		int length = head.length;
+		for (int v = first; v != goal; v = towardGoal[v])
+			length++;
+		int[] route = Arrays.copyOf(head, length);
+		for (int i = head.length; i < length; i++)
+			route[i] = towardGoal[route[i - 1]];
+
+		Set<Integer> visited = new HashSet<>(2 * length);
+		for (int v : route)
+			if (!visited.add(v))
+				return null;
+		return route;
+	}
+
+	/**
+	 * Follows parents from goal back to start.
+	 */
+	private int[] path(int start, int goal, int[] parents) {
+		int length = 1;
+		for (int v = goal; v != start; v = parents[v])
+			length++;
+		int[] route = new int[length];
+		for (int i = length - 1, v = goal; i >= 0; i--, v = parents[v])
+			route[i] = v;
+		return route;
+	}
+
+	/**
+	 * Whether a route shares little enough cost with the routes kept.
+	 */
+	private boolean isDiverse(int[] route) {
+		double shared = 0;
+		for (int i = 1; i < route.length; i++)
+			if (keptEdges.contains(edgeKey(route[i - 1], route[i])))
+				shared += edgeWeight(route[i - 1], route[i], weights);
+		return shared <= MAX_SHARING * optimal;
+	}
+
+	private void keep(int[] route) {
+		routes.add(route);
+		for (int i = 1; i < route.length; i++)
+			keptEdges.add(edgeKey(route[i - 1], route[i]));
+	}
+
+	private void penalize(int[] route, double[] penalized) {
+		for (int i = 1; i < route.length; i++)
+			for (int e = graph.firstEdge[route[i - 1]]; e < graph.firstEdge[route[i - 1] + 1]; e++)
+				if (graph.edgeTarget[e] == route[i])
+					penalized[e] += PENALTY * weights[e];
+	}
+
+	private double cost(int[] route) {
+		double cost = 0;
+		for (int i = 1; i < route.length; i++)
+			cost += edgeWeight(route[i - 1], route[i], weights);
+		return cost;
+	}
+
+	/**
+	 * Gets the weight of the lightest edge from one vertex to another.
+	 */
+	private double edgeWeight(int from, int to, double[] edgeWeights) {
+		double weight = Double.POSITIVE_INFINITY;
+		for (int e = graph.firstEdge[from]; e < graph.firstEdge[from + 1]; e++)
+			if (graph.edgeTarget[e] == to)
+				weight = Math.min(weight, edgeWeights[e]);
+		return weight;
+	}
+
+	private static long edgeKey(int from, int to) {
+		return (long) from << 32 | to & 0xFFFFFFFFL;
+	}
+
+	@Override
+	public String toString() {
+		return "AlternativeRoutes [graph=" + graph + "]";
+	}
+
+}
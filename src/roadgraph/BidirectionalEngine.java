@@ -0,0 +1,209 @@
+package roadgraph;
+
+import java.util.LinkedList;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.IntToDoubleFunction;
+
+import geography.GeographicPoint;
+
+/**
+ * Bidirectional Dijkstra's and A* search over a {@link CompactGraph}.<br>
+ * A forward search from start on outgoing edges and a backward search from
+ *  goal on incoming edges are alternated, always advancing the one with the
+ *  smaller queue key, until no shorter path through a vertex reached by both
+ *  can be found. An engine is not thread-safe.
+ *
+ * @author Miri Yehezkel
+ *
+ */
+final class BidirectionalEngine {
+	/** Graph to search */
+	private final CompactGraph graph;
+
+	/** Workspace of forward search */
+	private SearchWorkspace forward;
+
+	/** Workspace of backward search, its parents are next vertices on path to goal */
+	private SearchWorkspace backward;
+
+	/** Start of last search */
+	private int start;
+
+	/** Goal of last search */
+	private int goal;
+
+	/** Vertex where the shortest path found by last search meets, {@code -1} if none */
+	private int meeting;
+
+	/** Length of shortest path found by last search */
+	private double bestDistance;
+
+	/**
+	 * Constructs an engine for a graph.
+	 * @param graph Graph to search
+	 */
+	BidirectionalEngine(CompactGraph graph) {
+		this.graph = graph;
+	}
+
+	CompactGraph getGraph() { return graph; }
+
+	/**
+	 * Performs a bidirectional search from start to goal, using the forward
+	 *  and backward workspaces of the calling thread.<br>
+	 * The forward search orders vertices by distance plus potential,
+	 *  the backward search by distance minus potential. The potential must be
+	 *  consistent in both directions; the average of a lower bound to goal and
+	 *  a (negated) lower bound from start is.
+	 * @param start Vertex id of start
+	 * @param goal Vertex id of goal
+	 * @param potential Potential of a vertex, or {@code null} for Dijkstra's search
+	 * @param nodeSearched A hook for visualization
+	 * @return {@code true} if found path, {@code false} otherwise.
+	 */
+	boolean search(int start, int goal, IntToDoubleFunction potential,
+			Consumer<GeographicPoint> nodeSearched) {
+		forward = SearchWorkspace.get(SearchWorkspace.FORWARD, graph.numVertices);
+		backward = SearchWorkspace.get(SearchWorkspace.BACKWARD, graph.numVertices);
+		try {
+			IndexedDaryHeap forwardHeap = forward.getHeap();
+			IndexedDaryHeap backwardHeap = backward.getHeap();
+			this.start = start;
+			this.goal = goal;
+			meeting = -1;
+			bestDistance = Double.POSITIVE_INFINITY;
+			forward.reach(start, -1, 0.0);
+			backward.reach(goal, -1, 0.0);
+			forwardHeap.insert(start, potential == null ? 0.0 : potential.applyAsDouble(start));
+			backwardHeap.insert(goal, potential == null ? 0.0 : -potential.applyAsDouble(goal));
+			if (start == goal) {
+				meeting = start;
+				bestDistance = 0.0;
+			}
+
+			while (!forwardHeap.isEmpty() && !backwardHeap.isEmpty()) {
+				if (forwardHeap.peekKey() + backwardHeap.peekKey() >= bestDistance)
+					break;
+				if (forwardHeap.peekKey() <= backwardHeap.peekKey())
+					stepForward(potential, nodeSearched);
+				else
+					stepBackward(potential, nodeSearched);
+			}
+			return meeting >= 0;
+		} finally {
+			forward.release();
+			backward.release();
+		}
+	}
+
+	/**
+	 * Creates the average potential of start and goal: half the straight-line
+	 *  distance to goal minus half the straight-line distance from start.
+	 * @param graph Graph to search
+	 * @param start Vertex id of start
+	 * @param goal Vertex id of goal
+	 * @return A potential which is consistent for both directions.
+	 */
+	static IntToDoubleFunction averagePotential(CompactGraph graph, int start, int goal) {
+		return v -> (graph.distance(v, goal) - graph.distance(start, v)) / 2;
+	}
+
+	/**
+	 * Settles the next vertex of forward search and relaxes its outgoing edges.
+	 */
+	private void stepForward(IntToDoubleFunction potential, Consumer<GeographicPoint> nodeSearched) {
+		int curr = forward.getHeap().poll();
+		forward.settle(curr);
+		nodeSearched.accept(graph.pointAt(curr)); //visualization for search
+
+		double currWeight = forward.getDistance(curr);
+		for (int e = graph.firstEdge[curr]; e < graph.firstEdge[curr + 1]; e++) {
+			int next = graph.edgeTarget[e];
+			if (forward.isSettled(next))
+				continue;
+			double nextWeight = currWeight + graph.edgeLength[e];
+			if (nextWeight < forward.getDistance(next)) {
+				forward.reach(next, curr, nextWeight);
+				forward.getHeap().insertOrDecrease(next, potential == null ? nextWeight
+						: nextWeight + potential.applyAsDouble(next));
+				updateBest(next);
+			}
+		}
+	}
+
+	/**
+	 * Settles the next vertex of backward search and relaxes its incoming edges.
+	 */
+	private void stepBackward(IntToDoubleFunction potential, Consumer<GeographicPoint> nodeSearched) {
+		int curr = backward.getHeap().poll();
+		backward.settle(curr);
+		nodeSearched.accept(graph.pointAt(curr)); //visualization for search
+
+		double currWeight = backward.getDistance(curr);
+		for (int i = graph.firstInEdge[curr]; i < graph.firstInEdge[curr + 1]; i++) {
+			int e = graph.inEdge[i];
+			int prev = graph.edgeSource[e];
+			if (backward.isSettled(prev))
+				continue;
+			double prevWeight = currWeight + graph.edgeLength[e];
+			if (prevWeight < backward.getDistance(prev)) {
+				backward.reach(prev, curr, prevWeight);
+				backward.getHeap().insertOrDecrease(prev, potential == null ? prevWeight
+						: prevWeight - potential.applyAsDouble(prev));
+				updateBest(prev);
+			}
+		}
+	}
+
+	/**
+	 * Records a shorter path through a vertex if both searches reached it.
+	 */
+	private void updateBest(int v) {
+		double total = forward.getDistance(v) + backward.getDistance(v);
+		if (total < bestDistance) {
+			bestDistance = total;
+			meeting = v;
+		}
+	}
+
+	/**
+	 * Gets the path found by last search.
+	 * @return The list of intersections from start to goal, or {@code null} if path doesn't exist.
+	 */
+	List<GeographicPoint> getPath() {
+		if (meeting < 0)
+			return null;
+		int[] forwardParents = forward.getParents();
+		int[] backwardParents = backward.getParents();
+		LinkedList<GeographicPoint> path = new LinkedList<>();
+		for (int v = meeting; v != start; v = forwardParents[v])
+			path.addFirst(graph.pointAt(v));
+		path.addFirst(graph.pointAt(start));
+		for (int v = meeting; v != goal; ) {
+			v = backwardParents[v];
+			path.addLast(graph.pointAt(v));
+		}
+		return path;
+	}
+
+	/**
+	 * Gets the length of the path found by last search.
+	 * @return The length of the shortest path, or infinity if path doesn't exist.
+	 */
+	double getDistance() { return bestDistance; }
+
+	/**
+	 * Gets statistics of the heap operations performed by last search, by both directions.
+	 * @return The {@link SearchStats} of last search.
+	 */
+	SearchStats getStats() {
+		SearchStats f = forward.getStats();
+		SearchStats b = backward.getStats();
+		return new SearchStats(f.getSettledCount() + b.getSettledCount(),
+				f.getInsertCount() + b.getInsertCount(),
+				f.getPollCount() + b.getPollCount(),
+				f.getDecreaseKeyCount() + b.getDecreaseKeyCount());
+	}
+
+}
@@ -0,0 +1,314 @@
+package roadgraph;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import geography.GeographicPoint;
+
+/**
+ * An immutable, int-indexed snapshot of a {@link MapGraph} in
+ *  compressed sparse row (CSR) layout.<br>
+ * Vertices are numbered {@code 0..numVertices-1}; the outgoing edges of vertex
+ *  {@code v} are stored at indices {@code firstEdge[v]..firstEdge[v+1]-1}
+ *  of the edge arrays. Searches run on these arrays instead of on
+ *  {@link MapVertex} edge sets.<br>
+ * The incoming edges of vertex {@code v} are listed, as forward edge indices,
+ *  at {@code inEdge[firstInEdge[v]..firstInEdge[v+1]-1]}.
+ *
+ * @author Miri Yehezkel
+ *
+ */
+final class CompactGraph {
+	/** Number of vertices in snapshot */
+	final int numVertices;
+
+	/** Number of edges in snapshot */
+	final int numEdges;
+
+	/** Latitude of each vertex */
+	final double[] lat;
+
+	/** Longitude of each vertex */
+	final double[] lon;
+
+	/** Index of first outgoing edge of each vertex, {@code numVertices+1} entries */
+	final int[] firstEdge;
+
+	/** Start vertex of each edge */
+	final int[] edgeSource;
+
+	/** End vertex of each edge */
+	final int[] edgeTarget;
+
+	/** Length of each edge, in km */
+	final double[] edgeLength;
+
+	/** Id of name of road of each edge, in {@link #roadNames} */
+	final int[] edgeRoadName;
+
+	/** Code of type of road of each edge, in {@link #roadTypes} */
+	final byte[] edgeRoadType;
+
+	/** Road names of the graph's {@link RoadDictionary} at the time of the snapshot, by id */
+	final String[] roadNames;
+
+	/** Road types of the graph's {@link RoadDictionary} at the time of the snapshot, by code */
+	final String[] roadTypes;
+
+	/** Index in {@link #inEdge} of first incoming edge of each vertex, {@code numVertices+1} entries */
+	final int[] firstInEdge;
+
+	/** Forward edge indices grouped by end vertex */
+	final int[] inEdge;
+
+	/** GeographicPoint of each vertex, used to translate results back */
+	private final GeographicPoint[] points;
+
+	/** Maps GeographicPoints to their vertex id */
+	private final Map<GeographicPoint, Integer> ids;
+
+	/** Edge weights of each cost profile used, evaluated on first use */
+	private final Map<CostProfile, double[]> profileWeights = new ConcurrentHashMap<>();
+
+	/**
+	 * Builds a snapshot of the given vertices.
+	 * @param vertices The vertices of the graph, including their outgoing edges
+	 * @param dictionary The dictionary of road names and types of the edges
+	 * @return A new snapshot, with vertices numbered in iteration order.
+	 */
+	static CompactGraph of(Collection<MapVertex> vertices, RoadDictionary dictionary) {
+		int n = vertices.size();
+		double[] lat = new double[n];
+		double[] lon = new double[n];
+		int[] firstEdge = new int[n + 1];
+		Map<GeographicPoint, Integer> ids = new HashMap<>(n * 2);
+
+		int id = 0;
+		int edgeCount = 0;
+		for (MapVertex v : vertices) {
+			GeographicPoint pt = v.getGeoPoint();
+			lat[id] = pt.getX();
+			lon[id] = pt.getY();
+			ids.put(pt, id);
+			edgeCount += v.getEdges().size();
+			id++;
+		}
+
+		int[] edgeTarget = new int[edgeCount];
+		double[] edgeLength = new double[edgeCount];
+		int[] edgeRoadName = new int[edgeCount];
+		byte[] edgeRoadType = new byte[edgeCount];
+		int e = 0;
+		id = 0;
+		for (MapVertex v : vertices) {
+			firstEdge[id++] = e;
+			for (DirectedEdge edge : v.getEdges()) {
+				edgeTarget[e] = ids.get(edge.getEnd());
+				edgeLength[e] = edge.getLength();
+				edgeRoadName[e] = edge.getRoadNameId();
+				edgeRoadType[e] = edge.getRoadTypeCode();
+				e++;
+			}
+		}
+		firstEdge[n] = e;
+		return new CompactGraph(lat, lon, firstEdge, edgeTarget, edgeLength,
+				edgeRoadName, edgeRoadType, dictionary.names(), dictionary.types());
+	}
+
+	/**
+	 * Builds a snapshot from its forward CSR arrays, deriving the rest.
+	 *  The arrays are used as they are, not copied.
+	 * @param lat Latitude of each vertex
+	 * @param lon Longitude of each vertex
+	 * @param firstEdge Index of first outgoing edge of each vertex, {@code numVertices+1} entries
+	 * @param edgeTarget End vertex of each edge
+	 * @param edgeLength Length of each edge, in km
+	 * @param edgeRoadName Id of name of road of each edge
+	 * @param edgeRoadType Code of type of road of each edge
+	 * @param roadNames Road name of each id
+	 * @param roadTypes Road type of each code
+	 */
+	CompactGraph(double[] lat, double[] lon, int[] firstEdge, int[] edgeTarget,
+			double[] edgeLength, int[] edgeRoadName, byte[] edgeRoadType,
+			String[] roadNames, String[] roadTypes) {
+		numVertices = lat.length;
+		numEdges = edgeTarget.length;
+		this.lat = lat;
+		this.lon = lon;
+		this.firstEdge = firstEdge;
+		this.edgeTarget = edgeTarget;
+		this.edgeLength = edgeLength;
+		this.edgeRoadName = edgeRoadName;
+		this.edgeRoadType = edgeRoadType;
+		this.roadNames = roadNames;
+		this.roadTypes = roadTypes;
+
+		points = new GeographicPoint[numVertices];
+		ids = new HashMap<>(numVertices * 2);
+		for (int v = 0; v < numVertices; v++) {
+			points[v] = new GeographicPoint(lat[v], lon[v]);
+			ids.put(points[v], v);
+		}
+
+		edgeSource = new int[numEdges];
+		for (int v = 0; v < numVertices; v++)
+			for (int e = firstEdge[v]; e < firstEdge[v + 1]; e++)
+				edgeSource[e] = v;
+
+		//reverse adjacency, counting sort of edges by end vertex
+		firstInEdge = new int[numVertices + 1];
+		inEdge = new int[numEdges];
+		for (int e = 0; e < numEdges; e++)
+			firstInEdge[edgeTarget[e] + 1]++;
+		for (int v = 0; v < numVertices; v++)
+			firstInEdge[v + 1] += firstInEdge[v];
+		int[] next = Arrays.copyOf(firstInEdge, numVertices);
+		for (int e = 0; e < numEdges; e++)
+			inEdge[next[edgeTarget[e]]++] = e;
+	}
+
+	/**
+	 * Gets the name of the road of an edge.
+	 * @param e Edge id
+	 * @return The road name.
+	 */
+	String roadName(int e) {
+		return roadNames[edgeRoadName[e]];
+	}
+
+	/**
+	 * Gets the type of the road of an edge.
+	 * @param e Edge id
+	 * @return The road type.
+	 */
+	String roadType(int e) {
+		return roadTypes[edgeRoadType[e] & 0xFF];
+	}
+
+	/**
+	 * Gets the vertex id of a location.
+	 * @param pt Location on map
+	 * @return The id of the vertex, or {@code -1} if location is not a vertex.
+	 */
+	int indexOf(GeographicPoint pt) {
+		Integer id = ids.get(pt);
+		return id == null ? -1 : id;
+	}
+
+	/**
+	 * Gets the location of a vertex.
+	 * @param id Vertex id
+	 * @return The {@link GeographicPoint} of the vertex.
+	 */
+	GeographicPoint pointAt(int id) {
+		return points[id];
+	}
+
+	/**
+	 * Reconstructs path from start vertex to goal.
+	 * @param start Vertex id of start
+	 * @param goal Vertex id of goal
+	 * @param parents The parent of each vertex on the path taken
+	 * @return A {@link List} representing the path taken (including both start and goal). 
+	 */
+	List<GeographicPoint> pathTo(int start, int goal, int[] parents) {
+		LinkedList<GeographicPoint> path = new LinkedList<>();
+		int curr = goal;
+		while(curr != start) {
+			path.addFirst(points[curr]);
+			curr = parents[curr];
+		}
+		path.addFirst(points[start]);
+		return path;
+	}
+
+	/**
+	 * Builds the path of an edge-based search, from the parent edge of each edge.
+	 * @param lastEdge Edge id of last edge on path
+	 * @param parentEdges Parent edge of each edge on path, {@code -1} for the first
+	 * @return The list of locations on path, from source of first edge.
+	 */
+	List<GeographicPoint> pathOfEdges(int lastEdge, int[] parentEdges) {
+		LinkedList<GeographicPoint> path = new LinkedList<>();
+		int e = lastEdge;
+		while (true) {
+			path.addFirst(points[edgeTarget[e]]);
+			if (parentEdges[e] < 0)
+				break;
+			e = parentEdges[e];
+		}
+		path.addFirst(points[edgeSource[e]]);
+		return path;
+	}
+
+	/**
+	 * Gets the weight of each edge by a cost profile, evaluating the profile
+	 *  on all edges the first time it is used.
+	 * @param profile Cost profile
+	 * @return The weight of each edge, by edge id.
+	 * @throws IllegalArgumentException If the profile gives a negative or
+	 *   undefined cost.
+	 */
+	double[] weights(CostProfile profile) throws IllegalArgumentException {
+		if (profile == CostProfile.DISTANCE)
+			return edgeLength;
+		return profileWeights.computeIfAbsent(profile, p -> {
+			double[] weights = new double[numEdges];
+			for (int e = 0; e < numEdges; e++) {
+				double cost = p.edgeCost(roadName(e), roadType(e), edgeLength[e]);
+				if (!(cost >= 0))
+					throw new IllegalArgumentException("Edge cost must be greater than or equal to 0",
+							new Throwable("profile=" + p + ", roadType=" + roadType(e)
+									+ ", cost=" + cost));
+				weights[e] = cost;
+			}
+			return weights;
+		});
+	}
+
+	/**
+	 * Gets the vertex ids of a path.
+	 * @param path Locations of vertices on path
+	 * @return The vertex id of each location on path.
+	 */
+	int[] toIds(List<GeographicPoint> path) {
+		int[] ids = new int[path.size()];
+		int i = 0;
+		for (GeographicPoint pt : path)
+			ids[i++] = indexOf(pt);
+		return ids;
+	}
+
+	/**
+	 * Gets the locations of a path of vertex ids.
+	 * @param ids Vertex ids on path
+	 * @return The list of locations on path.
+	 */
+	List<GeographicPoint> toPath(int[] ids) {
+		LinkedList<GeographicPoint> path = new LinkedList<>();
+		for (int id : ids)
+			path.add(points[id]);
+		return path;
+	}
+
+	/**
+	 * Calculates the geographic distance in km between two vertices.
+	 * @param from Vertex id
+	 * @param to Vertex id
+	 * @return The straight-line distance between the vertices.
+	 */
+	double distance(int from, int to) {
+		return points[from].distance(points[to]);
+	}
+
+	@Override
+	public String toString() {
+		return "CompactGraph [numVertices=" + numVertices + ", numEdges=" + numEdges + "]";
+	}
+
+}
@@ -0,0 +1,194 @@
+package roadgraph;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Consumer;
+import java.util.stream.IntStream;
+
+import geography.GeographicPoint;
+
+/**
+ * A read-only route query facade over a snapshot of a {@link MapGraph},
+ *  which any number of threads can share.<br>
+ * The snapshot is immutable, and every query keeps its search state in the
+ *  calling thread's pooled workspaces, so queries don't share mutable state.
+ *  Later changes to the MapGraph are not seen by the router.
+ *
+ * @author Miri Yehezkel
+ *
+ */
+public final class ConcurrentRouter {
+	/** Hook for searches which are not visualized */
+	private static final Consumer<GeographicPoint> NO_HOOK = x -> {};
+
+	/** Snapshot of the Map */
+	private final CompactGraph graph;
+
+	/** Contraction Hierarchy of the snapshot, {@code null} until needed */
+	private volatile ContractionHierarchy hierarchy;
+
+	/** Query state on the Contraction Hierarchy of each thread */
+	private final ThreadLocal<ContractionHierarchy.Query> hierarchyQueries;
+
+	/** Landmarks of the snapshot, {@code null} until needed */
+	private volatile Landmarks landmarks;
+
+	/** Cache of routes, {@code null} if disabled */
+	private final RouteCache cache;
+
+	/** Pool routeAll runs on */
+	private final ForkJoinPool pool;
+
+	/**
+	 * Constructs a router over a snapshot.
+	 * @param graph Snapshot of the Map
+	 * @param hierarchy Contraction Hierarchy of the snapshot, or {@code null}
+	 *   to build it on first use
+	 * @param landmarks Landmarks of the snapshot, or {@code null} to select
+	 *   them on first use
+	 * @param cache Cache of routes, or {@code null} to always search
+	 * @param pool Pool routeAll runs on
+	 */
+	ConcurrentRouter(CompactGraph graph, ContractionHierarchy hierarchy, Landmarks landmarks,
+			RouteCache cache, ForkJoinPool pool) {
+		this.graph = graph;
+		this.hierarchy = hierarchy;
+		this.landmarks = landmarks;
+		this.cache = cache;
+		this.pool = pool;
+		hierarchyQueries = ThreadLocal.withInitial(() -> getHierarchy().newQuery());
+	}
+
+	/**
+	 * Finds a route from start to goal.
+	 * @param start The starting location
+	 * @param goal The goal location
+	 * @param algorithm The algorithm used to find the route
+	 * @return The list of intersections that form the route from start to goal
+	 *   (including both start and goal), or {@code null} if route doesn't exist
+	 *   or the locations are not in the graph.
+	 * @throws IllegalArgumentException If algorithm is null.
+	 */
+	public List<GeographicPoint> route(GeographicPoint start, GeographicPoint goal,
+			SearchAlgorithm algorithm) throws IllegalArgumentException {
+		if (algorithm == null)
+			throw new IllegalArgumentException("Search algorithm is null");
+		if (start == null || goal == null)
+			return null;
+		int startId = graph.indexOf(start);
+		int goalId = graph.indexOf(goal);
+		if (startId < 0 || goalId < 0)
+			return null;
+		if (cache == null)
+			return search(startId, goalId, algorithm);
+
+		int[] route = cache.get(graph, startId, goalId, algorithm);
+		if (route != null)
+			return route == RouteCache.NO_ROUTE ? null : graph.toPath(route);
+		List<GeographicPoint> path = search(startId, goalId, algorithm);
+		cache.put(graph, startId, goalId, algorithm,
+				path == null ? RouteCache.NO_ROUTE : graph.toIds(path));
+		return path;
+	}
+
+	/**
+	 * Searches for a route from start to goal.
+	 * @param startId Vertex id of start
+	 * @param goalId Vertex id of goal
+	 * @param algorithm The algorithm used to find the route
+	 * @return The route from start to goal, or {@code null} if route doesn't exist.
+	 */
+	private List<GeographicPoint> search(int startId, int goalId, SearchAlgorithm algorithm) {
+		DijkstraEngine engine;
+		switch (algorithm) {
+		case BFS:
+			engine = new DijkstraEngine(graph);
+			return engine.searchUnweighted(startId, goalId, NO_HOOK)
+					? graph.pathTo(startId, goalId, engine.getParents()) : null;
+		case DIJKSTRA:
+			engine = new DijkstraEngine(graph);
+			return engine.search(startId, goalId, null, NO_HOOK)
+					? graph.pathTo(startId, goalId, engine.getParents()) : null;
+		case A_STAR:
+			engine = new DijkstraEngine(graph);
+			return engine.search(startId, goalId, v -> graph.distance(v, goalId), NO_HOOK)
+					? graph.pathTo(startId, goalId, engine.getParents()) : null;
+		case A_STAR_LANDMARKS:
+			engine = new DijkstraEngine(graph);
+			return engine.search(startId, goalId, getLandmarks().heuristic(goalId), NO_HOOK)
+					? graph.pathTo(startId, goalId, engine.getParents()) : null;
+		case BIDIRECTIONAL_DIJKSTRA:
+		case BIDIRECTIONAL_A_STAR:
+			BidirectionalEngine bidirectional = new BidirectionalEngine(graph);
+			boolean found = bidirectional.search(startId, goalId,
+					algorithm == SearchAlgorithm.BIDIRECTIONAL_A_STAR
+						? BidirectionalEngine.averagePotential(graph, startId, goalId) : null,
+					NO_HOOK);
+			return found ? bidirectional.getPath() : null;
+		case CONTRACTION_HIERARCHY:
+			ContractionHierarchy.Query query = hierarchyQueries.get();
+			return query.search(startId, goalId) ? query.getPath() : null;
+		default:
+			throw new IllegalArgumentException("Unsupported search algorithm " + algorithm);
+		}
+	}
+
+	/**
+	 * Finds the routes of many requests in parallel.
+	 * @param requests The route requests
+	 * @return The route of each request, in order of requests, with {@code null}
+	 *   for requests whose route doesn't exist.
+	 * @throws IllegalArgumentException If requests, or any request or its
+	 *   algorithm, is null.
+	 */
+	public List<List<GeographicPoint>> routeAll(List<RouteRequest> requests) 
+			throws IllegalArgumentException {
+		if (requests == null || requests.contains(null))
+			throw new IllegalArgumentException("Route requests must not be null");
+		RouteRequest[] batch = requests.toArray(new RouteRequest[0]);
+		@SuppressWarnings({ "unchecked", "rawtypes" })
+		List<GeographicPoint>[] routes = new List[batch.length];
+		Runnable task = () -> IntStream.range(0, batch.length).parallel().forEach(i ->
+				routes[i] = route(batch[i].getStart(), batch[i].getGoal(), batch[i].getAlgorithm()));
+		pool.submit(task).join();
+		return Arrays.asList(routes);
+	}
+
+	/**
+	 * Gets the Contraction Hierarchy of the snapshot, building it if needed.
+	 */
+	private ContractionHierarchy getHierarchy() {
+		ContractionHierarchy h = hierarchy;
+		if (h == null) {
+			synchronized (this) {
+				h = hierarchy;
+				if (h == null)
+					hierarchy = h = new ContractionHierarchy(graph);
+			}
+		}
+		return h;
+	}
+
+	/**
+	 * Gets the landmarks of the snapshot, selecting them if needed.
+	 */
+	private Landmarks getLandmarks() {
+		Landmarks l = landmarks;
+		if (l == null) {
+			synchronized (this) {
+				l = landmarks;
+				if (l == null)
+					landmarks = l = new Landmarks(graph, MapGraph.DEFAULT_LANDMARK_COUNT,
+							LandmarkStrategy.FARTHEST);
+			}
+		}
+		return l;
+	}
+
+	@Override
+	public String toString() {
+		return "ConcurrentRouter [graph=" + graph + "]";
+	}
+
+}
@@ -0,0 +1,572 @@
+package roadgraph;
+
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.List;
+
+import geography.GeographicPoint;
+
+/**
+ * A Contraction Hierarchy over a {@link CompactGraph}.<br>
+ * Preprocessing contracts the vertices one by one, in order of edge difference
+ *  (shortcuts added minus edges removed) plus number of contracted neighbors.
+ *  When a vertex is contracted, a witness search checks for every pair of its
+ *  neighbors whether the path through it is the only shortest one, and if so
+ *  a shortcut edge replaces it. Queries are bidirectional searches which
+ *  only relax edges towards vertices contracted later, and found paths are
+ *  unpacked back to the original intersections.
+ *
+ * @author Miri Yehezkel
+ *
+ */
+final class ContractionHierarchy {
+	/** Maximal number of vertices a witness search settles before giving up */
+	private static final int WITNESS_SETTLE_LIMIT = 500;
+
+	/** Graph the hierarchy was built from */
+	private final CompactGraph graph;
+
+	/** Order in which each vertex was contracted */
+	private final int[] rank;
+
+	/** Start vertex of each edge, original edges and shortcuts */
+	private final int[] edgeFrom;
+
+	/** End vertex of each edge, original edges and shortcuts */
+	private final int[] edgeTo;
+
+	/** First half of each shortcut, {@code -1} for original edges */
+	private final int[] edgeFirstChild;
+
+	/** Second half of each shortcut, {@code -1} for original edges */
+	private final int[] edgeSecondChild;
+
+	/** Number of shortcuts added by preprocessing */
+	private final int numShortcuts;
+
+	/** Index of first upward edge of each vertex, {@code numVertices+1} entries */
+	private final int[] upFirst;
+
+	/** End vertex of each upward edge */
+	private final int[] upTarget;
+
+	/** Weight of each upward edge */
+	private final double[] upWeight;
+
+	/** Id of each upward edge in the edge arrays */
+	private final int[] upEdge;
+
+	/** Index of first downward edge of each vertex, {@code numVertices+1} entries */
+	private final int[] downFirst;
+
+	/** Start vertex of each downward edge, which is contracted after its end vertex */
+	private final int[] downSource;
+
+	/** Weight of each downward edge */
+	private final double[] downWeight;
+
+	/** Id of each downward edge in the edge arrays */
+	private final int[] downEdge;
+
+	/**
+	 * Builds a Contraction Hierarchy of a graph.
+	 * @param graph Graph to preprocess
+	 */
+	ContractionHierarchy(CompactGraph graph) {
+		this.graph = graph;
+		int n = graph.numVertices;
+		Builder builder = new Builder(graph);
+		builder.contractAll();
+
+		rank = builder.rank;
+		int m = builder.numEdges;
+		edgeFrom = Arrays.copyOf(builder.from, m);
+		edgeTo = Arrays.copyOf(builder.to, m);
+		edgeFirstChild = Arrays.copyOf(builder.firstChild, m);
+		edgeSecondChild = Arrays.copyOf(builder.secondChild, m);
+		numShortcuts = builder.numShortcuts;
+
+		//search graphs, counting sort of live edges by the vertex they are relaxed from
+		upFirst = new int[n + 1];
+		downFirst = new int[n + 1];
+		for (int e = 0; e < m; e++) {
+			if (!builder.live[e])
+				continue;
+			if (rank[edgeTo[e]] > rank[edgeFrom[e]])
+				upFirst[edgeFrom[e] + 1]++;
+			else
+				downFirst[edgeTo[e] + 1]++;
+		}
+		for (int v = 0; v < n; v++) {
+			upFirst[v + 1] += upFirst[v];
+			downFirst[v + 1] += downFirst[v];
+		}
+		upTarget = new int[upFirst[n]];
+		upWeight = new double[upFirst[n]];
+		upEdge = new int[upFirst[n]];
+		downSource = new int[downFirst[n]];
+		downWeight = new double[downFirst[n]];
+		downEdge = new int[downFirst[n]];
+		int[] nextUp = Arrays.copyOf(upFirst, n);
+		int[] nextDown = Arrays.copyOf(downFirst, n);
+		for (int e = 0; e < m; e++) {
+			if (!builder.live[e])
+				continue;
+			if (rank[edgeTo[e]] > rank[edgeFrom[e]]) {
+				int i = nextUp[edgeFrom[e]]++;
+				upTarget[i] = edgeTo[e];
+				upWeight[i] = builder.weight[e];
+				upEdge[i] = e;
+			}
+			else {
+				int i = nextDown[edgeTo[e]]++;
+				downSource[i] = edgeFrom[e];
+				downWeight[i] = builder.weight[e];
+				downEdge[i] = e;
+			}
+		}
+	}
+
+	CompactGraph getGraph() { return graph; }
+
+	int getNumShortcuts() { return numShortcuts; }
+
+	/**
+	 * Creates the state of a query, which can be reused for any number of
+	 *  queries on one thread.
+	 * @return A new {@link Query} on this hierarchy.
+	 */
+	Query newQuery() {
+		return new Query();
+	}
+
+	/**
+	 * Appends the end vertices of an edge to path, expanding shortcuts
+	 *  into the original intersections they bypass.
+	 */
+	private void unpack(int e, List<GeographicPoint> path) {
+		if (edgeFirstChild[e] < 0) {
+			path.add(graph.pointAt(edgeTo[e]));
+			return;
+		}
+		unpack(edgeFirstChild[e], path);
+		unpack(edgeSecondChild[e], path);
+	}
+
+	/**
+	 * State of a point-to-point query on the hierarchy.
+	 */
+	final class Query {
+		private final IndexedDaryHeap forwardHeap;
+		private final IndexedDaryHeap backwardHeap;
+		private final double[] forwardDistances;
+		private final double[] backwardDistances;
+		/** Edge by which each vertex was reached by forward search */
+		private final int[] forwardParentEdges;
+		/** Edge by which each vertex was reached by backward search */
+		private final int[] backwardParentEdges;
+		private final int[] touched;
+		private int numTouched;
+		private int settledCount;
+		private int start;
+		private int goal;
+		private int meeting;
+		private double bestDistance;
+
+		private Query() {
+			int n = graph.numVertices;
+			forwardHeap = new IndexedDaryHeap(n);
+			backwardHeap = new IndexedDaryHeap(n);
+			forwardDistances = new double[n];
+			backwardDistances = new double[n];
+			forwardParentEdges = new int[n];
+			backwardParentEdges = new int[n];
+			touched = new int[n];
+			Arrays.fill(forwardDistances, Double.POSITIVE_INFINITY);
+			Arrays.fill(backwardDistances, Double.POSITIVE_INFINITY);
+		}
+
+		/**
+		 * Finds the shortest path from start to goal.
+		 * @param start Vertex id of start
+		 * @param goal Vertex id of goal
+		 * @return {@code true} if found path, {@code false} otherwise.
+		 */
+		boolean search(int start, int goal) {
+			reset();
+			this.start = start;
+			this.goal = goal;
+			reach(forwardDistances, forwardParentEdges, start, -1, 0.0);
+			reach(backwardDistances, backwardParentEdges, goal, -1, 0.0);
+			forwardHeap.insert(start, 0.0);
+			backwardHeap.insert(goal, 0.0);
+			updateBest(start);
+
+			boolean forwardDone = false, backwardDone = false;
+			while (!forwardDone || !backwardDone) {
+				forwardDone = forwardDone || forwardHeap.isEmpty() || forwardHeap.peekKey() >= bestDistance;
+				backwardDone = backwardDone || backwardHeap.isEmpty() || backwardHeap.peekKey() >= bestDistance;
+				if (!forwardDone)
+					settleForward();
+				if (!backwardDone)
+					settleBackward();
+			}
+			return meeting >= 0;
+		}
+
+		private void settleForward() {
+			int curr = forwardHeap.poll();
+			settledCount++;
+			double currWeight = forwardDistances[curr];
+			for (int i = upFirst[curr]; i < upFirst[curr + 1]; i++) {
+				int next = upTarget[i];
+				double nextWeight = currWeight + upWeight[i];
+				if (nextWeight < forwardDistances[next]) {
+					reach(forwardDistances, forwardParentEdges, next, upEdge[i], nextWeight);
+					forwardHeap.insertOrDecrease(next, nextWeight);
+					updateBest(next);
+				}
+			}
+		}
+
+		private void settleBackward() {
+			int curr = backwardHeap.poll();
+			settledCount++;
+			double currWeight = backwardDistances[curr];
+			for (int i = downFirst[curr]; i < downFirst[curr + 1]; i++) {
+				int prev = downSource[i];
+				double prevWeight = currWeight + downWeight[i];
+				if (prevWeight < backwardDistances[prev]) {
+					reach(backwardDistances, backwardParentEdges, prev, downEdge[i], prevWeight);
+					backwardHeap.insertOrDecrease(prev, prevWeight);
+					updateBest(prev);
+				}
+			}
+		}
+
+		private void updateBest(int v) {
+			double total = forwardDistances[v] + backwardDistances[v];
+			if (total < bestDistance) {
+				bestDistance = total;
+				meeting = v;
+			}
+		}
+
+		/**
+		 * Gets the path found by last search, with shortcuts unpacked.
+		 * @return The list of intersections from start to goal, or {@code null} if path doesn't exist.
+		 */
+		List<GeographicPoint> getPath() {
+			if (meeting < 0)
+				return null;
+			LinkedList<Integer> edges = new LinkedList<>();
+			for (int v = meeting; v != start; v = edgeFrom[forwardParentEdges[v]])
+				edges.addFirst(forwardParentEdges[v]);
+			for (int v = meeting; v != goal; v = edgeTo[backwardParentEdges[v]])
+				edges.addLast(backwardParentEdges[v]);
+
+			List<GeographicPoint> path = new LinkedList<>();
+			path.add(graph.pointAt(start));
+			for (int e : edges)
+				unpack(e, path);
+			return path;
+		}
+
+		/**
+		 * Gets the length of the path found by last search.
+		 * @return The length of the shortest path, or infinity if path doesn't exist.
+		 */
+		double getDistance() { return bestDistance; }
+
+		ContractionHierarchy getHierarchy() { return ContractionHierarchy.this; }
+
+		int getSettledCount() { return settledCount; }
+
+		/**
+		 * Gets statistics of the heap operations performed by last search, by both directions.
+		 * @return The {@link SearchStats} of last search.
+		 */
+		SearchStats getStats() {
+			return new SearchStats(settledCount,
+					forwardHeap.getInsertCount() + backwardHeap.getInsertCount(),
+					forwardHeap.getPollCount() + backwardHeap.getPollCount(),
+					forwardHeap.getDecreaseKeyCount() + backwardHeap.getDecreaseKeyCount());
+		}
+
+		private void reach(double[] distances, int[] parentEdges, int v, int edge, double distance) {
+			if (forwardDistances[v] == Double.POSITIVE_INFINITY
+					&& backwardDistances[v] == Double.POSITIVE_INFINITY)
+				touched[numTouched++] = v;
+			distances[v] = distance;
+			parentEdges[v] = edge;
+		}
+
+		private void reset() {
+			for (int i = 0; i < numTouched; i++) {
+				forwardDistances[touched[i]] = Double.POSITIVE_INFINITY;
+				backwardDistances[touched[i]] = Double.POSITIVE_INFINITY;
+			}
+			numTouched = 0;
+			settledCount = 0;
+			meeting = -1;
+			bestDistance = Double.POSITIVE_INFINITY;
+			forwardHeap.clear();
+			backwardHeap.clear();
+			forwardHeap.resetCounters();
+			backwardHeap.resetCounters();
+		}
+	}
+
+	/**
+	 * Mutable graph used while contracting vertices.
+	 */
+	private static final class Builder {
+		final int numVertices;
+		int[] from;
+		int[] to;
+		double[] weight;
+		int[] firstChild;
+		int[] secondChild;
+		/** Whether edge is still part of the graph, i.e. not replaced by a shorter one */
+		boolean[] live;
+		int numEdges;
+		int numShortcuts;
+
+		/** Outgoing edge ids of each vertex */
+		final IntList[] outEdges;
+		/** Incoming edge ids of each vertex */
+		final IntList[] inEdges;
+
+		final boolean[] contracted;
+		final int[] contractedNeighbors;
+		final int[] rank;
+
+		/** Witness search state */
+		final IndexedDaryHeap witnessHeap;
+		final double[] witnessDistances;
+		final int[] witnessTouched;
+		int numWitnessTouched;
+
+		Builder(CompactGraph graph) {
+			numVertices = graph.numVertices;
+			int capacity = Math.max(16, graph.numEdges * 2);
+			from = new int[capacity];
+			to = new int[capacity];
+			weight = new double[capacity];
+			firstChild = new int[capacity];
+			secondChild = new int[capacity];
+			live = new boolean[capacity];
+			outEdges = new IntList[numVertices];
+			inEdges = new IntList[numVertices];
+			for (int v = 0; v < numVertices; v++) {
+				outEdges[v] = new IntList();
+				inEdges[v] = new IntList();
+			}
+			contracted = new boolean[numVertices];
+			contractedNeighbors = new int[numVertices];
+			rank = new int[numVertices];
+			witnessHeap = new IndexedDaryHeap(numVertices);
+			witnessDistances = new double[numVertices];
+			witnessTouched = new int[numVertices];
+			Arrays.fill(witnessDistances, Double.POSITIVE_INFINITY);
+
+			for (int e = 0; e < graph.numEdges; e++) {
+				int u = graph.edgeSource[e];
+				int w = graph.edgeTarget[e];
+				if (u != w)
+					addOrImproveEdge(u, w, graph.edgeLength[e], -1, -1);
+			}
+			numShortcuts = 0;
+		}
+
+		/**
+		 * Contracts all vertices, lazily updating priorities.
+		 */
+		void contractAll() {
+			IndexedDaryHeap order = new IndexedDaryHeap(numVertices);
+			for (int v = 0; v < numVertices; v++)
+				order.insert(v, priority(v));
+
+			int nextRank = 0;
+			while (!order.isEmpty()) {
+				int v = order.poll();
+				double p = priority(v);
+				if (!order.isEmpty() && p > order.peekKey()) {
+					order.insert(v, p);
+					continue;
+				}
+				contract(v, false);
+				contracted[v] = true;
+				rank[v] = nextRank++;
+
+				//neighbors' priorities changed
+				for (int i = 0; i < outEdges[v].size; i++)
+					updateNeighbor(to[outEdges[v].items[i]], order);
+				for (int i = 0; i < inEdges[v].size; i++)
+					updateNeighbor(from[inEdges[v].items[i]], order);
+			}
+		}
+
+		private void updateNeighbor(int x, IndexedDaryHeap order) {
+			if (contracted[x])
+				return;
+			contractedNeighbors[x]++;
+			order.changeKey(x, priority(x));
+		}
+
+		/**
+		 * Priority of vertex for contraction, lower is contracted first.
+		 */
+		private double priority(int v) {
+			int shortcuts = contract(v, true);
+			int removed = 0;
+			for (int i = 0; i < outEdges[v].size; i++)
+				if (isActive(outEdges[v].items[i], to))
+					removed++;
+			for (int i = 0; i < inEdges[v].size; i++)
+				if (isActive(inEdges[v].items[i], from))
+					removed++;
+			return shortcuts - removed + contractedNeighbors[v];
+		}
+
+		/** Whether edge is live and its other end is not contracted yet */
+		private boolean isActive(int e, int[] otherEnd) {
+			return live[e] && !contracted[otherEnd[e]];
+		}
+
+		/**
+		 * Contracts a vertex, adding the needed shortcuts between its neighbors.
+		 * @param v Vertex to contract
+		 * @param simulate Only count the shortcuts, without adding them
+		 * @return The number of shortcuts needed.
+		 */
+		private int contract(int v, boolean simulate) {
+			IntList in = inEdges[v];
+			IntList out = outEdges[v];
+			double maxOut = 0.0;
+			for (int j = 0; j < out.size; j++) {
+				int e2 = out.items[j];
+				if (isActive(e2, to))
+					maxOut = Math.max(maxOut, weight[e2]);
+			}
+
+			int shortcuts = 0;
+			for (int i = 0; i < in.size; i++) {
+				int e1 = in.items[i];
+				if (!isActive(e1, from))
+					continue;
+				int u = from[e1];
+				witnessSearch(u, v, weight[e1] + maxOut);
+				for (int j = 0; j < out.size; j++) {
+					int e2 = out.items[j];
+					if (!isActive(e2, to) || to[e2] == u)
+						continue;
+					int w = to[e2];
+					double viaWeight = weight[e1] + weight[e2];
+					if (witnessDistances[w] > viaWeight) {
+						shortcuts++;
+						if (!simulate)
+							addOrImproveEdge(u, w, viaWeight, e1, e2);
+					}
+				}
+			}
+			return shortcuts;
+		}
+
+		/**
+		 * Local Dijkstra's search from u which doesn't pass through v,
+		 *  bounded by distance and number of settled vertices.
+		 */
+		private void witnessSearch(int u, int v, double maxDistance) {
+			for (int i = 0; i < numWitnessTouched; i++)
+				witnessDistances[witnessTouched[i]] = Double.POSITIVE_INFINITY;
+			numWitnessTouched = 0;
+			witnessHeap.clear();
+
+			witnessDistances[u] = 0.0;
+			witnessTouched[numWitnessTouched++] = u;
+			witnessHeap.insert(u, 0.0);
+			int settled = 0;
+			while (!witnessHeap.isEmpty() && settled < WITNESS_SETTLE_LIMIT) {
+				if (witnessHeap.peekKey() > maxDistance)
+					break;
+				int curr = witnessHeap.poll();
+				settled++;
+				IntList out = outEdges[curr];
+				for (int i = 0; i < out.size; i++) {
+					int e = out.items[i];
+					int next = to[e];
+					if (!live[e] || contracted[next] || next == v)
+						continue;
+					double nextWeight = witnessDistances[curr] + weight[e];
+					if (nextWeight < witnessDistances[next]) {
+						if (witnessDistances[next] == Double.POSITIVE_INFINITY)
+							witnessTouched[numWitnessTouched++] = next;
+						witnessDistances[next] = nextWeight;
+						witnessHeap.insertOrDecrease(next, nextWeight);
+					}
+				}
+			}
+		}
+
+		/**
+		 * Adds an edge from u to w, unless an edge from u to w that is at
+		 *  least as short exists; a longer one is replaced.
+		 */
+		private void addOrImproveEdge(int u, int w, double edgeWeight, int child1, int child2) {
+			IntList out = outEdges[u];
+			for (int i = 0; i < out.size; i++) {
+				int e = out.items[i];
+				if (to[e] == w && live[e]) {
+					if (weight[e] <= edgeWeight)
+						return;
+					live[e] = false;
+				}
+			}
+			if (numEdges == from.length)
+				grow();
+			int e = numEdges++;
+			from[e] = u;
+			to[e] = w;
+			weight[e] = edgeWeight;
+			firstChild[e] = child1;
+			secondChild[e] = child2;
+			live[e] = true;
+			if (child1 >= 0)
+				numShortcuts++;
+			outEdges[u].add(e);
+			inEdges[w].add(e);
+		}
+
+		private void grow() {
+			int capacity = from.length * 2;
+			from = Arrays.copyOf(from, capacity);
+			to = Arrays.copyOf(to, capacity);
+			weight = Arrays.copyOf(weight, capacity);
+			firstChild = Arrays.copyOf(firstChild, capacity);
+			secondChild = Arrays.copyOf(secondChild, capacity);
+			live = Arrays.copyOf(live, capacity);
+		}
+	}
+
+	/**
+	 * A growable list of ints.
+	 */
+	private static final class IntList {
+		int[] items = new int[4];
+		int size;
+
+		void add(int item) {
+			if (size == items.length)
+				items = Arrays.copyOf(items, size * 2);
+			items[size++] = item;
+		}
+	}
+
+	@Override
+	public String toString() {
+		return "ContractionHierarchy [numVertices=" + graph.numVertices
+				+ ", numShortcuts=" + numShortcuts + "]";
+	}
+
+}
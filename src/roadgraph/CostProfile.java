@@ -0,0 +1,50 @@
+package roadgraph;
+
+/**
+ * A cost model of roads, used by searches in place of road length.<br>
+ * A profile is evaluated once per edge of the graph into an array of edge
+ *  weights, which is cached with the graph's search snapshot and reused by
+ *  every search with an equal profile, so a profile must always give the
+ *  same costs for the same road. Profiles without {@code equals} are cached
+ *  by instance, so they should be reused rather than created per search.
+ * 
+ * @author Miri Yehezkel
+ *
+ */
+public interface CostProfile {
+	
+	/** Profile whose cost of a road is its length in km */
+	CostProfile DISTANCE = new CostProfile() {
+		@Override
+		public double edgeCost(String roadName, String roadType, double length) {
+			return length;
+		}
+		
+		@Override
+		public double minCostPerKm() {
+			return 1;
+		}
+		
+		@Override
+		public String toString() {
+			return "CostProfile.DISTANCE";
+		}
+	};
+	
+	/**
+	 * Calculates the cost of traveling a road.
+	 * @param roadName The name of the road
+	 * @param roadType The type of the road
+	 * @param length The length of the road, in km
+	 * @return The cost of the road, must not be negative.
+	 */
+	double edgeCost(String roadName, String roadType, double length);
+	
+	/**
+	 * Gets a lower bound of the cost of a km of any road, used to derive an
+	 *  admissible A* heuristic from the straight-line distance to goal.
+	 * @return The lowest cost per km of any road, must not be negative.
+	 */
+	double minCostPerKm();
+	
+}
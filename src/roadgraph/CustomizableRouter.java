@@ -0,0 +1,499 @@
+package roadgraph;
+
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import geography.GeographicPoint;
+
+/**
+ * A router over a snapshot of a {@link MapGraph} whose edge weights can be
+ *  changed without repeating its preprocessing (Customizable Route Planning).<br>
+ * Preprocessing is split in two phases:
+ * <ul>
+ * <li>Partition, which doesn't depend on weights and is done once: vertices
+ *  are recursively bisected by coordinates into nested cells, each level
+ *  grouping four cells of the level below. A boundary vertex of a level has
+ *  an edge to or from another cell of that level.</li>
+ * <li>Customization, which computes the shortest distance inside each cell
+ *  between each pair of its boundary vertices (the cell's clique), bottom
+ *  up: a level 0 cell is searched on the graph, and a higher cell on the
+ *  cliques of its subcells. Cells of a level are customized in parallel,
+ *  and after weight changes only the cells containing changed edges are.</li>
+ * </ul>
+ * A query runs Dijkstra's search which uses the graph only in the level 0
+ *  cells of start and goal, and the cliques of the highest level cell not
+ *  containing them elsewhere. Clique edges of the route are then unpacked
+ *  by a search inside their cell.<br>
+ * Weight changes are collected by {@link #setEdgeWeight(GeographicPoint,
+ *  GeographicPoint, double)} and take effect when {@link #customize()}
+ *  publishes a new metric. Queries read the published metric, so any number
+ *  of threads can query while another customizes.
+ *
+ * @author Miri Yehezkel
+ *
+ */
+public final class CustomizableRouter {
+	/** Maximal number of vertices of a level 0 cell */
+	static final int LEAF_CELL_SIZE = 64;
+
+	/** Number of bisections between consecutive levels, so each cell has 4 subcells */
+	private static final int BISECTIONS_PER_LEVEL = 2;
+
+	/** Snapshot of the Map */
+	private final CompactGraph graph;
+
+	/** Number of levels of cells */
+	private final int numLevels;
+
+	/** Cell of each vertex on each level */
+	private final int[][] cellOf;
+
+	/** Start of each cell's boundary vertices in boundary, on each level */
+	private final int[][] firstBoundary;
+
+	/** Boundary vertices of cells, grouped by cell, on each level */
+	private final int[][] boundary;
+
+	/** Index of each vertex among its cell's boundary vertices on each level, or {@code -1} */
+	private final int[][] boundaryIndex;
+
+	/** Start of each cell's clique in the clique arrays, on each level */
+	private final int[][] firstClique;
+
+	/** Current edge weights and cliques */
+	private volatile Metric metric;
+
+	/** Edge weights changed since last customization, {@code null} if unchanged */
+	private double[] pendingWeights;
+
+	/** Whether each cell contains a changed edge since last customization, on each level */
+	private final boolean[][] dirty;
+
+	/** Edge each vertex was reached by during a query of each thread, {@code -1} for a clique edge */
+	private final ThreadLocal<int[]> reachedBy;
+
+	/**
+	 * Constructs a router, partitioning the snapshot and customizing it by a
+	 *  cost profile.
+	 * @param graph Snapshot of the Map
+	 * @param profile Cost model of roads giving the initial weights
+	 */
+	CustomizableRouter(CompactGraph graph, CostProfile profile) {
+		this.graph = graph;
+		int n = graph.numVertices;
+		reachedBy = ThreadLocal.withInitial(() -> new int[n]);
+
+		//partition
+		int depth = 0;
+		while ((n >> depth) > LEAF_CELL_SIZE)
+			depth++;
+		int[] leafOf = new int[n];
+		int[] order = new int[n];
+		for (int v = 0; v < n; v++)
+			order[v] = v;
+		bisect(order, 0, n, depth, 0, leafOf);
+		numLevels = Math.max(1, (depth + BISECTIONS_PER_LEVEL - 1) / BISECTIONS_PER_LEVEL);
+		cellOf = new int[numLevels][];
+		for (int l = 0; l < numLevels; l++) {
+			int shift = l * BISECTIONS_PER_LEVEL;
+			cellOf[l] = new int[n];
+			for (int v = 0; v < n; v++)
+				cellOf[l][v] = leafOf[v] >> shift;
+		}
+
+		//boundary vertices and clique layout of each level
+		firstBoundary = new int[numLevels][];
+		boundary = new int[numLevels][];
+		boundaryIndex = new int[numLevels][];
+		firstClique = new int[numLevels][];
+		dirty = new boolean[numLevels][];
+		for (int l = 0; l < numLevels; l++) {
+			int numCells = ((1 << depth) >> (l * BISECTIONS_PER_LEVEL));
+			int[] cells = cellOf[l];
+			boolean[] isBoundary = new boolean[n];
+			for (int e = 0; e < graph.numEdges; e++) {
+				int u = graph.edgeSource[e];
+				int v = graph.edgeTarget[e];
+				if (cells[u] != cells[v]) {
+					isBoundary[u] = true;
+					isBoundary[v] = true;
+				}
+			}
+			int[] first = new int[numCells + 1];
+			for (int v = 0; v < n; v++)
+				if (isBoundary[v])
+					first[cells[v] + 1]++;
+			for (int c = 0; c < numCells; c++)
+				first[c + 1] += first[c];
+			int[] vertices = new int[first[numCells]];
+			int[] index = new int[n];
+			Arrays.fill(index, -1);
+			int[] next = Arrays.copyOf(first, numCells);
+			for (int v = 0; v < n; v++) {
+				if (isBoundary[v]) {
+					int c = cells[v];
+					index[v] = next[c] - first[c];
+					vertices[next[c]++] = v;
+				}
+			}
+			int[] clique = new int[numCells + 1];
+			for (int c = 0; c < numCells; c++) {
+				int k = first[c + 1] - first[c];
+				clique[c + 1] = clique[c] + k * k;
+			}
+			firstBoundary[l] = first;
+			boundary[l] = vertices;
+			boundaryIndex[l] = index;
+			firstClique[l] = clique;
+			dirty[l] = new boolean[numCells];
+		}
+
+		double[][] cliques = new double[numLevels][];
+		for (int l = 0; l < numLevels; l++) {
+			cliques[l] = new double[firstClique[l][firstClique[l].length - 1]];
+			Arrays.fill(dirty[l], true);
+		}
+		metric = customize(graph.weights(profile).clone(), cliques);
+	}
+
+	/**
+	 * Recursively bisects a range of vertices by the median of their wider
+	 *  coordinate, numbering the leaf cells of the range from firstLeaf.
+	 */
+	private void bisect(int[] order, int lo, int hi, int depth, int firstLeaf, int[] leafOf) {
+		if (depth == 0) {
+			for (int i = lo; i < hi; i++)
+				leafOf[order[i]] = firstLeaf;
+			return;
+		}
+		double minLat = Double.POSITIVE_INFINITY, maxLat = Double.NEGATIVE_INFINITY;
+		double minLon = Double.POSITIVE_INFINITY, maxLon = Double.NEGATIVE_INFINITY;
+		for (int i = lo; i < hi; i++) {
+			int v = order[i];
+			minLat = Math.min(minLat, graph.lat[v]);
+			maxLat = Math.max(maxLat, graph.lat[v]);
+			minLon = Math.min(minLon, graph.lon[v]);
+			maxLon = Math.max(maxLon, graph.lon[v]);
+		}
+		double lonScale = Math.cos(Math.toRadians((minLat + maxLat) / 2));
+		double[] key = maxLat - minLat >= (maxLon - minLon) * lonScale ? graph.lat : graph.lon;
+		int mid = (lo + hi) >>> 1;
+		if (hi - lo > 1)
+			select(order, lo, hi - 1, mid, key);
+		bisect(order, lo, mid, depth - 1, 2 * firstLeaf, leafOf);
+		bisect(order, mid, hi, depth - 1, 2 * firstLeaf + 1, leafOf);
+	}
+
+	/**
+	 * Partially sorts vertices in {@code [lo, hi]} by key so that the k-th vertex is in place.
+	 */
+	private static void select(int[] order, int lo, int hi, int k, double[] key) {
+		while (lo < hi) {
+			double pivot = key[order[(lo + hi) >>> 1]];
+			int i = lo;
+			int j = hi;
+			while (i <= j) {
+				while (key[order[i]] < pivot)
+					i++;
+				while (key[order[j]] > pivot)
+					j--;
+				if (i <= j) {
+					int tmp = order[i];
+					order[i++] = order[j];
+					order[j--] = tmp;
+				}
+			}
+			if (k <= j)
+				hi = j;
+			else if (k >= i)
+				lo = i;
+			else
+				return;
+		}
+	}
+
+	/**
+	 * Changes the weight of the edges from one intersection to another. The
+	 *  change takes effect on the next {@link #customize()}.
+	 * @param from The starting point of the edge
+	 * @param to The ending point of the edge
+	 * @param weight The new weight, or {@link Double#POSITIVE_INFINITY} to close the road
+	 * @throws IllegalArgumentException If there is no edge from one point to
+	 *   the other, or if weight is negative or not a number.
+	 */
+	public synchronized void setEdgeWeight(GeographicPoint from, GeographicPoint to, double weight)
+			throws IllegalArgumentException {
+		if (!(weight >= 0))
+			throw new IllegalArgumentException("Weight must be greater than or equal to 0",
+					new Throwable("weight=" + weight));
+		int u = from == null ? -1 : graph.indexOf(from);
+		int v = to == null ? -1 : graph.indexOf(to);
+		boolean found = false;
+		if (u >= 0 && v >= 0) {
+			for (int e = graph.firstEdge[u]; e < graph.firstEdge[u + 1]; e++) {
+				if (graph.edgeTarget[e] != v)
+					continue;
+				if (pendingWeights == null)
+					pendingWeights = metric.weights.clone();
+				pendingWeights[e] = weight;
+				found = true;
+			}
+		}
+		if (!found)
+			throw new IllegalArgumentException("Edge doesn't exist in Map",
+					new Throwable("from=" + from + ", to=" + to));
+		//the edge is inside the cells of all levels where its end points share a cell
+		for (int l = 0; l < numLevels; l++) {
+			if (cellOf[l][u] == cellOf[l][v])
+				dirty[l][cellOf[l][u]] = true;
+		}
+	}
+
+	/**
+	 * Recomputes the cliques of cells containing edges changed since the
+	 *  last customization, and publishes the new weights to queries.
+	 */
+	public synchronized void customize() {
+		if (pendingWeights == null)
+			return;
+		Metric current = metric;
+		double[][] cliques = new double[numLevels][];
+		for (int l = 0; l < numLevels; l++)
+			cliques[l] = current.cliques[l].clone();
+		metric = customize(pendingWeights, cliques);
+		pendingWeights = null;
+	}
+
+	/**
+	 * Recomputes the cliques of dirty cells in place, level by level, and
+	 *  clears their dirty state.
+	 * @return The metric of the weights and cliques.
+	 */
+	private Metric customize(double[] weights, double[][] cliques) {
+		for (int l = 0; l < numLevels; l++) {
+			final int level = l;
+			boolean[] dirtyCells = dirty[l];
+			IntStream.range(0, dirtyCells.length).parallel()
+				.filter(c -> dirtyCells[c])
+				.forEach(c -> customizeCell(level, c, weights, cliques));
+			//a changed cell changes the clique of the cell containing it
+			for (int c = 0; c < dirtyCells.length; c++) {
+				if (dirtyCells[c]) {
+					dirtyCells[c] = false;
+					if (l + 1 < numLevels)
+						dirty[l + 1][c >> BISECTIONS_PER_LEVEL] = true;
+				}
+			}
+		}
+		return new Metric(weights, cliques);
+	}
+
+	/**
+	 * Computes the clique of a cell: a search from each of its boundary
+	 *  vertices inside the cell, on the graph for level 0 and on the cliques
+	 *  of its subcells for higher levels.
+	 */
+	private void customizeCell(int level, int cell, double[] weights, double[][] cliques) {
+		int first = firstBoundary[level][cell];
+		int k = firstBoundary[level][cell + 1] - first;
+		int offset = firstClique[level][cell];
+		double[] clique = cliques[level];
+		for (int i = 0; i < k; i++) {
+			SearchWorkspace ws = SearchWorkspace.get(SearchWorkspace.FORWARD, graph.numVertices);
+			try {
+				IndexedDaryHeap heap = ws.getHeap();
+				int source = boundary[level][first + i];
+				ws.reach(source, -1, 0.0);
+				heap.insert(source, 0.0);
+				while (!heap.isEmpty()) {
+					int curr = heap.poll();
+					ws.settle(curr);
+					double currWeight = ws.getDistance(curr);
+					if (level == 0) {
+						for (int e = graph.firstEdge[curr]; e < graph.firstEdge[curr + 1]; e++) {
+							int next = graph.edgeTarget[e];
+							if (cellOf[0][next] == cell)
+								relax(ws, heap, curr, next, currWeight + weights[e]);
+						}
+						continue;
+					}
+					//on the level below: clique of curr's subcell, and edges between subcells
+					int sub = level - 1;
+					int subCell = cellOf[sub][curr];
+					int subFirst = firstBoundary[sub][subCell];
+					int subK = firstBoundary[sub][subCell + 1] - subFirst;
+					int row = firstClique[sub][subCell] + boundaryIndex[sub][curr] * subK;
+					for (int j = 0; j < subK; j++)
+						relax(ws, heap, curr, boundary[sub][subFirst + j],
+								currWeight + cliques[sub][row + j]);
+					for (int e = graph.firstEdge[curr]; e < graph.firstEdge[curr + 1]; e++) {
+						int next = graph.edgeTarget[e];
+						if (cellOf[level][next] == cell && cellOf[sub][next] != subCell)
+							relax(ws, heap, curr, next, currWeight + weights[e]);
+					}
+				}
+				for (int j = 0; j < k; j++)
+					clique[offset + i * k + j] = ws.getDistance(boundary[level][first + j]);
+			} finally {
+				ws.release();
+			}
+		}
+	}
+
+	private static boolean relax(SearchWorkspace ws, IndexedDaryHeap heap, int curr, int next,
+			double nextWeight) {
+		if (nextWeight == Double.POSITIVE_INFINITY || ws.isSettled(next))
+			return false;
+		if (nextWeight < ws.getDistance(next)) {
+			ws.reach(next, curr, nextWeight);
+			heap.insertOrDecrease(next, nextWeight);
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Finds the shortest route from start to goal by the published weights.
+	 * @param start The starting location
+	 * @param goal The goal location
+	 * @return The list of intersections that form the shortest route from start
+	 *   to goal (including both start and goal), or {@code null} if route doesn't
+	 *   exist or the locations are not in the graph.
+	 */
+	public List<GeographicPoint> route(GeographicPoint start, GeographicPoint goal) {
+		if (start == null || goal == null)
+			return null;
+		int s = graph.indexOf(start);
+		int t = graph.indexOf(goal);
+		if (s < 0 || t < 0)
+			return null;
+		Metric m = metric;
+		int[] via = reachedBy.get();
+		SearchWorkspace ws = SearchWorkspace.get(SearchWorkspace.FORWARD, graph.numVertices);
+		try {
+			IndexedDaryHeap heap = ws.getHeap();
+			ws.reach(s, -1, 0.0);
+			heap.insert(s, 0.0);
+			boolean found = false;
+			while (!heap.isEmpty()) {
+				int curr = heap.poll();
+				ws.settle(curr);
+				if (curr == t) {
+					found = true;
+					break;
+				}
+				double currWeight = ws.getDistance(curr);
+				int level = queryLevel(curr, s, t);
+				if (level >= 0) {
+					int cell = cellOf[level][curr];
+					int first = firstBoundary[level][cell];
+					int k = firstBoundary[level][cell + 1] - first;
+					int row = firstClique[level][cell] + boundaryIndex[level][curr] * k;
+					for (int j = 0; j < k; j++) {
+						int next = boundary[level][first + j];
+						if (relax(ws, heap, curr, next, currWeight + m.cliques[level][row + j]))
+							via[next] = -1;
+					}
+				}
+				for (int e = graph.firstEdge[curr]; e < graph.firstEdge[curr + 1]; e++) {
+					int next = graph.edgeTarget[e];
+					if ((level < 0 || cellOf[level][next] != cellOf[level][curr])
+							&& relax(ws, heap, curr, next, currWeight + m.weights[e]))
+						via[next] = e;
+				}
+			}
+			if (!found)
+				return null;
+
+			//unpack clique edges of the search tree path, from goal back to start
+			int[] parents = ws.getParents();
+			LinkedList<GeographicPoint> path = new LinkedList<>();
+			int curr = t;
+			while (curr != s) {
+				int prev = parents[curr];
+				if (via[curr] >= 0)
+					path.addFirst(graph.pointAt(curr));
+				else
+					unpack(m, prev, curr, queryLevel(prev, s, t), path);
+				curr = prev;
+			}
+			path.addFirst(graph.pointAt(s));
+			return path;
+		} finally {
+			ws.release();
+		}
+	}
+
+	/**
+	 * Gets the level whose cliques are used at a vertex during a query: the
+	 *  highest level where its cell contains neither start nor goal.
+	 * @return The level, or {@code -1} if the vertex shares a level 0 cell
+	 *   with start or goal, so the graph is used.
+	 */
+	private int queryLevel(int v, int s, int t) {
+		for (int l = numLevels - 1; l >= 0; l--) {
+			int cell = cellOf[l][v];
+			if (cell != cellOf[l][s] && cell != cellOf[l][t])
+				return l;
+		}
+		return -1;
+	}
+
+	/**
+	 * Adds the path of a clique edge, excluding from, to the front of path,
+	 *  by a search on the graph inside the edge's cell.
+	 */
+	private void unpack(Metric m, int from, int to, int level, LinkedList<GeographicPoint> path) {
+		int cell = cellOf[level][from];
+		int[] cells = cellOf[level];
+		SearchWorkspace ws = SearchWorkspace.get(SearchWorkspace.BACKWARD, graph.numVertices);
+		try {
+			IndexedDaryHeap heap = ws.getHeap();
+			ws.reach(from, -1, 0.0);
+			heap.insert(from, 0.0);
+			while (!heap.isEmpty()) {
+				int curr = heap.poll();
+				ws.settle(curr);
+				if (curr == to)
+					break;
+				double currWeight = ws.getDistance(curr);
+				for (int e = graph.firstEdge[curr]; e < graph.firstEdge[curr + 1]; e++) {
+					int next = graph.edgeTarget[e];
+					if (cells[next] == cell)
+						relax(ws, heap, curr, next, currWeight + m.weights[e]);
+				}
+			}
+			int[] parents = ws.getParents();
+			for (int curr = to; curr != from; curr = parents[curr])
+				path.addFirst(graph.pointAt(curr));
+		} finally {
+			ws.release();
+		}
+	}
+
+	int getNumLevels() { return numLevels; }
+
+	/**
+	 * Edge weights and the cliques customized for them, never changed once published.
+	 */
+	private static final class Metric {
+		/** Weight of each edge */
+		final double[] weights;
+
+		/** Clique distances of each level, by cell and boundary vertex pair */
+		final double[][] cliques;
+
+		Metric(double[] weights, double[][] cliques) {
+			this.weights = weights;
+			this.cliques = cliques;
+		}
+	}
+
+	@Override
+	public String toString() {
+		return "CustomizableRouter [graph=" + graph + ", numLevels=" + numLevels + "]";
+	}
+
+}
@@ -0,0 +1,307 @@
+package roadgraph;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.stream.IntStream;
+
+/**
+ * Parallel single-source shortest paths by delta-stepping over a
+ *  {@link CompactGraph}.<br>
+ * Vertices are kept in buckets of tentative distance of width delta. The
+ *  lowest bucket is emptied in phases which relax its vertices' light edges
+ *  (at most delta) in parallel, until no vertex re-enters it; then the heavy
+ *  edges of all vertices removed from it are relaxed in parallel. Distances
+ *  are lowered with compare-and-set on their bits, which are ordered like
+ *  the distances since they are never negative.<br>
+ * Parents are chosen after all distances are final: the first in-edge whose
+ *  tail is nearer and gives the exact distance. So the distances equal
+ *  Dijkstra's bit for bit, and the tree doesn't depend on thread timing.
+ *
+ * @author Miri Yehezkel
+ *
+ */
+final class DeltaStepping {
+	/** Number of vertices relaxed by one task */
+	private static final int CHUNK_SIZE = 256;
+
+	/** Bits of an infinite distance */
+	private static final long INFINITY_BITS = Double.doubleToRawLongBits(Double.POSITIVE_INFINITY);
+
+	/** Graph to search */
+	private final CompactGraph graph;
+
+	/** Weight of each edge */
+	private final double[] weights;
+
+	/** Width of a bucket */
+	private final double delta;
+
+	/** Pool relaxations run on */
+	private final ForkJoinPool pool;
+
+	/** Bits of the tentative distance of each vertex */
+	private final AtomicLongArray distances;
+
+	/** Phase in which each vertex was last added to a frontier */
+	private final AtomicIntegerArray frontierStamps;
+
+	/** Bucket, by order of processing, from which each vertex was last removed */
+	private final int[] removedStamps;
+
+	/** Current phase */
+	private int phase;
+
+	/**
+	 * Constructs a search.
+	 * @param graph Graph to search
+	 * @param weights Weight of each edge, by edge id, never negative
+	 * @param delta Width of a bucket, positive
+	 * @param pool Pool relaxations run on
+	 */
+	DeltaStepping(CompactGraph graph, double[] weights, double delta, ForkJoinPool pool) {
+		this.graph = graph;
+		this.weights = weights;
+		this.delta = delta;
+		this.pool = pool;
+		distances = new AtomicLongArray(graph.numVertices);
+		frontierStamps = new AtomicIntegerArray(graph.numVertices);
+		removedStamps = new int[graph.numVertices];
+	}
+
+	/**
+	 * Computes the mean finite weight of the edges, a bucket width which
+	 *  keeps most edges light.
+	 * @param weights Weight of each edge
+	 * @return The mean weight, or 1 if there are no edges of positive weight.
+	 */
+	static double defaultDelta(double[] weights) {
+		double sum = 0;
+		int count = 0;
+		for (double w : weights) {
+			if (w < Double.POSITIVE_INFINITY) {
+				sum += w;
+				count++;
+			}
+		}
+		return sum > 0 ? sum / count : 1;
+	}
+
+	/**
+	 * Computes the shortest-path tree of a source.
+	 * @param source Vertex id of source
+	 * @return The {@link ShortestPathTree} of source.
+	 */
+	ShortestPathTree run(int source) {
+		int n = graph.numVertices;
+		for (int v = 0; v < n; v++)
+			distances.set(v, INFINITY_BITS);
+		distances.set(source, Double.doubleToRawLongBits(0.0));
+
+		TreeMap<Long, IntList> buckets = new TreeMap<>();
+		buckets.put(0L, IntList.of(source));
+		int bucketOrder = 0;
+		while (!buckets.isEmpty()) {
+			Map.Entry<Long, IntList> entry = buckets.pollFirstEntry();
+			long bucket = entry.getKey();
+			bucketOrder++;
+			int[] frontier = frontier(entry.getValue(), bucket);
+			IntList removed = new IntList();
+			while (frontier.length > 0) {
+				for (int v : frontier) {
+					if (removedStamps[v] != bucketOrder) {
+						removedStamps[v] = bucketOrder;
+						removed.add(v);
+					}
+				}
+				frontier = relax(frontier, bucket, true, buckets);
+			}
+			//heavy edges lead to later buckets, unless rounding puts a vertex back in this one
+			int[] again = relax(removed.toArray(), bucket, false, buckets);
+			if (again.length > 0)
+				buckets.put(bucket, IntList.of(again));
+		}
+
+		double[] result = new double[n];
+		for (int v = 0; v < n; v++)
+			result[v] = Double.longBitsToDouble(distances.get(v));
+		return new ShortestPathTree(graph, source, result, parents(source, result));
+	}
+
+	/**
+	 * Takes the vertices of a bucket which are still in it, once each.
+	 */
+	private int[] frontier(IntList candidates, long bucket) {
+		phase++;
+		IntList frontier = new IntList();
+		for (int i = 0; i < candidates.size; i++) {
+			int v = candidates.items[i];
+			if (bucketOf(v) == bucket && frontierStamps.get(v) != phase) {
+				frontierStamps.set(v, phase);
+				frontier.add(v);
+			}
+		}
+		return frontier.toArray();
+	}
+
+	/**
+	 * Relaxes the light or heavy edges of vertices in parallel.
+	 * @param vertices Vertices whose edges are relaxed
+	 * @param bucket Current bucket
+	 * @param light Whether to relax the light edges, or the heavy ones
+	 * @param buckets Buckets, to which vertices lowered to later buckets are added
+	 * @return The vertices lowered into the current bucket, once each.
+	 */
+	private int[] relax(int[] vertices, long bucket, boolean light, TreeMap<Long, IntList> buckets) {
+		int nextPhase = ++phase;
+		int numChunks = (vertices.length + CHUNK_SIZE - 1) / CHUNK_SIZE;
+		IntList[] near = new IntList[numChunks];
+		IntList[] far = new IntList[numChunks];
+		Runnable task = () -> IntStream.range(0, numChunks).parallel().forEach(chunk -> {
+			IntList nearOut = new IntList();
+			IntList farOut = new IntList();
+			int end = Math.min(vertices.length, (chunk + 1) * CHUNK_SIZE);
+			for (int i = chunk * CHUNK_SIZE; i < end; i++) {
+				int u = vertices[i];
+				double du = Double.longBitsToDouble(distances.get(u));
+				for (int e = graph.firstEdge[u]; e < graph.firstEdge[u + 1]; e++) {
+					double w = weights[e];
+					if (w <= delta != light)
+						continue;
+					int v = graph.edgeTarget[e];
+					if (!lower(v, du + w))
+						continue;
+					if (bucketOf(v) != bucket)
+						farOut.add(v);
+					else if (frontierStamps.getAndSet(v, nextPhase) != nextPhase)
+						nearOut.add(v);
+				}
+			}
+			near[chunk] = nearOut;
+			far[chunk] = farOut;
+		});
+		if (numChunks == 1)
+			task.run();
+		else
+			pool.submit(task).join();
+
+		IntList next = new IntList();
+		for (int chunk = 0; chunk < numChunks; chunk++) {
+			next.addAll(near[chunk]);
+			//a vertex lowered again into the current bucket is already in next
+			for (int i = 0; i < far[chunk].size; i++) {
+				int v = far[chunk].items[i];
+				long b = bucketOf(v);
+				if (b != bucket)
+					buckets.computeIfAbsent(b, k -> new IntList()).add(v);
+			}
+		}
+		return next.toArray();
+	}
+
+	/**
+	 * Lowers the distance of a vertex, if it is shorter.
+	 * @return {@code true} if the distance was lowered, {@code false} otherwise.
+	 */
+	private boolean lower(int v, double distance) {
+		long bits = Double.doubleToRawLongBits(distance);
+		while (true) {
+			long current = distances.get(v);
+			if (bits >= current)
+				return false;
+			if (distances.compareAndSet(v, current, bits))
+				return true;
+		}
+	}
+
+	private long bucketOf(int v) {
+		return (long) (Double.longBitsToDouble(distances.get(v)) / delta);
+	}
+
+	/**
+	 * Chooses the parent of each vertex from final distances.
+	 */
+	private int[] parents(int source, double[] dist) {
+		int n = graph.numVertices;
+		int[] parents = new int[n];
+		boolean[] pending = new boolean[n];
+		pool.submit(() -> IntStream.range(0, n).parallel().forEach(v -> {
+			parents[v] = -1;
+			if (v == source || dist[v] == Double.POSITIVE_INFINITY)
+				return;
+			for (int i = graph.firstInEdge[v]; i < graph.firstInEdge[v + 1]; i++) {
+				int e = graph.inEdge[i];
+				int u = graph.edgeSource[e];
+				if (dist[u] < dist[v] && dist[u] + weights[e] == dist[v]) {
+					parents[v] = u;
+					return;
+				}
+			}
+			pending[v] = true;
+		})).join();
+
+		//vertices reached only over edges of no length hang off the rest of the tree
+		boolean anyPending = false;
+		for (boolean p : pending)
+			anyPending |= p;
+		if (!anyPending)
+			return parents;
+		IntList queue = new IntList();
+		for (int v = 0; v < n; v++)
+			if (!pending[v] && dist[v] < Double.POSITIVE_INFINITY)
+				queue.add(v);
+		for (int head = 0; head < queue.size; head++) {
+			int u = queue.items[head];
+			for (int e = graph.firstEdge[u]; e < graph.firstEdge[u + 1]; e++) {
+				int v = graph.edgeTarget[e];
+				if (pending[v] && dist[u] + weights[e] == dist[v]) {
+					pending[v] = false;
+					parents[v] = u;
+					queue.add(v);
+				}
+			}
+		}
+		return parents;
+	}
+
+	/**
+	 * A growable list of ints.
+	 */
+	private static final class IntList {
+		int[] items = new int[8];
+		int size;
+
+		static IntList of(int... items) {
+			IntList list = new IntList();
+			for (int item : items)
+				list.add(item);
+			return list;
+		}
+
+		void add(int item) {
+			if (size == items.length)
+				items = Arrays.copyOf(items, size * 2);
+			items[size++] = item;
+		}
+
+		void addAll(IntList other) {
+			if (size + other.size > items.length)
+				items = Arrays.copyOf(items, Math.max(size + other.size, size * 2));
+			System.arraycopy(other.items, 0, items, size, other.size);
+			size += other.size;
+		}
+
+		int[] toArray() {
+			return Arrays.copyOf(items, size);
+		}
+	}
+
+	@Override
+	public String toString() {
+		return "DeltaStepping [graph=" + graph + ", delta=" + delta + "]";
+	}
+
+}
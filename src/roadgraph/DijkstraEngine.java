@@ -0,0 +1,414 @@
+package roadgraph;
+
+import java.util.function.Consumer;
+import java.util.function.IntPredicate;
+import java.util.function.IntToDoubleFunction;
+
+import geography.GeographicPoint;
+
+/**
+ * Dijkstra's, A* and breadth-first search over a {@link CompactGraph}.<br>
+ * Uses an {@link IndexedDaryHeap} with decrease-key and the primitive arrays
+ *  of the calling thread's {@link SearchWorkspace}, so a search doesn't
+ *  allocate per relaxed edge. The results of a search stay valid until the
+ *  next search on the same thread and workspace slot; a search started by a
+ *  hook of a running search gets a nested workspace, so it leaves the
+ *  running one intact. An engine is not thread-safe.
+ *
+ * @author Miri Yehezkel
+ *
+ */
+final class DijkstraEngine {
+	/** Graph to search */
+	private final CompactGraph graph;
+
+	/** Workspace slot used by searches */
+	private final int slot;
+
+	/** Workspace of last search */
+	private SearchWorkspace workspace;
+
+	/**
+	 * Constructs an engine for a graph, using the forward workspace slot.
+	 * @param graph Graph to search
+	 */
+	DijkstraEngine(CompactGraph graph) {
+		this(graph, SearchWorkspace.FORWARD);
+	}
+
+	/**
+	 * Constructs an engine for a graph.
+	 * @param graph Graph to search
+	 * @param slot Workspace slot used by searches
+	 */
+	DijkstraEngine(CompactGraph graph, int slot) {
+		this.graph = graph;
+		this.slot = slot;
+	}
+
+	CompactGraph getGraph() { return graph; }
+
+	/**
+	 * Performs a search from start until goal is settled.
+	 * @param start Vertex id of start
+	 * @param goal Vertex id of goal, or {@code -1} to settle all reachable vertices
+	 * @param heuristic Lower bound of distance from a vertex to goal,
+	 *   or {@code null} for Dijkstra's search
+	 * @param nodeSearched A hook for visualization
+	 * @return {@code true} if goal was reached (or no goal was given), {@code false} otherwise.
+	 */
+	boolean search(int start, int goal, IntToDoubleFunction heuristic,
+			Consumer<GeographicPoint> nodeSearched) {
+		return search(start, goal, graph.edgeLength, heuristic, nodeSearched);
+	}
+
+	/**
+	 * Performs a search from start until goal is settled, by edge weights.
+	 * @param start Vertex id of start
+	 * @param goal Vertex id of goal, or {@code -1} to settle all reachable vertices
+	 * @param weights Weight of each edge, by edge id
+	 * @param heuristic Lower bound of weighted distance from a vertex to goal,
+	 *   or {@code null} for Dijkstra's search
+	 * @param nodeSearched A hook for visualization
+	 * @return {@code true} if goal was reached (or no goal was given), {@code false} otherwise.
+	 */
+	boolean search(int start, int goal, double[] weights, IntToDoubleFunction heuristic,
+			Consumer<GeographicPoint> nodeSearched) {
+		return search(start, goal, weights, heuristic, null, nodeSearched);
+	}
+
+	/**
+	 * Performs a search from start until goal is settled, by edge weights,
+	 *  following only edges accepted by a filter.
+	 * @param start Vertex id of start
+	 * @param goal Vertex id of goal, or {@code -1} to settle all reachable vertices
+	 * @param weights Weight of each edge, by edge id
+	 * @param heuristic Lower bound of weighted distance from a vertex to goal,
+	 *   or {@code null} for Dijkstra's search
+	 * @param edgeFilter Whether each edge id may be followed, or {@code null} for all edges
+	 * @param nodeSearched A hook for visualization
+	 * @return {@code true} if goal was reached (or no goal was given), {@code false} otherwise.
+	 */
+	boolean search(int start, int goal, double[] weights, IntToDoubleFunction heuristic,
+			IntPredicate edgeFilter, Consumer<GeographicPoint> nodeSearched) {
+		SearchWorkspace ws = workspace = SearchWorkspace.get(slot, graph.numVertices);
+		try {
+			IndexedDaryHeap heap = ws.getHeap();
+			ws.reach(start, -1, 0.0);
+			heap.insert(start, heuristic == null ? 0.0 : heuristic.applyAsDouble(start));
+
+			while (!heap.isEmpty()) {
+				int curr = heap.poll();
+				ws.settle(curr);
+				nodeSearched.accept(graph.pointAt(curr)); //visualization for search
+
+				if (curr == goal)
+					return true;
+
+				double currWeight = ws.getDistance(curr);
+				for (int e = graph.firstEdge[curr]; e < graph.firstEdge[curr + 1]; e++) {
+					int next = graph.edgeTarget[e];
+					if (ws.isSettled(next) || edgeFilter != null && !edgeFilter.test(e))
+						continue;
+					double nextWeight = currWeight + weights[e];
+					if (nextWeight < ws.getDistance(next)) {
+						ws.reach(next, curr, nextWeight);
+						double priority = heuristic == null ? nextWeight
+								: nextWeight + heuristic.applyAsDouble(next);
+						heap.insertOrDecrease(next, priority);
+					}
+				}
+			}
+			return goal < 0;
+		} finally {
+			ws.release();
+		}
+	}
+
+	/**
+	 * Performs an edge-based search from start until goal is reached, by edge
+	 *  weights and turn costs.<br>
+	 * The states of the search are the edge ids of the graph, and the turns
+	 *  out of an edge are the edges out of its target, so no expanded graph
+	 *  is built. Distances and parents of last search are by edge id: the
+	 *  distance of an edge includes its own weight, and its parent is the
+	 *  edge before it, or {@code -1} for an edge out of start.
+	 * @param start Vertex id of start
+	 * @param goal Vertex id of goal, other than start
+	 * @param weights Weight of each edge, by edge id
+	 * @param turns Costs of turns between edges
+	 * @param heuristic Lower bound of weighted distance from a vertex to goal,
+	 *   or {@code null} for Dijkstra's search
+	 * @param nodeSearched A hook for visualization
+	 * @return The edge id of the last edge of the path, into goal,
+	 *   or {@code -1} if goal wasn't reached.
+	 */
+	int searchWithTurns(int start, int goal, double[] weights, TurnCostTable turns,
+			IntToDoubleFunction heuristic, Consumer<GeographicPoint> nodeSearched) {
+		SearchWorkspace ws = workspace = SearchWorkspace.get(slot, graph.numEdges);
+		try {
+			IndexedDaryHeap heap = ws.getHeap();
+			for (int e = graph.firstEdge[start]; e < graph.firstEdge[start + 1]; e++) {
+				double weight = weights[e];
+				if (weight < ws.getDistance(e)) {
+					ws.reach(e, -1, weight);
+					heap.insertOrDecrease(e, heuristic == null ? weight
+							: weight + heuristic.applyAsDouble(graph.edgeTarget[e]));
+				}
+			}
+			nodeSearched.accept(graph.pointAt(start)); //visualization for search
+
+			while (!heap.isEmpty()) {
+				int curr = heap.poll();
+				ws.settle(curr);
+				int via = graph.edgeTarget[curr];
+				nodeSearched.accept(graph.pointAt(via)); //visualization for search
+
+				if (via == goal)
+					return curr;
+
+				double currWeight = ws.getDistance(curr);
+				for (int e = graph.firstEdge[via]; e < graph.firstEdge[via + 1]; e++) {
+					if (ws.isSettled(e))
+						continue;
+					double nextWeight = currWeight + turns.cost(curr, e) + weights[e];
+					if (nextWeight < ws.getDistance(e)) {
+						ws.reach(e, curr, nextWeight);
+						double priority = heuristic == null ? nextWeight
+								: nextWeight + heuristic.applyAsDouble(graph.edgeTarget[e]);
+						heap.insertOrDecrease(e, priority);
+					}
+				}
+			}
+			return -1;
+		} finally {
+			ws.release();
+		}
+	}
+
+	/**
+	 * Performs a breadth-first search from start until goal is reached,
+	 *  ignoring edge lengths.
+	 * @param start Vertex id of start
+	 * @param goal Vertex id of goal
+	 * @param nodeSearched A hook for visualization
+	 * @return {@code true} if goal was reached, {@code false} otherwise.
+	 */
+	boolean searchUnweighted(int start, int goal, Consumer<GeographicPoint> nodeSearched) {
+		SearchWorkspace ws = workspace = SearchWorkspace.get(slot, graph.numVertices);
+		try {
+			//array-based queue, each vertex is enqueued at most once
+			int[] toExplore = ws.getQueue();
+			int head = 0, tail = 0;
+
+			ws.reach(start, -1, 0.0);
+			toExplore[tail++] = start;
+
+			while (head < tail) {
+				int curr = toExplore[head++];
+				ws.settle(curr);
+				nodeSearched.accept(graph.pointAt(curr)); //visualization for search
+				if (curr == goal)
+					return true;
+
+				double nextWeight = ws.getDistance(curr) + 1;
+				for (int e = graph.firstEdge[curr]; e < graph.firstEdge[curr + 1]; e++) {
+					int next = graph.edgeTarget[e];
+					if (!ws.isReached(next)) {
+						ws.reach(next, curr, nextWeight);
+						toExplore[tail++] = next;
+					}
+				}
+			}
+			return false;
+		} finally {
+			ws.release();
+		}
+	}
+
+	/**
+	 * Performs a one-to-many search from start until all targets are settled.
+	 * @param start Vertex id of start
+	 * @param isTarget Whether each vertex is a target
+	 * @param numTargets Number of distinct targets
+	 * @return {@code true} if all targets were reached, {@code false} otherwise.
+	 */
+	boolean searchMany(int start, boolean[] isTarget, int numTargets) {
+		SearchWorkspace ws = workspace = SearchWorkspace.get(slot, graph.numVertices);
+		try {
+			IndexedDaryHeap heap = ws.getHeap();
+			ws.reach(start, -1, 0.0);
+			heap.insert(start, 0.0);
+			int remaining = numTargets;
+
+			while (!heap.isEmpty()) {
+				int curr = heap.poll();
+				ws.settle(curr);
+				if (isTarget[curr] && --remaining == 0)
+					return true;
+
+				double currWeight = ws.getDistance(curr);
+				for (int e = graph.firstEdge[curr]; e < graph.firstEdge[curr + 1]; e++) {
+					int next = graph.edgeTarget[e];
+					if (ws.isSettled(next))
+						continue;
+					double nextWeight = currWeight + graph.edgeLength[e];
+					if (nextWeight < ws.getDistance(next)) {
+						ws.reach(next, curr, nextWeight);
+						heap.insertOrDecrease(next, nextWeight);
+					}
+				}
+			}
+			return remaining == 0;
+		} finally {
+			ws.release();
+		}
+	}
+
+	/**
+	 * Listener of a search truncated at a distance budget.
+	 */
+	interface ReachListener {
+		/**
+		 * Called when a vertex within budget is settled.
+		 * @param v Vertex id
+		 * @param distance Distance of vertex from start
+		 */
+		void vertexReached(int v, double distance);
+
+		/**
+		 * Called for an edge out of a settled vertex which leaves the budget.
+		 * @param e Edge id
+		 * @param reachedLength Length of edge within budget
+		 */
+		void edgeCut(int e, double reachedLength);
+	}
+
+	/**
+	 * Performs a search from start settling all vertices within a distance
+	 *  budget. Vertices beyond the budget never enter the heap, so the search
+	 *  stops as soon as the budget is exhausted.
+	 * @param start Vertex id of start
+	 * @param maxDistance Distance budget
+	 * @param listener Listener of reached vertices and cut edges
+	 */
+	void searchWithin(int start, double maxDistance, ReachListener listener) {
+		SearchWorkspace ws = workspace = SearchWorkspace.get(slot, graph.numVertices);
+		try {
+			IndexedDaryHeap heap = ws.getHeap();
+			ws.reach(start, -1, 0.0);
+			heap.insert(start, 0.0);
+
+			while (!heap.isEmpty()) {
+				int curr = heap.poll();
+				ws.settle(curr);
+				double currWeight = ws.getDistance(curr);
+				listener.vertexReached(curr, currWeight);
+
+				for (int e = graph.firstEdge[curr]; e < graph.firstEdge[curr + 1]; e++) {
+					double nextWeight = currWeight + graph.edgeLength[e];
+					if (nextWeight > maxDistance) {
+						listener.edgeCut(e, maxDistance - currWeight);
+						continue;
+					}
+					int next = graph.edgeTarget[e];
+					if (ws.isSettled(next))
+						continue;
+					if (nextWeight < ws.getDistance(next)) {
+						ws.reach(next, curr, nextWeight);
+						heap.insertOrDecrease(next, nextWeight);
+					}
+				}
+			}
+		} finally {
+			ws.release();
+		}
+	}
+
+	/**
+	 * Performs a search from source settling all vertices it can reach,
+	 *  or all vertices which can reach it.
+	 * @param source Vertex id of source
+	 * @param reverse Whether to follow edges backward, so that distances
+	 *   are distances to source
+	 */
+	void searchAll(int source, boolean reverse) {
+		searchAll(source, reverse, graph.edgeLength);
+	}
+
+	/**
+	 * Performs a search from source by edge weights, settling all vertices it
+	 *  can reach, or all vertices which can reach it.
+	 * @param source Vertex id of source
+	 * @param reverse Whether to follow edges backward, so that distances
+	 *   are distances to source and parents are next vertices toward source
+	 * @param weights Weight of each edge, by edge id
+	 */
+	void searchAll(int source, boolean reverse, double[] weights) {
+		if (!reverse) {
+			search(source, -1, weights, null, v -> {});
+			return;
+		}
+		SearchWorkspace ws = workspace = SearchWorkspace.get(slot, graph.numVertices);
+		try {
+			IndexedDaryHeap heap = ws.getHeap();
+			ws.reach(source, -1, 0.0);
+			heap.insert(source, 0.0);
+
+			while (!heap.isEmpty()) {
+				int curr = heap.poll();
+				ws.settle(curr);
+
+				double currWeight = ws.getDistance(curr);
+				for (int i = graph.firstInEdge[curr]; i < graph.firstInEdge[curr + 1]; i++) {
+					int e = graph.inEdge[i];
+					int prev = graph.edgeSource[e];
+					if (ws.isSettled(prev))
+						continue;
+					double prevWeight = currWeight + weights[e];
+					if (prevWeight < ws.getDistance(prev)) {
+						ws.reach(prev, curr, prevWeight);
+						heap.insertOrDecrease(prev, prevWeight);
+					}
+				}
+			}
+		} finally {
+			ws.release();
+		}
+	}
+
+	/**
+	 * Copies the distances of last search.
+	 * @param dest Array of at least {@code numVertices} entries, unreached
+	 *   vertices are set to infinity
+	 */
+	void copyDistances(double[] dest) {
+		workspace.copyDistances(dest, graph.numVertices);
+	}
+
+	/**
+	 * Gets the distance of a vertex from start of last search.
+	 * @param v Vertex id
+	 * @return The distance, or infinity if vertex wasn't reached.
+	 */
+	double getDistance(int v) { return workspace.getDistance(v); }
+
+	/**
+	 * Gets the parent array of last search, only valid for reached vertices.
+	 * @return The parent of each vertex on the shortest path from start.
+	 */
+	int[] getParents() { return workspace.getParents(); }
+
+	boolean isSettled(int v) { return workspace.isSettled(v); }
+
+	int getSettledCount() { return workspace.getSettledCount(); }
+
+	/**
+	 * Gets statistics of the heap operations performed by last search.
+	 * @return The {@link SearchStats} of last search.
+	 */
+	SearchStats getStats() {
+		return workspace.getStats();
+	}
+
+}
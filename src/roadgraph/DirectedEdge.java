@@ -7,17 +7,19 @@ import geography.GeographicPoint;
 /**
  * Represents a directed edge in a graph.<br>
  * Consists of start and end {@link GeographicPoint}s, road name (e.g. "Main street"),
- *  type (e.g. "residential") and length of road.
+ *  type (e.g. "residential") and length of road. The road name and type are
+ *  stored as their id and code in the {@link RoadDictionary} of the graph,
+ *  so edges are only comparable within a graph.
  * 
  * @author Miri Yehezkel
  *
  */
 class DirectedEdge {
-	/** Name of road in map	 */
-	private String roadName;
+	/** Id of name of road in map	 */
+	private int roadNameId;
 	
-	/** Type of road in map (residential, motorway etc.) */
-	private String roadType;
+	/** Code of type of road in map (residential, motorway etc.) */
+	private byte roadTypeCode;
 	
 	/** Length of road */
 	private double length;
@@ -30,26 +32,26 @@ class DirectedEdge {
 	
 	/**
 	 * Constructs a directed edge with data
-	 * @param roadName Name of road
-	 * @param roadType Type of road (residential, motorway etc.)
+	 * @param roadNameId Id of name of road
+	 * @param roadTypeCode Code of type of road (residential, motorway etc.)
 	 * @param length Length of road
 	 * @param start Start location on map
 	 * @param end End location on map
 	 */
-	DirectedEdge(String roadName, String roadType, double length, 
+	DirectedEdge(int roadNameId, byte roadTypeCode, double length, 
 			GeographicPoint start, GeographicPoint end) {
-		setRoadName(roadName);
-		setRoadType(roadType);
+		setRoadNameId(roadNameId);
+		setRoadTypeCode(roadTypeCode);
 		setLength(length);
 		setStart(start);
 		setEnd(end);
 	}
 	
-	String getRoadName() { return roadName; }
-	void setRoadName(String roadName) { this.roadName = roadName; }
+	int getRoadNameId() { return roadNameId; }
+	void setRoadNameId(int roadNameId) { this.roadNameId = roadNameId; }
 	
-	String getRoadType() { return roadType; }
-	void setRoadType(String roadType) { this.roadType = roadType; }
+	byte getRoadTypeCode() { return roadTypeCode; }
+	void setRoadTypeCode(byte roadTypeCode) { this.roadTypeCode = roadTypeCode; }
 	
 	double getLength() { return length; }
 	void setLength(double length) { this.length = length; }
@@ -63,7 +65,7 @@ class DirectedEdge {
 	/** Determines object hashCode by its attributes. */
 	@Override
 	public int hashCode() {
-		return Objects.hash(roadName, roadType, length, start, end);
+		return Objects.hash(roadNameId, roadTypeCode, length, start, end);
 	}
 	
 	/** Checks if Objects are equal by checking all attributes. */
@@ -73,8 +75,8 @@ class DirectedEdge {
 			return true;
 		if (obj != null && obj instanceof DirectedEdge) {
 			DirectedEdge other = (DirectedEdge) obj;
-			if (this.roadName.equals(other.roadName)
-				&& this.roadType.equals(other.roadType)
+			if (this.roadNameId == other.roadNameId
+				&& this.roadTypeCode == other.roadTypeCode
 				&& this.length == other.length
 				&& this.start.equals(other.start)
 				&& this.end.equals(other.end))
@@ -85,7 +87,7 @@ class DirectedEdge {
 
 	@Override
 	public String toString() {
-		return "[roadName=" + roadName + ", roadType=" + roadType + ", length="
+		return "[roadNameId=" + roadNameId + ", roadTypeCode=" + (roadTypeCode & 0xFF) + ", length="
 				+ length + ", start=(" + start.getX() + ", " + start.getY() 
 				+ "), end=(" + end.getX() + ", " + end.getY()  + ") ]";
 	}
@@ -0,0 +1,86 @@
+package roadgraph;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+/**
+ * Cache-blocked, parallel Floyd-Warshall over row-major {@code n * n}
+ *  distance and next-hop matrices.<br>
+ * The matrices are split into square blocks small enough to stay in cache.
+ *  Each round k updates the diagonal block (k, k) first, then the blocks of
+ *  row k and column k in parallel, and then all other blocks in parallel,
+ *  since each of them only reads blocks of row k and column k.
+ *
+ * @author Miri Yehezkel
+ *
+ */
+final class FloydWarshall {
+	/** Side of a block, 64 floats is a 16KB block */
+	static final int BLOCK_SIZE = 64;
+
+	private FloydWarshall() {}
+
+	/**
+	 * Computes all shortest paths, in place.
+	 * @param n Number of vertices
+	 * @param dist Distance matrix, initially the weight of the lightest edge
+	 *   between each pair, 0 on the diagonal and infinity elsewhere
+	 * @param next Next-hop matrix, initially the target of each edge and
+	 *   {@code -1} elsewhere
+	 * @param pool Pool blocks are updated on
+	 */
+	static void run(int n, float[] dist, int[] next, ForkJoinPool pool) {
+		int numBlocks = (n + BLOCK_SIZE - 1) / BLOCK_SIZE;
+		for (int k = 0; k < numBlocks; k++) {
+			final int kb = k;
+			update(n, dist, next, kb, kb, kb);
+			if (numBlocks == 1)
+				return;
+			//blocks of row k and of column k, skipping the diagonal
+			pool.submit(() -> IntStream.range(0, 2 * numBlocks).parallel().forEach(b -> {
+				int other = b >> 1;
+				if (other == kb)
+					return;
+				if ((b & 1) == 0)
+					update(n, dist, next, kb, other, kb);
+				else
+					update(n, dist, next, other, kb, kb);
+			})).join();
+			//all other blocks
+			pool.submit(() -> IntStream.range(0, numBlocks * numBlocks).parallel().forEach(b -> {
+				int i = b / numBlocks;
+				int j = b % numBlocks;
+				if (i != kb && j != kb)
+					update(n, dist, next, i, j, kb);
+			})).join();
+		}
+	}
+
+	/**
+	 * Updates block (bi, bj) through the vertices of block bk.
+	 */
+	private static void update(int n, float[] dist, int[] next, int bi, int bj, int bk) {
+		int iEnd = Math.min(n, (bi + 1) * BLOCK_SIZE);
+		int jStart = bj * BLOCK_SIZE;
+		int jEnd = Math.min(n, jStart + BLOCK_SIZE);
+		int kEnd = Math.min(n, (bk + 1) * BLOCK_SIZE);
+		for (int k = bk * BLOCK_SIZE; k < kEnd; k++) {
+			int kRow = k * n;
+			for (int i = bi * BLOCK_SIZE; i < iEnd; i++) {
+				int iRow = i * n;
+				float dik = dist[iRow + k];
+				if (dik == Float.POSITIVE_INFINITY)
+					continue;
+				int hop = next[iRow + k];
+				for (int j = jStart; j < jEnd; j++) {
+					float d = dik + dist[kRow + j];
+					if (d < dist[iRow + j]) {
+						dist[iRow + j] = d;
+						next[iRow + j] = hop;
+					}
+				}
+			}
+		}
+	}
+
+}
@@ -0,0 +1,357 @@
+package roadgraph;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import geography.GeographicPoint;
+import geography.RoadSegment;
+
+/**
+ * Reads and writes a loaded map in a versioned binary format, so that it can
+ *  be loaded again without parsing the text .map file and collapsing its
+ *  intersections.<br>
+ * The file is little-endian and holds, in order: a header (magic number,
+ *  version, edge count and section sizes), vertex coordinates, the CSR edge arrays
+ *  ({@code firstEdge}, targets, lengths, road name and type indices), a table
+ *  of the road name and type strings, and the road segments with their
+ *  geometry. Files are read through a memory-mapped buffer, with bulk reads
+ *  straight into the search snapshot arrays.
+ *
+ * @author Miri Yehezkel
+ *
+ */
+public final class GraphFile {
+	/** Magic number at start of file, "MAPG" */
+	private static final int MAGIC = 0x4D415047;
+
+	/** Version of file format */
+	static final int VERSION = 1;
+
+	/** Size of header in bytes */
+	private static final int HEADER_SIZE = 8 * Integer.BYTES;
+
+	private GraphFile() {}
+
+	/**
+	 * Writes a loaded map to a binary graph file.
+	 * @param filename The file to write
+	 * @param map The graph to write
+	 * @param segments The road segments of the map, or {@code null} to write none
+	 * @throws IOException If the file can't be written.
+	 */
+	public static void write(String filename, MapGraph map,
+			HashMap<GeographicPoint, HashSet<RoadSegment>> segments) throws IOException {
+		CompactGraph graph = map.getCompactGraph();
+		int n = graph.numVertices;
+		int m = graph.numEdges;
+
+		//shared table of road names and types
+		Map<String, Integer> strings = new LinkedHashMap<>();
+		int[] edgeName = new int[m];
+		int[] edgeType = new int[m];
+		for (int e = 0; e < m; e++) {
+			edgeName[e] = intern(strings, graph.roadName(e));
+			edgeType[e] = intern(strings, graph.roadType(e));
+		}
+
+		//each segment is stored by both its end points, write it once
+		List<RoadSegment> segmentList = new ArrayList<>();
+		if (segments != null) {
+			Set<RoadSegment> seen = new HashSet<>();
+			for (HashSet<RoadSegment> segs : segments.values())
+				for (RoadSegment seg : segs)
+					if (seen.add(seg))
+						segmentList.add(seg);
+		}
+		int numGeometryPoints = 0;
+		for (RoadSegment seg : segmentList) {
+			intern(strings, seg.getRoadName());
+			intern(strings, seg.getRoadType());
+			numGeometryPoints += seg.getGeometryPoints().size();
+		}
+		List<byte[]> encoded = new ArrayList<>(strings.size());
+		int stringBytes = 0;
+		for (String str : strings.keySet()) {
+			byte[] bytes = str.getBytes(StandardCharsets.UTF_8);
+			encoded.add(bytes);
+			stringBytes += Integer.BYTES + bytes.length;
+		}
+
+		int s = segmentList.size();
+		long size = HEADER_SIZE
+				+ 2L * n * Double.BYTES
+				+ (n + 1L) * Integer.BYTES + 3L * m * Integer.BYTES + (long) m * Double.BYTES
+				+ stringBytes
+				+ 4L * s * Integer.BYTES + (long) s * Double.BYTES + (s + 1L) * Integer.BYTES
+				+ 2L * numGeometryPoints * Double.BYTES;
+		ByteBuffer buf = ByteBuffer.allocate(Math.toIntExact(size)).order(ByteOrder.LITTLE_ENDIAN);
+
+		buf.putInt(MAGIC).putInt(VERSION).putInt(n).putInt(m)
+			.putInt(map.getNumEdges()).putInt(strings.size()).putInt(s).putInt(numGeometryPoints);
+		putDoubles(buf, graph.lat);
+		putDoubles(buf, graph.lon);
+		putInts(buf, graph.firstEdge);
+		putInts(buf, graph.edgeTarget);
+		putDoubles(buf, graph.edgeLength);
+		putInts(buf, edgeName);
+		putInts(buf, edgeType);
+		for (byte[] bytes : encoded)
+			buf.putInt(bytes.length).put(bytes);
+
+		for (RoadSegment seg : segmentList) {
+			buf.putInt(graph.indexOf(seg.getPoint1()))
+				.putInt(graph.indexOf(seg.getPoint2()))
+				.putInt(strings.get(seg.getRoadName()))
+				.putInt(strings.get(seg.getRoadType()));
+		}
+		for (RoadSegment seg : segmentList)
+			buf.putDouble(seg.getLength());
+		int first = 0;
+		for (RoadSegment seg : segmentList) {
+			buf.putInt(first);
+			first += seg.getGeometryPoints().size();
+		}
+		buf.putInt(first);
+		for (RoadSegment seg : segmentList)
+			for (GeographicPoint pt : seg.getGeometryPoints())
+				buf.putDouble(pt.getX()).putDouble(pt.getY());
+
+		buf.flip();
+		writeAtomically(filename, channel -> {
+			while (buf.hasRemaining())
+				channel.write(buf);
+		});
+	}
+
+	/**
+	 * Writes the contents of a file.
+	 */
+	@FunctionalInterface
+	interface ContentWriter {
+		void write(FileChannel channel) throws IOException;
+	}
+
+	/**
+	 * Writes a file so that a failed write never leaves a partial file: the
+	 *  contents are written to a temporary file next to it, forced to the
+	 *  device, and moved over the file.
+	 * @param filename The file to write
+	 * @param writer Writer of the contents
+	 * @throws IOException If the file can't be written.
+	 */
+	static void writeAtomically(String filename, ContentWriter writer) throws IOException {
+		Path path = Paths.get(filename).toAbsolutePath();
+		Path temp = Files.createTempFile(path.getParent(), path.getFileName().toString(), ".tmp");
+		try {
+			try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+				writer.write(channel);
+				channel.force(true);
+			}
+			try {
+				Files.move(temp, path, StandardCopyOption.ATOMIC_MOVE);
+			} catch (AtomicMoveNotSupportedException e) {
+				Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING);
+			}
+		} finally {
+			Files.deleteIfExists(temp);
+		}
+	}
+
+	/**
+	 * Loads a map from a binary graph file written by
+	 *  {@link #write(String, MapGraph, HashMap)}.<br>
+	 * The graph's search snapshot is read directly from the file, so it
+	 *  doesn't have to be built from the loaded vertices. The sizes and
+	 *  indices of the file are checked before anything is added to the map.
+	 * @param filename The file to read
+	 * @param map The graph to load the map into, assumed to be empty
+	 * @param segments The collection to add road segments to, or {@code null}
+	 * @param intersectionsToLoad The collection to add intersections to, or {@code null}
+	 * @throws IOException If the file can't be read, isn't a graph file of a
+	 *   supported version, or is truncated or corrupt.
+	 */
+	public static void load(String filename, MapGraph map,
+			HashMap<GeographicPoint, HashSet<RoadSegment>> segments,
+			Set<GeographicPoint> intersectionsToLoad) throws IOException {
+		Path path = Paths.get(filename);
+		MappedByteBuffer buf;
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			buf = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+		}
+		buf.order(ByteOrder.LITTLE_ENDIAN);
+		if (buf.remaining() < HEADER_SIZE || buf.getInt() != MAGIC)
+			throw new IOException("Not a graph file: " + filename);
+		int version = buf.getInt();
+		if (version != VERSION)
+			throw new IOException("Unsupported graph file version " + version + ": " + filename);
+		try {
+			read(buf, filename, map, segments, intersectionsToLoad);
+		} catch (BufferUnderflowException | IndexOutOfBoundsException | IllegalArgumentException e) {
+			throw new IOException("Corrupt graph file: " + filename, e);
+		}
+	}
+
+	/**
+	 * Reads the rest of a graph file, after its magic number and version.
+	 * @throws IOException If the sizes or indices of the file are invalid.
+	 */
+	private static void read(ByteBuffer buf, String filename, MapGraph map,
+			HashMap<GeographicPoint, HashSet<RoadSegment>> segments,
+			Set<GeographicPoint> intersectionsToLoad) throws IOException {
+		int n = buf.getInt();
+		int m = buf.getInt();
+		//edges added to the map, including duplicates not kept in the snapshot
+		int numAddedEdges = buf.getInt();
+		int numStrings = buf.getInt();
+		int s = buf.getInt();
+		int numGeometryPoints = buf.getInt();
+		long segmentBytes = 4L * s * Integer.BYTES + (long) s * Double.BYTES + (s + 1L) * Integer.BYTES
+				+ 2L * numGeometryPoints * Double.BYTES;
+		//all but the string bytes, whose lengths are checked as they are read
+		long minBytes = 2L * n * Double.BYTES
+				+ (n + 1L) * Integer.BYTES + 3L * m * Integer.BYTES + (long) m * Double.BYTES
+				+ (long) numStrings * Integer.BYTES + segmentBytes;
+		if (n < 0 || m < 0 || numAddedEdges < m || numStrings < 0 || s < 0 || numGeometryPoints < 0
+				|| buf.remaining() < minBytes)
+			throw new IOException("Corrupt graph file: " + filename);
+
+		double[] lat = getDoubles(buf, n);
+		double[] lon = getDoubles(buf, n);
+		int[] firstEdge = getInts(buf, n + 1);
+		int[] edgeTarget = getInts(buf, m);
+		double[] edgeLength = getDoubles(buf, m);
+		int[] edgeName = getInts(buf, m);
+		int[] edgeType = getInts(buf, m);
+		String[] strings = new String[numStrings];
+		for (int i = 0; i < numStrings; i++) {
+			int length = buf.getInt();
+			if (length < 0 || length > buf.remaining() - segmentBytes)
+				throw new IOException("Corrupt graph file: " + filename);
+			byte[] bytes = new byte[length];
+			buf.get(bytes);
+			strings[i] = bytes.length == 0 ? "" : new String(bytes, StandardCharsets.UTF_8);
+		}
+		if (buf.remaining() != segmentBytes)
+			throw new IOException("Corrupt graph file: " + filename);
+		int[] segmentInfo = getInts(buf, 4 * s);
+		double[] segmentLength = getDoubles(buf, s);
+		int[] firstGeometryPoint = getInts(buf, s + 1);
+		double[] geometry = getDoubles(buf, 2 * numGeometryPoints);
+		if (!isOffsets(firstEdge, m) || !isIndices(edgeTarget, 0, 1, n)
+				|| !isIndices(edgeName, 0, 1, numStrings) || !isIndices(edgeType, 0, 1, numStrings)
+				|| !isIndices(segmentInfo, 0, 4, n) || !isIndices(segmentInfo, 1, 4, n)
+				|| !isIndices(segmentInfo, 2, 4, numStrings) || !isIndices(segmentInfo, 3, 4, numStrings)
+				|| !isOffsets(firstGeometryPoint, numGeometryPoints))
+			throw new IOException("Corrupt graph file: " + filename);
+
+		//ids of the strings in the map's dictionary, which adding the edges assigns again
+		RoadDictionary dictionary = map.getRoadDictionary();
+		int[] edgeRoadName = new int[m];
+		byte[] edgeRoadType = new byte[m];
+		for (int e = 0; e < m; e++) {
+			edgeRoadName[e] = dictionary.nameId(strings[edgeName[e]]);
+			edgeRoadType[e] = dictionary.typeCode(strings[edgeType[e]]);
+		}
+		CompactGraph graph = new CompactGraph(lat, lon, firstEdge, edgeTarget, edgeLength,
+				edgeRoadName, edgeRoadType, dictionary.names(), dictionary.types());
+
+		for (int v = 0; v < n; v++) {
+			map.addVertex(graph.pointAt(v));
+			if (intersectionsToLoad != null)
+				intersectionsToLoad.add(graph.pointAt(v));
+		}
+		for (int v = 0; v < n; v++)
+			for (int e = firstEdge[v]; e < firstEdge[v + 1]; e++)
+				map.addEdge(graph.pointAt(v), graph.pointAt(edgeTarget[e]),
+						graph.roadName(e), graph.roadType(e), edgeLength[e]);
+		map.setCompactGraph(graph, numAddedEdges);
+
+		if (segments == null)
+			return;
+		for (int i = 0; i < s; i++) {
+			GeographicPoint pt1 = graph.pointAt(segmentInfo[4 * i]);
+			GeographicPoint pt2 = graph.pointAt(segmentInfo[4 * i + 1]);
+			List<GeographicPoint> pointsOnEdge = new ArrayList<>();
+			for (int p = firstGeometryPoint[i]; p < firstGeometryPoint[i + 1]; p++)
+				pointsOnEdge.add(new GeographicPoint(geometry[2 * p], geometry[2 * p + 1]));
+			RoadSegment seg = new RoadSegment(pt1, pt2, pointsOnEdge,
+					strings[segmentInfo[4 * i + 2]], strings[segmentInfo[4 * i + 3]], segmentLength[i]);
+			segments.computeIfAbsent(pt1, k -> new HashSet<>()).add(seg);
+			segments.computeIfAbsent(pt2, k -> new HashSet<>()).add(seg);
+		}
+	}
+
+	/**
+	 * Checks that CSR offsets go from 0 to a total without decreasing.
+	 */
+	private static boolean isOffsets(int[] first, int total) {
+		if (first[0] != 0 || first[first.length - 1] != total)
+			return false;
+		for (int i = 1; i < first.length; i++)
+			if (first[i] < first[i - 1])
+				return false;
+		return true;
+	}
+
+	/**
+	 * Checks that every stride-th value from an offset is an index below a bound.
+	 */
+	private static boolean isIndices(int[] values, int offset, int stride, int bound) {
+		for (int i = offset; i < values.length; i += stride)
+			if (values[i] < 0 || values[i] >= bound)
+				return false;
+		return true;
+	}
+
+	private static int intern(Map<String, Integer> strings, String str) {
+		Integer index = strings.get(str);
+		if (index == null) {
+			index = strings.size();
+			strings.put(str, index);
+		}
+		return index;
+	}
+
+	private static void putInts(ByteBuffer buf, int[] values) {
+		buf.asIntBuffer().put(values);
+		buf.position(buf.position() + values.length * Integer.BYTES);
+	}
+
+	private static void putDoubles(ByteBuffer buf, double[] values) {
+		buf.asDoubleBuffer().put(values);
+		buf.position(buf.position() + values.length * Double.BYTES);
+	}
+
+	private static int[] getInts(ByteBuffer buf, int count) {
+		int[] values = new int[count];
+		buf.asIntBuffer().get(values);
+		buf.position(buf.position() + count * Integer.BYTES);
+		return values;
+	}
+
+	private static double[] getDoubles(ByteBuffer buf, int count) {
+		double[] values = new double[count];
+		buf.asDoubleBuffer().get(values);
+		buf.position(buf.position() + count * Double.BYTES);
+		return values;
+	}
+
+}
@@ -0,0 +1,242 @@
+package roadgraph;
+
+import java.util.Arrays;
+
+/**
+ * An indexed d-ary min-heap of int vertex ids with double keys.<br>
+ * Each vertex is stored at most once, so a better key found for a queued
+ *  vertex is applied with {@link #decreaseKey(int, double)} instead of
+ *  adding a duplicate. All storage is allocated up front and the heap
+ *  can be reused for any number of searches.
+ *
+ * @author Miri Yehezkel
+ *
+ */
+final class IndexedDaryHeap {
+	/** Default number of children of each heap node */
+	static final int DEFAULT_ARITY = 4;
+
+	/** Number of children of each heap node */
+	private final int arity;
+
+	/** Vertex ids in heap order */
+	private final int[] heap;
+
+	/** Position of each vertex in heap, {@code -1} if not in heap */
+	private final int[] position;
+
+	/** Key of each vertex in heap */
+	private final double[] keys;
+
+	/** Number of vertices in heap */
+	private int size;
+
+	/** Number of insert operations since counters were reset */
+	private long insertCount;
+
+	/** Number of poll operations since counters were reset */
+	private long pollCount;
+
+	/** Number of decrease-key operations since counters were reset */
+	private long decreaseKeyCount;
+
+	/**
+	 * Constructs a 4-ary heap for vertex ids {@code 0..capacity-1}.
+	 * @param capacity Number of vertices
+	 */
+	IndexedDaryHeap(int capacity) {
+		this(capacity, DEFAULT_ARITY);
+	}
+
+	/**
+	 * Constructs a heap for vertex ids {@code 0..capacity-1}.
+	 * @param capacity Number of vertices
+	 * @param arity Number of children of each heap node
+	 * @throws IllegalArgumentException If arity is less than 2.
+	 */
+	IndexedDaryHeap(int capacity, int arity) {
+		if (arity < 2)
+			throw new IllegalArgumentException("Arity must be at least 2");
+		this.arity = arity;
+		heap = new int[capacity];
+		position = new int[capacity];
+		keys = new double[capacity];
+		Arrays.fill(position, -1);
+	}
+
+	int size() { return size; }
+
+	boolean isEmpty() { return size == 0; }
+
+	/**
+	 * Checks if vertex is currently in heap.
+	 * @param v Vertex id
+	 * @return {@code true} if vertex is in heap, {@code false} otherwise.
+	 */
+	boolean contains(int v) {
+		return position[v] >= 0;
+	}
+
+	/**
+	 * Gets the key of a vertex in heap.
+	 * @param v Vertex id, must be in heap
+	 * @return The key of the vertex.
+	 */
+	double getKey(int v) {
+		return keys[v];
+	}
+
+	/**
+	 * Inserts a vertex which is not in heap.
+	 * @param v Vertex id
+	 * @param key Key of vertex
+	 */
+	void insert(int v, double key) {
+		insertCount++;
+		keys[v] = key;
+		heap[size] = v;
+		position[v] = size;
+		siftUp(size++);
+	}
+
+	/**
+	 * Lowers the key of a vertex in heap.
+	 * @param v Vertex id, must be in heap
+	 * @param key New key of vertex, must not be greater than current key
+	 */
+	void decreaseKey(int v, double key) {
+		decreaseKeyCount++;
+		keys[v] = key;
+		siftUp(position[v]);
+	}
+
+	/**
+	 * Changes the key of a vertex in heap, either up or down.
+	 * @param v Vertex id, must be in heap
+	 * @param key New key of vertex
+	 */
+	void changeKey(int v, double key) {
+		double old = keys[v];
+		keys[v] = key;
+		if (key < old) {
+			decreaseKeyCount++;
+			siftUp(position[v]);
+		}
+		else
+			siftDown(position[v]);
+	}
+
+	/**
+	 * Inserts a vertex, or lowers its key if it is already in heap with a greater key.
+	 * @param v Vertex id
+	 * @param key Key of vertex
+	 * @return {@code true} if heap changed, {@code false} otherwise.
+	 */
+	boolean insertOrDecrease(int v, double key) {
+		if (position[v] < 0) {
+			insert(v, key);
+			return true;
+		}
+		if (key < keys[v]) {
+			decreaseKey(v, key);
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Gets the minimal key in heap.
+	 * @return The key of the first vertex, must not be called on an empty heap.
+	 */
+	double peekKey() {
+		return keys[heap[0]];
+	}
+
+	/**
+	 * Removes the vertex with the minimal key.
+	 * @return The removed vertex id, must not be called on an empty heap.
+	 */
+	int poll() {
+		pollCount++;
+		int min = heap[0];
+		position[min] = -1;
+		size--;
+		if (size > 0) {
+			int last = heap[size];
+			heap[0] = last;
+			position[last] = 0;
+			siftDown(0);
+		}
+		return min;
+	}
+
+	/**
+	 * Removes all vertices from heap, in time proportional to heap size.
+	 */
+	void clear() {
+		for (int i = 0; i < size; i++)
+			position[heap[i]] = -1;
+		size = 0;
+	}
+
+	long getInsertCount() { return insertCount; }
+	long getPollCount() { return pollCount; }
+	long getDecreaseKeyCount() { return decreaseKeyCount; }
+
+	/** Resets operation counters. */
+	void resetCounters() {
+		insertCount = 0;
+		pollCount = 0;
+		decreaseKeyCount = 0;
+	}
+
+	private void siftUp(int i) {
+		int v = heap[i];
+		double key = keys[v];
+		while (i > 0) {
+			int parent = (i - 1) / arity;
+			int p = heap[parent];
+			if (keys[p] <= key)
+				break;
+			heap[i] = p;
+			position[p] = i;
+			i = parent;
+		}
+		heap[i] = v;
+		position[v] = i;
+	}
+
+	private void siftDown(int i) {
+		int v = heap[i];
+		double key = keys[v];
+		while (true) {
+			int first = i * arity + 1;
+			if (first >= size)
+				break;
+			int last = Math.min(first + arity, size);
+			int min = first;
+			double minKey = keys[heap[first]];
+			for (int c = first + 1; c < last; c++) {
+				double k = keys[heap[c]];
+				if (k < minKey) {
+					min = c;
+					minKey = k;
+				}
+			}
+			if (minKey >= key)
+				break;
+			int child = heap[min];
+			heap[i] = child;
+			position[child] = i;
+			i = min;
+		}
+		heap[i] = v;
+		position[v] = i;
+	}
+
+	@Override
+	public String toString() {
+		return "IndexedDaryHeap [arity=" + arity + ", size=" + size + "]";
+	}
+
+}
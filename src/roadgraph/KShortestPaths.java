@@ -0,0 +1,221 @@
+package roadgraph;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.function.IntToDoubleFunction;
+import java.util.stream.IntStream;
+
+/**
+ * Yen's algorithm for the k shortest loopless paths over a {@link CompactGraph}.<br>
+ * A single backward search from goal builds the shortest-path tree to goal
+ *  once. Its parents give the first path, and its distances are exact on the
+ *  unrestricted graph, so they are a consistent A* heuristic for every spur
+ *  search: removing vertices and edges only makes paths longer. A spur
+ *  whose tree path is not blocked is found by settling only that path.
+ *  The spur searches of each round are independent and run in parallel,
+ *  each on its thread's pooled workspace.
+ *
+ * @author Miri Yehezkel
+ *
+ */
+final class KShortestPaths {
+	/** Graph to search */
+	private final CompactGraph graph;
+
+	/** Weight of each edge */
+	private final double[] weights;
+
+	private KShortestPaths(CompactGraph graph, double[] weights) {
+		this.graph = graph;
+		this.weights = weights;
+	}
+
+	/**
+	 * Finds the k shortest loopless paths from start to goal.
+	 * @param graph Graph to search
+	 * @param weights Weight of each edge, by edge id
+	 * @param start Vertex id of start
+	 * @param goal Vertex id of goal
+	 * @param k Maximal number of paths
+	 * @return The vertex ids of (at most) k paths, shortest first.
+	 */
+	static List<int[]> find(CompactGraph graph, double[] weights, int start, int goal, int k) {
+		return new KShortestPaths(graph, weights).find(start, goal, k);
+	}
+
+	private List<int[]> find(int start, int goal, int k) {
+		List<int[]> found = new ArrayList<>(k);
+		if (k <= 0)
+			return found;
+
+		//shortest-path tree to goal, shared by all spur searches
+		DijkstraEngine engine = new DijkstraEngine(graph);
+		engine.searchAll(goal, true, weights);
+		double[] toGoal = new double[graph.numVertices];
+		engine.copyDistances(toGoal);
+		if (toGoal[start] == Double.POSITIVE_INFINITY)
+			return found;
+		int[] towardGoal = engine.getParents().clone();
+		IntToDoubleFunction heuristic = v -> toGoal[v];
+
+		List<Path> paths = new ArrayList<>(k);
+		paths.add(treePath(start, goal, towardGoal));
+		found.add(paths.get(0).vertices);
+
+		PriorityQueue<Path> candidates = new PriorityQueue<>();
+		Set<Path> seen = new HashSet<>();
+		seen.add(paths.get(0));
+		int[] positionOnLast = new int[graph.numVertices];
+		while (found.size() < k) {
+			Path last = paths.get(paths.size() - 1);
+			Arrays.fill(positionOnLast, -1);
+			for (int i = 0; i < last.vertices.length; i++)
+				positionOnLast[last.vertices[i]] = i;
+
+			Path[] spurs = new Path[last.vertices.length - 1];
+			IntStream.range(0, spurs.length).parallel().forEach(i ->
+					spurs[i] = spur(last, i, paths, positionOnLast, goal, heuristic));
+			for (Path candidate : spurs)
+				if (candidate != null && seen.add(candidate))
+					candidates.add(candidate);
+
+			Path next = candidates.poll();
+			if (next == null)
+				break;
+			paths.add(next);
+			found.add(next.vertices);
+		}
+		return found;
+	}
+
+	/**
+	 * Follows the shortest-path tree from start to goal.
+	 */
+	private Path treePath(int start, int goal, int[] towardGoal) {
+		int length = 1;
+		for (int v = start; v != goal; v = towardGoal[v])
+			length++;
+		int[] vertices = new int[length];
+		double[] costs = new double[length];
+		vertices[0] = start;
+		for (int i = 1; i < length; i++) {
+			vertices[i] = towardGoal[vertices[i - 1]];
+			costs[i] = costs[i - 1] + edgeWeight(vertices[i - 1], vertices[i]);
+		}
+		return new Path(vertices, costs);
+	}
+
+	/**
+	 * Finds the shortest path which follows last up to its i-th vertex, and
+	 *  then leaves it by an edge no found path sharing that root takes.
+	 * @param last Last path found
+	 * @param i Index of spur vertex on last
+	 * @param paths Paths found so far
+	 * @param positionOnLast Index of each vertex on last, or {@code -1}
+	 * @param goal Vertex id of goal
+	 * @param heuristic Distance of each vertex to goal
+	 * @return The path, or {@code null} if there is none.
+	 */
+	private Path spur(Path last, int i, List<Path> paths, int[] positionOnLast, int goal,
+			IntToDoubleFunction heuristic) {
+		int spurVertex = last.vertices[i];
+		//next vertices of found paths with the same root
+		int[] blocked = new int[paths.size()];
+		int numBlocked = 0;
+		for (Path p : paths)
+			if (p.vertices.length > i + 1 && p.sharesRoot(last, i))
+				blocked[numBlocked++] = p.vertices[i + 1];
+		final int blockedCount = numBlocked;
+
+		DijkstraEngine engine = new DijkstraEngine(graph);
+		boolean found = engine.search(spurVertex, goal, weights, heuristic, e -> {
+			int next = graph.edgeTarget[e];
+			//root vertices before spur vertex keep the path loopless
+			int position = positionOnLast[next];
+			if (position >= 0 && position < i)
+				return false;
+			if (graph.edgeSource[e] == spurVertex)
+				for (int b = 0; b < blockedCount; b++)
+					if (blocked[b] == next)
+						return false;
+			return true;
+		}, v -> {});
+		if (!found)
+			return null;
+
+		int[] parents = engine.getParents();
+		int spurLength = 1;
+		for (int v = goal; v != spurVertex; v = parents[v])
+			spurLength++;
+		int[] vertices = Arrays.copyOf(last.vertices, i + spurLength);
+		double[] costs = Arrays.copyOf(last.costs, i + spurLength);
+		for (int j = vertices.length - 1, v = goal; j > i; j--, v = parents[v]) {
+			vertices[j] = v;
+			costs[j] = costs[i] + engine.getDistance(v);
+		}
+		return new Path(vertices, costs);
+	}
+
+	/**
+	 * Gets the weight of the lightest edge from one vertex to another.
+	 */
+	private double edgeWeight(int from, int to) {
+		double weight = Double.POSITIVE_INFINITY;
+		for (int e = graph.firstEdge[from]; e < graph.firstEdge[from + 1]; e++)
+			if (graph.edgeTarget[e] == to)
+				weight = Math.min(weight, weights[e]);
+		return weight;
+	}
+
+	/**
+	 * A loopless path with the cost of each of its prefixes,
+	 *  ordered by cost. Paths are equal if they have the same vertices.
+	 */
+	private static final class Path implements Comparable<Path> {
+		final int[] vertices;
+		final double[] costs;
+		private final int hash;
+
+		Path(int[] vertices, double[] costs) {
+			this.vertices = vertices;
+			this.costs = costs;
+			hash = Arrays.hashCode(vertices);
+		}
+
+		double getCost() { return costs[costs.length - 1]; }
+
+		/** Whether this path starts with the first i + 1 vertices of other */
+		boolean sharesRoot(Path other, int i) {
+			for (int j = i; j >= 0; j--)
+				if (vertices[j] != other.vertices[j])
+					return false;
+			return true;
+		}
+
+		@Override
+		public int compareTo(Path other) {
+			int byCost = Double.compare(getCost(), other.getCost());
+			return byCost != 0 ? byCost : Integer.compare(vertices.length, other.vertices.length);
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			return o instanceof Path && Arrays.equals(vertices, ((Path) o).vertices);
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+	}
+
+	@Override
+	public String toString() {
+		return "KShortestPaths [graph=" + graph + "]";
+	}
+
+}
@@ -0,0 +1,19 @@
+package roadgraph;
+
+/**
+ * Strategies for selecting the landmarks used by
+ *  {@link MapGraph#aStarLandmarkSearch(geography.GeographicPoint, geography.GeographicPoint)}.
+ * 
+ * @author Miri Yehezkel
+ *
+ */
+public enum LandmarkStrategy {
+	/** Each landmark is the vertex farthest from the landmarks selected before it */
+	FARTHEST,
+	
+	/**
+	 * Each landmark is a leaf of the largest subtree of a shortest-path tree
+	 *  whose vertices are poorly covered by the landmarks selected before it
+	 */
+	AVOID
+}
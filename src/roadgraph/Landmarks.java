@@ -0,0 +1,237 @@
+package roadgraph;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.function.IntToDoubleFunction;
+import java.util.stream.IntStream;
+
+/**
+ * Landmarks and their precomputed distances, for the ALT (A*, Landmarks and
+ *  Triangle inequality) heuristic.<br>
+ * For a landmark L, the triangle inequality gives two lower bounds of the
+ *  distance from v to t: {@code d(L,t) - d(L,v)} and {@code d(v,L) - d(t,L)}.
+ *  The heuristic is the largest bound over all landmarks.
+ *
+ * @author Miri Yehezkel
+ *
+ */
+final class Landmarks {
+	/** Seed of random choices made during selection, so selection is repeatable */
+	private static final long SEED = 42L;
+
+	/** Graph the landmarks were selected from */
+	private final CompactGraph graph;
+
+	/** Vertex id of each landmark */
+	private final int[] landmarks;
+
+	/** Distance from each landmark to each vertex */
+	private final double[][] fromLandmark;
+
+	/** Distance from each vertex to each landmark */
+	private final double[][] toLandmark;
+
+	/**
+	 * Selects landmarks and computes their distances.<br>
+	 * Selection searches forward from each landmark it picks and keeps those
+	 *  distances. After selection, the backward distances of all landmarks
+	 *  are computed in parallel, one Dijkstra's search per task on the
+	 *  common fork-join pool.
+	 * @param graph Graph to select landmarks from
+	 * @param count Number of landmarks to select
+	 * @param strategy Selection strategy
+	 * @throws IllegalArgumentException If count is not positive.
+	 */
+	Landmarks(CompactGraph graph, int count, LandmarkStrategy strategy) {
+		if (count <= 0)
+			throw new IllegalArgumentException("Number of landmarks must be positive");
+		this.graph = graph;
+		count = Math.min(count, graph.numVertices);
+		fromLandmark = new double[count][graph.numVertices];
+		landmarks = strategy == LandmarkStrategy.AVOID ? selectAvoid(count) : selectFarthest(count);
+
+		toLandmark = new double[count][graph.numVertices];
+		IntStream.range(0, count).parallel().forEach(i -> {
+			DijkstraEngine engine = new DijkstraEngine(graph);
+			engine.searchAll(landmarks[i], true);
+			engine.copyDistances(toLandmark[i]);
+		});
+	}
+
+	CompactGraph getGraph() { return graph; }
+
+	int size() { return landmarks.length; }
+
+	/**
+	 * Creates the heuristic of a goal: the largest of the landmark bounds
+	 *  and the straight-line distance.
+	 * @param goal Vertex id of goal
+	 * @return A lower bound of the distance from a vertex to goal.
+	 */
+	IntToDoubleFunction heuristic(int goal) {
+		int k = landmarks.length;
+		double[] fromLandmarkToGoal = new double[k];
+		double[] fromGoalToLandmark = new double[k];
+		for (int i = 0; i < k; i++) {
+			fromLandmarkToGoal[i] = fromLandmark[i][goal];
+			fromGoalToLandmark[i] = toLandmark[i][goal];
+		}
+		return v -> {
+			double bound = graph.distance(v, goal);
+			for (int i = 0; i < k; i++) {
+				double forward = fromLandmarkToGoal[i] - fromLandmark[i][v];
+				double backward = toLandmark[i][v] - fromGoalToLandmark[i];
+				//infinite distances (unreachable landmark) give no bound
+				if (forward > bound && forward < Double.POSITIVE_INFINITY)
+					bound = forward;
+				if (backward > bound && backward < Double.POSITIVE_INFINITY)
+					bound = backward;
+			}
+			return bound;
+		};
+	}
+
+	/**
+	 * Selects landmarks one at a time, each the reachable vertex farthest
+	 *  from the landmarks selected so far, starting from a random vertex.
+	 *  The distances from each selected landmark are kept in fromLandmark.
+	 */
+	private int[] selectFarthest(int count) {
+		int n = graph.numVertices;
+		DijkstraEngine engine = new DijkstraEngine(graph);
+		double[] minDistance = new double[n];
+		Arrays.fill(minDistance, Double.POSITIVE_INFINITY);
+
+		int[] selected = new int[count];
+		int next = new Random(SEED).nextInt(n);
+		engine.searchAll(next, false);
+		engine.copyDistances(minDistance);
+		for (int i = 0; i < count; i++) {
+			next = farthest(minDistance);
+			selected[i] = next;
+			engine.searchAll(next, false);
+			engine.copyDistances(fromLandmark[i]);
+			for (int v = 0; v < n; v++)
+				minDistance[v] = Math.min(minDistance[v], fromLandmark[i][v]);
+		}
+		return selected;
+	}
+
+	/**
+	 * Gets the vertex with the largest finite value.
+	 */
+	private static int farthest(double[] distances) {
+		int best = 0;
+		double bestDistance = -1.0;
+		for (int v = 0; v < distances.length; v++) {
+			if (distances[v] > bestDistance && distances[v] < Double.POSITIVE_INFINITY) {
+				best = v;
+				bestDistance = distances[v];
+			}
+		}
+		return best;
+	}
+
+	/**
+	 * Selects landmarks with the avoid strategy: grows a shortest-path tree
+	 *  from a random root, weighs every vertex by how much its distance from
+	 *  root exceeds the lower bound given by the landmarks so far, and picks a
+	 *  leaf of the heaviest subtree which doesn't contain a landmark. The
+	 *  distances from each selected landmark are kept in fromLandmark.
+	 */
+	private int[] selectAvoid(int count) {
+		int n = graph.numVertices;
+		Random random = new Random(SEED);
+		DijkstraEngine engine = new DijkstraEngine(graph);
+		double[] rootDistances = new double[n];
+		double[] size = new double[n];
+		boolean[] isLandmark = new boolean[n];
+		int[] firstChild = new int[n + 1];
+		int[] children = new int[n];
+		Integer[] order = new Integer[n];
+
+		int[] selected = new int[count];
+		engine.searchAll(random.nextInt(n), false);
+		engine.copyDistances(rootDistances);
+		selected[0] = farthest(rootDistances);
+		isLandmark[selected[0]] = true;
+		engine.searchAll(selected[0], false);
+		engine.copyDistances(fromLandmark[0]);
+
+		for (int i = 1; i < count; i++) {
+			int root = random.nextInt(n);
+			engine.searchAll(root, false);
+			engine.copyDistances(rootDistances);
+			int[] parents = engine.getParents();
+
+			//children lists of tree, counting sort by parent
+			Arrays.fill(firstChild, 0);
+			for (int v = 0; v < n; v++)
+				if (v != root && rootDistances[v] < Double.POSITIVE_INFINITY)
+					firstChild[parents[v] + 1]++;
+			for (int v = 0; v < n; v++)
+				firstChild[v + 1] += firstChild[v];
+			int[] next = Arrays.copyOf(firstChild, n);
+			for (int v = 0; v < n; v++)
+				if (v != root && rootDistances[v] < Double.POSITIVE_INFINITY)
+					children[next[parents[v]]++] = v;
+
+			//weights, summed bottom-up in order of decreasing distance from root
+			for (int v = 0; v < n; v++) {
+				order[v] = v;
+				double bound = 0.0;
+				for (int j = 0; j < i; j++) {
+					double b = fromLandmark[j][v] - fromLandmark[j][root];
+					if (b > bound && b < Double.POSITIVE_INFINITY)
+						bound = b;
+				}
+				size[v] = rootDistances[v] < Double.POSITIVE_INFINITY ? rootDistances[v] - bound : 0.0;
+			}
+			Arrays.sort(order, (a, b) -> Double.compare(rootDistances[b], rootDistances[a]));
+			for (int v : order) {
+				if (rootDistances[v] == Double.POSITIVE_INFINITY)
+					continue;
+				boolean hasLandmark = isLandmark[v];
+				for (int c = firstChild[v]; c < firstChild[v + 1]; c++) {
+					if (size[children[c]] < 0)
+						hasLandmark = true;
+					else
+						size[v] += size[children[c]];
+				}
+				//subtrees containing a landmark are marked with a negative size
+				if (hasLandmark)
+					size[v] = -1.0;
+			}
+
+			int w = root;
+			double best = 0.0;
+			for (int v = 0; v < n; v++) {
+				if (size[v] > best) {
+					best = size[v];
+					w = v;
+				}
+			}
+			//descend to a leaf, following the heaviest child
+			while (firstChild[w] < firstChild[w + 1]) {
+				int heaviest = children[firstChild[w]];
+				for (int c = firstChild[w] + 1; c < firstChild[w + 1]; c++)
+					if (size[children[c]] > size[heaviest])
+						heaviest = children[c];
+				w = heaviest;
+			}
+			if (isLandmark[w])
+				w = farthest(rootDistances);
+			selected[i] = w;
+			isLandmark[w] = true;
+			engine.searchAll(w, false);
+			engine.copyDistances(fromLandmark[i]);
+		}
+		return selected;
+	}
+
+	@Override
+	public String toString() {
+		return "Landmarks [count=" + landmarks.length + "]";
+	}
+
+}
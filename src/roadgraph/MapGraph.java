@@ -1,17 +1,22 @@
 package roadgraph;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
-import java.util.PriorityQueue;
-import java.util.Queue;
 import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
 import java.util.function.Consumer;
+import java.util.function.IntToDoubleFunction;
+import java.util.function.Supplier;
+import java.util.stream.IntStream;
 
 import geography.GeographicPoint;
+import geography.RoadSegment;
 import util.GraphLoader;
 
 /**
@@ -31,6 +36,33 @@ public class MapGraph {
 	/** Number of edges on Map */
 	private int numEdges;
 	
+	/** Names and types of the roads on Map, which edges refer to by id */
+	private final RoadDictionary dictionary = new RoadDictionary();
+	
+	/** Array-based snapshot used for searching, {@code null} until built or after a change */
+	private volatile CompactGraph compactGraph;
+	
+	/** Statistics of the last search, saved when it returned */
+	private volatile SearchStats lastSearchStats;
+	
+	/** Contraction Hierarchy of the snapshot, {@code null} until built */
+	private volatile ContractionHierarchy contractionHierarchy;
+	
+	/** Query state on the Contraction Hierarchy, reused between queries */
+	private ContractionHierarchy.Query hierarchyQuery;
+	
+	/** Default number of landmarks selected for landmark A* search */
+	public static final int DEFAULT_LANDMARK_COUNT = 8;
+	
+	/** Landmarks of the snapshot, {@code null} until selected */
+	private volatile Landmarks landmarks;
+	
+	/** Spatial index of the snapshot's vertices, {@code null} until built */
+	private volatile SpatialIndex spatialIndex;
+	
+	/** Cache of routes found without a hook, {@code null} if disabled */
+	private volatile RouteCache routeCache;
+	
 	
 	/** 
 	 * Create a new empty MapGraph 
@@ -72,6 +104,10 @@ public class MapGraph {
 		if (location == null || vertices.containsKey(location))
 			return false;
 		vertices.put(location, new MapVertex(location));
+		compactGraph = null;
+		contractionHierarchy = null;
+		landmarks = null;
+		spatialIndex = null;
 		return true;
 	}
 
@@ -84,6 +120,16 @@ public class MapGraph {
 		return numEdges;
 	}
 
+	/**
+	 * Get the dictionary of the names and types of the roads in the graph.
+	 *  Loading a map into the graph through the same dictionary shares the
+	 *  strings of its roads with the graph's edges.
+	 * @return The {@link RoadDictionary} of this graph.
+	 */
+	public RoadDictionary getRoadDictionary() {
+		return dictionary;
+	}
+
 	/**
 	 * Adds a directed edge to the graph from pt1 to pt2.  
 	 * Precondition: Both GeographicPoints have already been added to the graph
@@ -94,14 +140,20 @@ public class MapGraph {
 	 * @param length The length of the road, in km
 	 * @throws IllegalArgumentException If the points have not already been
 	 *   added as nodes to the graph, if any of the arguments is null,
-	 *   or if the length is less than 0.
+	 *   if the length is less than 0, or if roadType is new and the graph
+	 *   already has {@link RoadDictionary#MAX_ROAD_TYPES} road types.
 	 */
 	public void addEdge(GeographicPoint from, GeographicPoint to, String roadName,
 					String roadType, double length) throws IllegalArgumentException {
 		//throws IllegalArgumentException with corresponding message
 		verifyEdgeFields(from, to, roadName, roadType, length);
-		vertices.get(from).addEdge(new DirectedEdge(roadName, roadType, length, from, to));
+		vertices.get(from).addEdge(new DirectedEdge(dictionary.nameId(roadName),
+				dictionary.typeCode(roadType), length, from, to));
 		numEdges++;
+		compactGraph = null;
+		contractionHierarchy = null;
+		landmarks = null;
+		spatialIndex = null;
 	}
 	
 	/**
@@ -125,6 +177,9 @@ public class MapGraph {
 					new Throwable("roadName=" + roadName + ", roadType=" + roadType));
 		if (length < 0)
 			throw new IllegalArgumentException("Length must be greater than or equal to 0");
+		if (! dictionary.canAddType(roadType))
+			throw new IllegalArgumentException("Map has too many road types",
+					new Throwable("roadType=" + roadType + ", max=" + RoadDictionary.MAX_ROAD_TYPES));
 		if (! vertices.containsKey(from))
 			throw new IllegalArgumentException("Start GeographicPoint doesn't exist in Map",
 					new Throwable("from=" + from));
@@ -152,6 +207,126 @@ public class MapGraph {
 	
 	
 	
+	/**
+	 * Builds an immutable, array-based snapshot of the graph which is used
+	 *  by all search methods, and the spatial index of its vertices. Calling
+	 *  this method after loading the map avoids building them on the first
+	 *  search.<br>
+	 * Adding vertices or edges afterwards discards the snapshot, and it is
+	 *  rebuilt on the next search.
+	 */
+	public void freeze() {
+		getSpatialIndex();
+	}
+	
+	/**
+	 * Gets the array-based snapshot of the graph, building it if needed.
+	 * @return The current {@link CompactGraph} of this graph.
+	 */
+	CompactGraph getCompactGraph() {
+		CompactGraph graph = compactGraph;
+		if (graph == null) {
+			synchronized (this) {
+				graph = compactGraph;
+				if (graph == null)
+					compactGraph = graph = CompactGraph.of(vertices.values(), dictionary);
+			}
+		}
+		return graph;
+	}
+	
+	/**
+	 * Installs a snapshot of the graph built elsewhere, e.g. read from a
+	 *  {@link GraphFile}, which must match the graph's vertices and edges.
+	 * @param graph The {@link CompactGraph} of this graph
+	 * @param numEdges Number of edges added to the graph, including duplicates
+	 */
+	synchronized void setCompactGraph(CompactGraph graph, int numEdges) {
+		compactGraph = graph;
+		this.numEdges = numEdges;
+	}
+	
+	/**
+	 * Gets the spatial index of the snapshot's vertices, building it if needed.
+	 * @return The current {@link SpatialIndex} of this graph.
+	 */
+	private SpatialIndex getSpatialIndex() {
+		CompactGraph graph = getCompactGraph();
+		SpatialIndex index = spatialIndex;
+		if (index == null || index.getGraph() != graph) {
+			synchronized (this) {
+				index = spatialIndex;
+				if (index == null || index.getGraph() != graph)
+					spatialIndex = index = new SpatialIndex(graph);
+			}
+		}
+		return index;
+	}
+	
+	/**
+	 * Finds the intersection nearest to a location, e.g. to snap a GPS
+	 *  coordinate to the graph before routing from it.<br>
+	 * Distances are measured on a plane projected around the map's mean
+	 *  latitude, which matches {@link GeographicPoint#distance(GeographicPoint)}
+	 *  closely at city scale.
+	 * @param latitude Latitude of location
+	 * @param longitude Longitude of location
+	 * @return The nearest intersection, or {@code null} if the graph is empty.
+	 */
+	public GeographicPoint nearestVertex(double latitude, double longitude) {
+		SpatialIndex index = getSpatialIndex();
+		int v = index.nearest(latitude, longitude);
+		return v < 0 ? null : index.getGraph().pointAt(v);
+	}
+	
+	/**
+	 * Finds the k intersections nearest to a location.
+	 * @param latitude Latitude of location
+	 * @param longitude Longitude of location
+	 * @param k Number of intersections to find
+	 * @return The k nearest intersections (or all of them if there are fewer),
+	 *   nearest first.
+	 * @throws IllegalArgumentException If k is negative.
+	 */
+	public List<GeographicPoint> kNearest(double latitude, double longitude, int k) 
+			throws IllegalArgumentException {
+		if (k < 0)
+			throw new IllegalArgumentException("Number of intersections must not be negative",
+					new Throwable("k=" + k));
+		SpatialIndex index = getSpatialIndex();
+		return toPoints(index.getGraph(), index.nearest(latitude, longitude, k));
+	}
+	
+	/**
+	 * Finds the intersections within a distance of a location.
+	 * @param latitude Latitude of location
+	 * @param longitude Longitude of location
+	 * @param radius Distance from location, in km
+	 * @return The intersections within radius, nearest first.
+	 * @throws IllegalArgumentException If radius is negative or not a number.
+	 */
+	public List<GeographicPoint> withinRadius(double latitude, double longitude, double radius) 
+			throws IllegalArgumentException {
+		if (!(radius >= 0))
+			throw new IllegalArgumentException("Radius must be greater than or equal to 0",
+					new Throwable("radius=" + radius));
+		SpatialIndex index = getSpatialIndex();
+		return toPoints(index.getGraph(), index.withinRadius(latitude, longitude, radius));
+	}
+	
+	/**
+	 * Gets the locations of vertices.
+	 * @param graph Snapshot of the vertices
+	 * @param ids Vertex ids
+	 * @return The location of each vertex, in order of ids.
+	 */
+	private List<GeographicPoint> toPoints(CompactGraph graph, int[] ids) {
+		List<GeographicPoint> points = new ArrayList<>(ids.length);
+		for (int id : ids)
+			points.add(graph.pointAt(id));
+		return points;
+	}
+	
 	/** 
 	 * Find the path from start to goal using breadth first search
 	 * @param start The starting location
@@ -162,7 +337,7 @@ public class MapGraph {
 	public List<GeographicPoint> bfs(GeographicPoint start, GeographicPoint goal) {
 		// Dummy variable for calling the search algorithms
         Consumer<GeographicPoint> temp = (x) -> {};
-        return bfs(start, goal, temp);
+        return cachedSearch(start, goal, SearchAlgorithm.BFS, () -> bfs(start, goal, temp));
 	}
 	
 	/** 
@@ -176,10 +351,12 @@ public class MapGraph {
 	public List<GeographicPoint> bfs(GeographicPoint start, GeographicPoint goal,
 					Consumer<GeographicPoint> nodeSearched) {
 		if (isValidGeographicPoints(start, goal)) {
-			//maps points to their "parent" point to find path taken
-			Map<GeographicPoint, GeographicPoint> parentMap = new HashMap<>();
-			if (hasBfsPath(start, goal, parentMap, nodeSearched))
-				return reconstructPath(start, goal, parentMap);
+			CompactGraph graph = getCompactGraph();
+			int startId = graph.indexOf(start);
+			int goalId = graph.indexOf(goal);
+			DijkstraEngine engine = getSearchEngine(graph);
+			if (hasBfsPath(engine, startId, goalId, nodeSearched))
+				return graph.pathTo(startId, goalId, engine.getParents());
 		}
 		return null;
 	}
@@ -188,57 +365,19 @@ public class MapGraph {
 	/**
 	 * Performs a breadth-first search on Map and finds the shortest (unweighted)
 	 *  path from start to goal.
-	 * @param start {@link GeographicPoint} start on Map
-	 * @param goal {@link GeographicPoint} goal on Map
-	 * @param parentMap A Map to reconstruct the path taken
+	 * @param engine Search engine of the Map
+	 * @param start Vertex id of start on Map
+	 * @param goal Vertex id of goal on Map
 	 * @param nodeSearched A hook for visualization
 	 * @return {@code true} if found path, {@code false} otherwise.
 	 */
-	private boolean hasBfsPath(GeographicPoint start, GeographicPoint goal, 
-			Map<GeographicPoint, GeographicPoint> parentMap,
+	private boolean hasBfsPath(DijkstraEngine engine, int start, int goal,
 			Consumer<GeographicPoint> nodeSearched) {
-		Queue<GeographicPoint> toExplore = new LinkedList<>();
-		Set<GeographicPoint> visited = new HashSet<>();
-		
-		visited.add(start);
-		toExplore.add(start);
-		
-		while(!toExplore.isEmpty()) {
-			GeographicPoint curr = toExplore.poll();
-			nodeSearched.accept(curr); //Visualization of search
-			if (curr.equals(goal))
-				return true;
-			
-			Iterator<DirectedEdge> it = vertices.get(curr).getEdges().iterator();
-			while(it.hasNext()) {
-				GeographicPoint next = it.next().getEnd();
-				boolean notVisited = visited.add(next);
-				if (notVisited) {
-					parentMap.put(next, curr);
-					toExplore.add(next);
-				}
-			}//inner while
-		}//outer while
-		return false;
-	}
-	
-	/**
-	 * Reconstructs path from start {@link GeographicPoint} to goal.
-	 * @param start {@link GeographicPoint} start on Map
-	 * @param goal {@link GeographicPoint} goal on Map
-	 * @param parentMap A Map to reconstruct the path taken
-	 * @return A {@link List} representing the path taken (including both start and goal). 
-	 */
-	private List<GeographicPoint> reconstructPath(GeographicPoint start, GeographicPoint goal, 
-			Map<GeographicPoint, GeographicPoint> parentMap) {
-		LinkedList<GeographicPoint> path = new LinkedList<>();
-		GeographicPoint curr = goal;
-		while(!curr.equals(start)) {
-			path.addFirst(curr);
-			curr = parentMap.get(curr);
-		}
-		path.addFirst(start);
-		return path;
+		if (start < 0 || goal < 0)
+			return false;
+		boolean found = engine.searchUnweighted(start, goal, nodeSearched);
+		lastSearchStats = engine.getStats();
+		return found;
 	}
 	
 	
@@ -253,7 +392,7 @@ public class MapGraph {
 	public List<GeographicPoint> dijkstra(GeographicPoint start, GeographicPoint goal) {
 		// Dummy variable for calling the search algorithms
         Consumer<GeographicPoint> temp = (x) -> {};
-        return dijkstra(start, goal, temp);
+        return cachedSearch(start, goal, SearchAlgorithm.DIJKSTRA, () -> dijkstra(start, goal, temp));
 	}
 	
 	
@@ -267,11 +406,49 @@ public class MapGraph {
 	 */
 	public List<GeographicPoint> dijkstra(GeographicPoint start, GeographicPoint goal, 
 			Consumer<GeographicPoint> nodeSearched) {
+		return dijkstra(start, goal, CostProfile.DISTANCE, nodeSearched);
+	}
+	
+	/** 
+	 * Find the cheapest path from start to goal by a cost profile using
+	 *  Dijkstra's algorithm.
+	 * @param start The starting location
+	 * @param goal The goal location
+	 * @param profile The cost model of roads
+	 * @return The list of intersections that form the cheapest path from 
+	 *   start to goal (including both start and goal), or {@code null} if path doesn't exist.
+	 * @throws IllegalArgumentException If profile is null or gives a negative cost.
+	 */
+	public List<GeographicPoint> dijkstra(GeographicPoint start, GeographicPoint goal, 
+			CostProfile profile) throws IllegalArgumentException {
+		// Dummy variable for calling the search algorithms
+        Consumer<GeographicPoint> temp = (x) -> {};
+        return dijkstra(start, goal, profile, temp);
+	}
+	
+	/** 
+	 * Find the cheapest path from start to goal by a cost profile using
+	 *  Dijkstra's algorithm.
+	 * @param start The starting location
+	 * @param goal The goal location
+	 * @param profile The cost model of roads
+	 * @param nodeSearched A hook for visualization
+	 * @return The list of intersections that form the cheapest path from 
+	 *   start to goal (including both start and goal), or {@code null} if path doesn't exist.
+	 * @throws IllegalArgumentException If profile is null or gives a negative cost.
+	 */
+	public List<GeographicPoint> dijkstra(GeographicPoint start, GeographicPoint goal, 
+			CostProfile profile, Consumer<GeographicPoint> nodeSearched) 
+			throws IllegalArgumentException {
+		if (profile == null)
+			throw new IllegalArgumentException("Cost profile is null");
 		if (isValidGeographicPoints(start, goal)) {
-			//maps points to their "parent" point to find path taken
-			Map<GeographicPoint, GeographicPoint> parentMap = new HashMap<>();
-			if (hasDijkstraPath(start, goal, parentMap, nodeSearched))
-				return reconstructPath(start, goal, parentMap);
+			CompactGraph graph = getCompactGraph();
+			int startId = graph.indexOf(start);
+			int goalId = graph.indexOf(goal);
+			DijkstraEngine engine = getSearchEngine(graph);
+			if (hasDijkstraPath(engine, startId, goalId, graph.weights(profile), nodeSearched))
+				return graph.pathTo(startId, goalId, engine.getParents());
 		}
 		return null;
 	}
@@ -279,58 +456,20 @@ public class MapGraph {
 	/**
 	 * Performs Dijkstra's search on Map and finds the shortest weighted
 	 *  path from start to goal.
-	 * @param start The starting location
-	 * @param goal The goal location
-	 * @param parentMap A Map to reconstruct the path taken
+	 * @param engine Search engine of the Map
+	 * @param start Vertex id of start on Map
+	 * @param goal Vertex id of goal on Map
+	 * @param weights Weight of each edge
 	 * @param nodeSearched A hook for visualization
 	 * @return {@code true} if found path, {@code false} otherwise.
 	 */
-	private boolean hasDijkstraPath(GeographicPoint start, GeographicPoint goal, 
-			Map<GeographicPoint, GeographicPoint> parentMap,
+	private boolean hasDijkstraPath(DijkstraEngine engine, int start, int goal, double[] weights,
 			Consumer<GeographicPoint> nodeSearched) {
-		PriorityQueue<WeightedMapVertex> toExplore = new PriorityQueue<>();
-		//maps points to their weight
-		Map<GeographicPoint, Double> visited = new HashMap<>();
-		visited.put(start, 0.0);
-		toExplore.add(new WeightedMapVertex(vertices.get(start), 0.0));
-		
-		while (! toExplore.isEmpty()) {
-			WeightedMapVertex currVertex = toExplore.poll();
-			GeographicPoint currPt = currVertex.getGeoPoint();
-			nodeSearched.accept(currPt); //visualization for search
-			
-			if (currPt.equals(goal))
-				return true;
-			
-			double currWeight = currVertex.getWeight();
-			Iterator<DirectedEdge> it = currVertex.getEdges().iterator();
-			while(it.hasNext()) {
-				DirectedEdge edge = it.next();
-				GeographicPoint next = edge.getEnd();
-				Double nextWeight = currWeight + edge.getLength();
-				if (hasLowerPriority(edge, nextWeight, visited)) {
-					visited.put(next, nextWeight);
-					parentMap.put(next, currVertex.getGeoPoint());
-					toExplore.add(new WeightedMapVertex(vertices.get(next), nextWeight));
-				}
-			}//inner while
-		}//outer while
-		return false;
-	}
-	
-	
-	/**
-	 * Checks if end-point of edge has lower priority than found beforehand.
-	 * @param edge DirectedEdge connected to end-point
-	 * @param nextWeight Sum of weight of the end-point by route taken
-	 * @param visited A Map of visited points and their weights
-	 * @return {@code true} if end-point has lower weight than found before, {@code false} otherwise.
-	 */
-	private boolean hasLowerPriority(DirectedEdge edge, double nextWeight, 
-			Map<GeographicPoint, Double> visited) {
-		GeographicPoint next = edge.getEnd();
-		Double visitedWeight = visited.get(next);
-		return visitedWeight == null || nextWeight < visitedWeight;
+		if (start < 0 || goal < 0)
+			return false;
+		boolean found = engine.search(start, goal, weights, null, nodeSearched);
+		lastSearchStats = engine.getStats();
+		return found;
 	}
 	
 	/** 
@@ -343,7 +482,7 @@ public class MapGraph {
 	public List<GeographicPoint> aStarSearch(GeographicPoint start, GeographicPoint goal) {
 		// Dummy variable for calling the search algorithms
         Consumer<GeographicPoint> temp = (x) -> {};
-        return aStarSearch(start, goal, temp);
+        return cachedSearch(start, goal, SearchAlgorithm.A_STAR, () -> aStarSearch(start, goal, temp));
 	}
 	
 	
@@ -357,61 +496,951 @@ public class MapGraph {
 	 */
 	public List<GeographicPoint> aStarSearch(GeographicPoint start, GeographicPoint goal, 
 			Consumer<GeographicPoint> nodeSearched) {
+		return aStarSearch(start, goal, CostProfile.DISTANCE, nodeSearched);
+	}
+	
+	/** 
+	 * Find the cheapest path from start to goal by a cost profile using
+	 *  A-Star search.
+	 * @param start The starting location
+	 * @param goal The goal location
+	 * @param profile The cost model of roads
+	 * @return The list of intersections that form the cheapest path from 
+	 *   start to goal (including both start and goal), or {@code null} if path doesn't exist.
+	 * @throws IllegalArgumentException If profile is null or gives a negative cost.
+	 */
+	public List<GeographicPoint> aStarSearch(GeographicPoint start, GeographicPoint goal, 
+			CostProfile profile) throws IllegalArgumentException {
+		// Dummy variable for calling the search algorithms
+        Consumer<GeographicPoint> temp = (x) -> {};
+        return aStarSearch(start, goal, profile, temp);
+	}
+	
+	/** 
+	 * Find the cheapest path from start to goal by a cost profile using
+	 *  A-Star search. The heuristic is the straight-line distance to goal
+	 *  times the profile's lowest cost per km, which never overestimates.
+	 * @param start The starting location
+	 * @param goal The goal location
+	 * @param profile The cost model of roads
+	 * @param nodeSearched A hook for visualization
+	 * @return The list of intersections that form the cheapest path from 
+	 *   start to goal (including both start and goal), or {@code null} if path doesn't exist.
+	 * @throws IllegalArgumentException If profile is null or gives a negative cost.
+	 */
+	public List<GeographicPoint> aStarSearch(GeographicPoint start, GeographicPoint goal, 
+			CostProfile profile, Consumer<GeographicPoint> nodeSearched) 
+			throws IllegalArgumentException {
+		if (profile == null)
+			throw new IllegalArgumentException("Cost profile is null");
 		if (isValidGeographicPoints(start, goal)) {
-			Map<GeographicPoint, GeographicPoint> parentMap = new HashMap<>();
-			if (hasAStarPath(start, goal, parentMap, nodeSearched))
-				return reconstructPath(start, goal, parentMap);
+			CompactGraph graph = getCompactGraph();
+			int startId = graph.indexOf(start);
+			int goalId = graph.indexOf(goal);
+			DijkstraEngine engine = getSearchEngine(graph);
+			if (hasAStarPath(engine, startId, goalId, profile, nodeSearched))
+				return graph.pathTo(startId, goalId, engine.getParents());
 		}
 		return null;
 	}
 
 	/**
-	 * 
-	 * Performs A* search on Map and finds the shortest weighted
-	 *  path from start to goal.
+	 * Performs A* search on Map and finds the cheapest path from start to goal
+	 *  by a cost profile, using the straight-line distance to goal times the
+	 *  lowest cost per km as heuristic.
+	 * @param engine Search engine of the Map
+	 * @param start Vertex id of start on Map
+	 * @param goal Vertex id of goal on Map
+	 * @param profile The cost model of roads
+	 * @param nodeSearched A hook for visualization
+	 * @return {@code true} if found path, {@code false} otherwise.
+	 */
+	private boolean hasAStarPath(DijkstraEngine engine, int start, int goal, CostProfile profile,
+			Consumer<GeographicPoint> nodeSearched) {
+		if (start < 0 || goal < 0)
+			return false;
+		CompactGraph graph = engine.getGraph();
+		double[] weights = graph.weights(profile);
+		double costPerKm = profile.minCostPerKm();
+		IntToDoubleFunction heuristic = costPerKm == 1 ? v -> graph.distance(v, goal)
+				: v -> graph.distance(v, goal) * costPerKm;
+		boolean found = engine.search(start, goal, weights, heuristic, nodeSearched);
+		lastSearchStats = engine.getStats();
+		return found;
+	}
+	
+	/**
+	 * Creates a table of turn costs for the current state of the graph, in
+	 *  which turns can be forbidden or given a cost. Turns which are not set
+	 *  cost a default by their change of bearing.<br>
+	 * The table can only be searched with until vertices or edges are added.
+	 * @param sharpTurnCost The cost of turning back onto a different road,
+	 *   a right-angle turn costs half of it
+	 * @param uTurnCost The cost of a U-turn back to the previous intersection,
+	 *   infinity to forbid U-turns
+	 * @return A new {@link TurnCostTable} of this graph.
+	 * @throws IllegalArgumentException If a cost is negative or not a number.
+	 */
+	public TurnCostTable newTurnCostTable(double sharpTurnCost, double uTurnCost) 
+			throws IllegalArgumentException {
+		if (!(sharpTurnCost >= 0) || !(uTurnCost >= 0))
+			throw new IllegalArgumentException("Turn costs must be greater than or equal to 0",
+					new Throwable("sharpTurnCost=" + sharpTurnCost + ", uTurnCost=" + uTurnCost));
+		return new TurnCostTable(getCompactGraph(), sharpTurnCost, uTurnCost);
+	}
+	
+	/** 
+	 * Find the cheapest path from start to goal by a cost profile and turn
+	 *  costs using Dijkstra's algorithm.
 	 * @param start The starting location
 	 * @param goal The goal location
-	 * @param parentMap A Map to reconstruct the path taken
+	 * @param profile The cost model of roads
+	 * @param turns The costs of turns
+	 * @return The list of intersections that form the cheapest path from 
+	 *   start to goal (including both start and goal), or {@code null} if path doesn't exist.
+	 * @throws IllegalArgumentException If profile or turns is null, if profile
+	 *   gives a negative cost, or if vertices or edges were added after turns
+	 *   was created.
+	 */
+	public List<GeographicPoint> dijkstra(GeographicPoint start, GeographicPoint goal, 
+			CostProfile profile, TurnCostTable turns) throws IllegalArgumentException {
+		// Dummy variable for calling the search algorithms
+        Consumer<GeographicPoint> temp = (x) -> {};
+        return dijkstra(start, goal, profile, turns, temp);
+	}
+	
+	/** 
+	 * Find the cheapest path from start to goal by a cost profile and turn
+	 *  costs using Dijkstra's algorithm on the edges of the graph.
+	 * @param start The starting location
+	 * @param goal The goal location
+	 * @param profile The cost model of roads
+	 * @param turns The costs of turns
 	 * @param nodeSearched A hook for visualization
-	 * @return {@code true} if found path, {@code false} otherwise.
+	 * @return The list of intersections that form the cheapest path from 
+	 *   start to goal (including both start and goal), or {@code null} if path doesn't exist.
+	 * @throws IllegalArgumentException If profile or turns is null, if profile
+	 *   gives a negative cost, or if vertices or edges were added after turns
+	 *   was created.
+	 */
+	public List<GeographicPoint> dijkstra(GeographicPoint start, GeographicPoint goal, 
+			CostProfile profile, TurnCostTable turns, Consumer<GeographicPoint> nodeSearched) 
+			throws IllegalArgumentException {
+		return searchWithTurns(start, goal, profile, turns, false, nodeSearched);
+	}
+	
+	/** 
+	 * Find the cheapest path from start to goal by a cost profile and turn
+	 *  costs using A-Star search.
+	 * @param start The starting location
+	 * @param goal The goal location
+	 * @param profile The cost model of roads
+	 * @param turns The costs of turns
+	 * @return The list of intersections that form the cheapest path from 
+	 *   start to goal (including both start and goal), or {@code null} if path doesn't exist.
+	 * @throws IllegalArgumentException If profile or turns is null, if profile
+	 *   gives a negative cost, or if vertices or edges were added after turns
+	 *   was created.
 	 */
-	private boolean hasAStarPath(GeographicPoint start, GeographicPoint goal, 
-			Map<GeographicPoint, GeographicPoint> parentMap,
+	public List<GeographicPoint> aStarSearch(GeographicPoint start, GeographicPoint goal, 
+			CostProfile profile, TurnCostTable turns) throws IllegalArgumentException {
+		// Dummy variable for calling the search algorithms
+        Consumer<GeographicPoint> temp = (x) -> {};
+        return aStarSearch(start, goal, profile, turns, temp);
+	}
+	
+	/** 
+	 * Find the cheapest path from start to goal by a cost profile and turn
+	 *  costs using A-Star search on the edges of the graph. Turn costs are
+	 *  never negative, so the heuristic of
+	 *  {@link #aStarSearch(GeographicPoint, GeographicPoint, CostProfile, Consumer)}
+	 *  still never overestimates.
+	 * @param start The starting location
+	 * @param goal The goal location
+	 * @param profile The cost model of roads
+	 * @param turns The costs of turns
+	 * @param nodeSearched A hook for visualization
+	 * @return The list of intersections that form the cheapest path from 
+	 *   start to goal (including both start and goal), or {@code null} if path doesn't exist.
+	 * @throws IllegalArgumentException If profile or turns is null, if profile
+	 *   gives a negative cost, or if vertices or edges were added after turns
+	 *   was created.
+	 */
+	public List<GeographicPoint> aStarSearch(GeographicPoint start, GeographicPoint goal, 
+			CostProfile profile, TurnCostTable turns, Consumer<GeographicPoint> nodeSearched) 
+			throws IllegalArgumentException {
+		return searchWithTurns(start, goal, profile, turns, true, nodeSearched);
+	}
+	
+	/**
+	 * Performs an edge-based search on Map, honoring turn costs.
+	 * @param start The starting location
+	 * @param goal The goal location
+	 * @param profile The cost model of roads
+	 * @param turns The costs of turns
+	 * @param aStar Whether to search with the straight-line heuristic
+	 * @param nodeSearched A hook for visualization
+	 * @return The cheapest path from start to goal, or {@code null} if path doesn't exist.
+	 */
+	private List<GeographicPoint> searchWithTurns(GeographicPoint start, GeographicPoint goal,
+			CostProfile profile, TurnCostTable turns, boolean aStar,
+			Consumer<GeographicPoint> nodeSearched) throws IllegalArgumentException {
+		if (profile == null || turns == null)
+			throw new IllegalArgumentException("Cost profile or turn costs is null",
+					new Throwable("profile=" + profile + ", turns=" + turns));
+		CompactGraph graph = getCompactGraph();
+		if (turns.getGraph() != graph)
+			throw new IllegalArgumentException("Turn costs are of an older version of the Map");
+		if (!isValidGeographicPoints(start, goal))
+			return null;
+		int startId = graph.indexOf(start);
+		int goalId = graph.indexOf(goal);
+		if (startId < 0 || goalId < 0)
+			return null;
+		if (startId == goalId)
+			return graph.toPath(new int[] { startId });
+		
+		DijkstraEngine engine = getSearchEngine(graph);
+		double costPerKm = profile.minCostPerKm();
+		IntToDoubleFunction heuristic = aStar ? v -> graph.distance(v, goalId) * costPerKm : null;
+		int lastEdge = engine.searchWithTurns(startId, goalId, graph.weights(profile), turns,
+				heuristic, nodeSearched);
+		lastSearchStats = engine.getStats();
+		return lastEdge < 0 ? null : graph.pathOfEdges(lastEdge, engine.getParents());
+	}
+	
+	/**
+	 * Enables caching the routes found by {@link #bfs(GeographicPoint, GeographicPoint)},
+	 *  {@link #dijkstra(GeographicPoint, GeographicPoint)} and
+	 *  {@link #aStarSearch(GeographicPoint, GeographicPoint)}, so repeated
+	 *  requests for the same route don't search again. Searches with a hook
+	 *  for visualization always search. The cache is shared with routers
+	 *  created afterwards by {@link #newConcurrentRouter()}.<br>
+	 * Least recently used routes are evicted when a limit is exceeded. Routes
+	 *  are cached per snapshot, so routes found before vertices or edges are
+	 *  added are no longer used by the graph, while older routers still find
+	 *  them. A route found in the cache sets the
+	 *  search statistics to {@link SearchStats#NONE}.
+	 * @param maxEntries Maximal number of cached routes
+	 * @param maxBytes Maximal estimated size of cached routes, in bytes
+	 * @throws IllegalArgumentException If a limit is not positive.
+	 */
+	public void enableRouteCache(int maxEntries, long maxBytes) throws IllegalArgumentException {
+		routeCache = new RouteCache(maxEntries, maxBytes);
+	}
+	
+	/**
+	 * Disables and discards the route cache.
+	 */
+	public void disableRouteCache() {
+		routeCache = null;
+	}
+	
+	/**
+	 * Gets statistics of the route cache.
+	 * @return The {@link RouteCacheStats} of the cache, or {@code null} if it is disabled.
+	 */
+	public RouteCacheStats getRouteCacheStats() {
+		RouteCache cache = routeCache;
+		return cache == null ? null : cache.getStats();
+	}
+	
+	/**
+	 * Finds a route in the route cache, or searches for it and caches it.
+	 * @param start The starting location
+	 * @param goal The goal location
+	 * @param algorithm Algorithm of search
+	 * @param search Search which finds the route
+	 * @return The route found by search, or {@code null} if route doesn't exist.
+	 */
+	private List<GeographicPoint> cachedSearch(GeographicPoint start, GeographicPoint goal,
+			SearchAlgorithm algorithm, Supplier<List<GeographicPoint>> search) {
+		RouteCache cache = routeCache;
+		if (cache == null || !isValidGeographicPoints(start, goal))
+			return search.get();
+		CompactGraph graph = getCompactGraph();
+		int startId = graph.indexOf(start);
+		int goalId = graph.indexOf(goal);
+		if (startId < 0 || goalId < 0)
+			return null;
+		int[] route = cache.get(graph, startId, goalId, algorithm);
+		if (route != null) {
+			lastSearchStats = SearchStats.NONE;
+			return route == RouteCache.NO_ROUTE ? null : graph.toPath(route);
+		}
+		List<GeographicPoint> path = search.get();
+		cache.put(graph, startId, goalId, algorithm,
+				path == null ? RouteCache.NO_ROUTE : graph.toIds(path));
+		return path;
+	}
+	
+	/**
+	 * Selects landmarks and precomputes the distances from and to each of
+	 *  them, which are used by {@link #aStarLandmarkSearch(GeographicPoint, GeographicPoint)}.
+	 *  The searches of different landmarks run in parallel.<br>
+	 * Adding vertices or edges afterwards discards the landmarks.
+	 * @param count Number of landmarks to select
+	 * @param strategy Strategy to select landmarks by
+	 * @throws IllegalArgumentException If count is not positive, or strategy is null.
+	 */
+	public void prepareLandmarks(int count, LandmarkStrategy strategy) 
+			throws IllegalArgumentException {
+		if (strategy == null)
+			throw new IllegalArgumentException("Landmark strategy is null");
+		landmarks = new Landmarks(getCompactGraph(), count, strategy);
+	}
+	
+	/** 
+	 * Find the path from start to goal using A-Star search with the landmark
+	 *  (ALT) heuristic.
+	 * @param start The starting location
+	 * @param goal The goal location
+	 * @return The list of intersections that form the shortest path from 
+	 *   start to goal (including both start and goal).
+	 */
+	public List<GeographicPoint> aStarLandmarkSearch(GeographicPoint start, GeographicPoint goal) {
+		// Dummy variable for calling the search algorithms
+        Consumer<GeographicPoint> temp = (x) -> {};
+        return aStarLandmarkSearch(start, goal, temp);
+	}
+	
+	/** 
+	 * Find the path from start to goal using A-Star search with the landmark
+	 *  (ALT) heuristic: the largest of the straight-line distance and the
+	 *  triangle-inequality lower bounds given by the landmarks.<br>
+	 * If landmarks were not prepared, {@link #DEFAULT_LANDMARK_COUNT} landmarks
+	 *  are selected with {@link LandmarkStrategy#FARTHEST} first.
+	 * @param start The starting location
+	 * @param goal The goal location
+	 * @param nodeSearched A hook for visualization
+	 * @return The list of intersections that form the shortest path from 
+	 *   start to goal (including both start and goal), or {@code null} if path doesn't exist.
+	 */
+	public List<GeographicPoint> aStarLandmarkSearch(GeographicPoint start, GeographicPoint goal, 
+			Consumer<GeographicPoint> nodeSearched) {
+		if (isValidGeographicPoints(start, goal)) {
+			CompactGraph graph = getCompactGraph();
+			int startId = graph.indexOf(start);
+			int goalId = graph.indexOf(goal);
+			if (startId < 0 || goalId < 0)
+				return null;
+			Landmarks alt = landmarks;
+			if (alt == null || alt.getGraph() != graph) {
+				prepareLandmarks(DEFAULT_LANDMARK_COUNT, LandmarkStrategy.FARTHEST);
+				alt = landmarks;
+			}
+			DijkstraEngine engine = getSearchEngine(graph);
+			boolean found = engine.search(startId, goalId, alt.heuristic(goalId), nodeSearched);
+			lastSearchStats = engine.getStats();
+			if (found)
+				return graph.pathTo(startId, goalId, engine.getParents());
+		}
+		return null;
+	}
+	
+	/**
+	 * Creates a read-only router over the current state of the graph, which
+	 *  any number of threads can query at the same time. Its batch queries
+	 *  run on the common fork-join pool.<br>
+	 * A prepared Contraction Hierarchy, landmarks and an enabled route cache
+	 *  are shared with the router. Changes made to this graph afterwards are not seen by it.
+	 * @return A new {@link ConcurrentRouter} of this graph.
+	 */
+	public ConcurrentRouter newConcurrentRouter() {
+		return newConcurrentRouter(ForkJoinPool.commonPool());
+	}
+	
+	/**
+	 * Creates a read-only router over the current state of the graph, which
+	 *  any number of threads can query at the same time.
+	 * @param pool Pool batch queries of the router run on
+	 * @return A new {@link ConcurrentRouter} of this graph.
+	 * @throws IllegalArgumentException If pool is null.
+	 */
+	public ConcurrentRouter newConcurrentRouter(ForkJoinPool pool) throws IllegalArgumentException {
+		if (pool == null)
+			throw new IllegalArgumentException("Pool is null");
+		CompactGraph graph = getCompactGraph();
+		ContractionHierarchy hierarchy = contractionHierarchy;
+		Landmarks alt = landmarks;
+		return new ConcurrentRouter(graph,
+				hierarchy != null && hierarchy.getGraph() == graph ? hierarchy : null,
+				alt != null && alt.getGraph() == graph ? alt : null, routeCache, pool);
+	}
+	
+	/**
+	 * Creates a router over the current state of the graph whose edge weights
+	 *  can be changed, e.g. for road closures and speed changes, and applied
+	 *  in well under a second without repeating its preprocessing.<br>
+	 * Changes made to this graph afterwards are not seen by the router.
+	 * @param profile The cost model of roads giving the initial weights
+	 * @return A new {@link CustomizableRouter} of this graph.
+	 * @throws IllegalArgumentException If profile is null or gives a negative cost.
+	 */
+	public CustomizableRouter newCustomizableRouter(CostProfile profile) 
+			throws IllegalArgumentException {
+		if (profile == null)
+			throw new IllegalArgumentException("Cost profile is null");
+		return new CustomizableRouter(getCompactGraph(), profile);
+	}
+	
+	/**
+	 * Computes the shortest distance from every source to every target.<br>
+	 * Runs one one-to-many Dijkstra's search per source, which stops as soon as
+	 *  all targets are settled. Searches of different sources run in parallel,
+	 *  and no paths are built.
+	 * @param sources The starting locations
+	 * @param targets The goal locations
+	 * @return A matrix where entry {@code [i][j]} is the length of the shortest
+	 *   path from source i to target j, in km, or {@link Double#POSITIVE_INFINITY}
+	 *   if target j can't be reached from source i.
+	 * @throws IllegalArgumentException If any location is null or not a vertex
+	 *   in the graph.
+	 */
+	public double[][] distanceMatrix(List<GeographicPoint> sources, List<GeographicPoint> targets) 
+			throws IllegalArgumentException {
+		CompactGraph graph = getCompactGraph();
+		int[] sourceIds = toVertexIds(graph, sources);
+		int[] targetIds = toVertexIds(graph, targets);
+		boolean[] isTarget = new boolean[graph.numVertices];
+		int numTargets = 0;
+		for (int t : targetIds) {
+			if (!isTarget[t]) {
+				isTarget[t] = true;
+				numTargets++;
+			}
+		}
+		
+		double[][] matrix = new double[sourceIds.length][targetIds.length];
+		final int distinctTargets = numTargets;
+		IntStream.range(0, sourceIds.length).parallel().forEach(i -> {
+			DijkstraEngine engine = new DijkstraEngine(graph);
+			engine.searchMany(sourceIds[i], isTarget, distinctTargets);
+			for (int j = 0; j < targetIds.length; j++)
+				matrix[i][j] = engine.getDistance(targetIds[j]);
+		});
+		return matrix;
+	}
+
+	/**
+	 * Computes the shortest paths from source to every intersection using
+	 *  parallel delta-stepping on the common pool, with buckets as wide as
+	 *  the mean road length.
+	 * @param source The starting location
+	 * @return The {@link ShortestPathTree} of source.
+	 * @throws IllegalArgumentException If source is null or not a vertex in the graph.
+	 */
+	public ShortestPathTree shortestPathTree(GeographicPoint source)
+			throws IllegalArgumentException {
+		return shortestPathTree(source, ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * Computes the shortest paths from source to every intersection using
+	 *  parallel delta-stepping, with buckets as wide as the mean road length.
+	 * @param source The starting location
+	 * @param pool Pool the relaxations run on
+	 * @return The {@link ShortestPathTree} of source.
+	 * @throws IllegalArgumentException If source is null or not a vertex in
+	 *   the graph, or if pool is null.
+	 */
+	public ShortestPathTree shortestPathTree(GeographicPoint source, ForkJoinPool pool)
+			throws IllegalArgumentException {
+		return shortestPathTree(source, DeltaStepping.defaultDelta(getCompactGraph().edgeLength),
+				pool);
+	}
+
+	/**
+	 * Computes the shortest paths from source to every intersection using
+	 *  parallel delta-stepping.<br>
+	 * Intersections are processed in buckets of distance from source, and the
+	 *  roads out of each bucket are relaxed in parallel on pool. Narrow buckets
+	 *  do less redundant work, and wide ones have more parallel work per bucket.
+	 *  The distances equal those of Dijkstra's algorithm exactly.
+	 * @param source The starting location
+	 * @param delta The width of a bucket, in km
+	 * @param pool Pool the relaxations run on
+	 * @return The {@link ShortestPathTree} of source.
+	 * @throws IllegalArgumentException If source is null or not a vertex in the
+	 *   graph, if delta is not positive, or if pool is null.
+	 */
+	public ShortestPathTree shortestPathTree(GeographicPoint source, double delta,
+			ForkJoinPool pool) throws IllegalArgumentException {
+		if (!(delta > 0) || delta == Double.POSITIVE_INFINITY)
+			throw new IllegalArgumentException("Bucket width must be positive",
+					new Throwable("delta=" + delta));
+		if (pool == null)
+			throw new IllegalArgumentException("Pool is null");
+		CompactGraph graph = getCompactGraph();
+		int sourceId = toVertexIds(graph, Collections.singletonList(source))[0];
+		return new DeltaStepping(graph, graph.edgeLength, delta, pool).run(sourceId);
+	}
+
+	/**
+	 * Precomputes the shortest distance and path between every pair of
+	 *  intersections of a small map, on the common pool, choosing the
+	 *  algorithm by the density of the graph.
+	 * @return The {@link AllPairsShortestPaths} of this graph.
+	 * @throws IllegalArgumentException If the graph has more than
+	 *   {@link AllPairsShortestPaths#MAX_VERTICES} vertices.
+	 */
+	public AllPairsShortestPaths allPairsShortestPaths() throws IllegalArgumentException {
+		return allPairsShortestPaths(null, ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * Precomputes the shortest distance and path between every pair of
+	 *  intersections of a small map.<br>
+	 * Floyd-Warshall takes time cubic in the number of vertices regardless of
+	 *  edges, and Dijkstra's search from each vertex grows with the number of
+	 *  edges, so the first suits dense graphs and the second sparse ones.
+	 * @param method The algorithm to use, or {@code null} to choose it by the
+	 *   density of the graph
+	 * @param pool Pool the computation runs on
+	 * @return The {@link AllPairsShortestPaths} of this graph.
+	 * @throws IllegalArgumentException If the graph has more than
+	 *   {@link AllPairsShortestPaths#MAX_VERTICES} vertices, or if pool is null.
+	 */
+	public AllPairsShortestPaths allPairsShortestPaths(AllPairsShortestPaths.Method method,
+			ForkJoinPool pool) throws IllegalArgumentException {
+		if (pool == null)
+			throw new IllegalArgumentException("Pool is null");
+		CompactGraph graph = getCompactGraph();
+		if (graph.numVertices > AllPairsShortestPaths.MAX_VERTICES)
+			throw new IllegalArgumentException("Map is too large for all pairs shortest paths",
+					new Throwable("numVertices=" + graph.numVertices));
+		return AllPairsShortestPaths.compute(graph,
+				method == null ? AllPairsShortestPaths.chooseMethod(graph) : method, pool);
+	}
+
+	/**
+	 * Finds the shortest paths from one source to many targets, using a single
+	 *  search which stops as soon as all targets are settled.
+	 * @param source The starting location
+	 * @param targets The goal locations
+	 * @return The shortest path to each target, in the order of targets,
+	 *   with {@code null} for targets which can't be reached.
+	 * @throws IllegalArgumentException If any location is null or not a vertex
+	 *   in the graph.
+	 */
+	public List<List<GeographicPoint>> oneToManyPaths(GeographicPoint source, 
+			List<GeographicPoint> targets) throws IllegalArgumentException {
+		CompactGraph graph = getCompactGraph();
+		int sourceId = toVertexIds(graph, Collections.singletonList(source))[0];
+		int[] targetIds = toVertexIds(graph, targets);
+		boolean[] isTarget = new boolean[graph.numVertices];
+		int numTargets = 0;
+		for (int t : targetIds) {
+			if (!isTarget[t]) {
+				isTarget[t] = true;
+				numTargets++;
+			}
+		}
+		
+		DijkstraEngine engine = getSearchEngine(graph);
+		engine.searchMany(sourceId, isTarget, numTargets);
+		lastSearchStats = engine.getStats();
+		List<List<GeographicPoint>> paths = new ArrayList<>(targetIds.length);
+		for (int t : targetIds) {
+			if (engine.getDistance(t) == Double.POSITIVE_INFINITY)
+				paths.add(null);
+			else
+				paths.add(graph.pathTo(sourceId, t, engine.getParents()));
+		}
+		return paths;
+	}
+
+	/**
+	 * Finds the k shortest loopless paths from start to goal, using Yen's
+	 *  algorithm.
+	 * @param start The starting location
+	 * @param goal The goal location
+	 * @param k The maximal number of paths
+	 * @return Up to k lists of intersections that form paths from start to goal
+	 *   (including both start and goal), shortest first, or an empty list if
+	 *   path doesn't exist.
+	 * @throws IllegalArgumentException If start or goal is null or not a vertex
+	 *   in the graph, or if k is less than 1.
+	 */
+	public List<List<GeographicPoint>> kShortestPaths(GeographicPoint start, GeographicPoint goal,
+			int k) throws IllegalArgumentException {
+		return kShortestPaths(start, goal, k, CostProfile.DISTANCE);
+	}
+
+	/**
+	 * Finds the k cheapest loopless paths from start to goal by a cost
+	 *  profile, using Yen's algorithm.<br>
+	 * The shortest-path tree to goal is built once and guides the spur
+	 *  searches of each round, which run in parallel.
+	 * @param start The starting location
+	 * @param goal The goal location
+	 * @param k The maximal number of paths
+	 * @param profile The cost model of roads
+	 * @return Up to k lists of intersections that form paths from start to goal
+	 *   (including both start and goal), cheapest first, or an empty list if
+	 *   path doesn't exist.
+	 * @throws IllegalArgumentException If start or goal is null or not a vertex
+	 *   in the graph, if k is less than 1, or if profile is null or gives a
+	 *   negative cost.
+	 */
+	public List<List<GeographicPoint>> kShortestPaths(GeographicPoint start, GeographicPoint goal,
+			int k, CostProfile profile) throws IllegalArgumentException {
+		if (k < 1)
+			throw new IllegalArgumentException("Number of paths must be greater than 0",
+					new Throwable("k=" + k));
+		if (profile == null)
+			throw new IllegalArgumentException("Cost profile is null");
+		CompactGraph graph = getCompactGraph();
+		int[] ids = toVertexIds(graph, Arrays.asList(start, goal));
+		List<List<GeographicPoint>> paths = new ArrayList<>(k);
+		for (int[] path : KShortestPaths.find(graph, graph.weights(profile), ids[0], ids[1], k))
+			paths.add(graph.toPath(path));
+		return paths;
+	}
+
+	/**
+	 * Finds the shortest route from start to goal and diverse alternatives to
+	 *  it, as shown by navigation apps.
+	 * @param start The starting location
+	 * @param goal The goal location
+	 * @param maxAlternatives The maximal number of alternatives
+	 * @return The list of intersections that form the shortest route from
+	 *   start to goal (including both start and goal), followed by up to
+	 *   maxAlternatives alternatives, best first, or an empty list if route
+	 *   doesn't exist.
+	 * @throws IllegalArgumentException If start or goal is null or not a vertex
+	 *   in the graph, or if maxAlternatives is negative.
+	 */
+	public List<List<GeographicPoint>> alternativeRoutes(GeographicPoint start,
+			GeographicPoint goal, int maxAlternatives) throws IllegalArgumentException {
+		return alternativeRoutes(start, goal, maxAlternatives, CostProfile.DISTANCE);
+	}
+
+	/**
+	 * Finds the cheapest route from start to goal by a cost profile and diverse
+	 *  alternatives to it, as shown by navigation apps.<br>
+	 * Alternatives go through the plateaus shared by the shortest-path trees
+	 *  from start and to goal, so all of them are found by these two searches.
+	 *  Alternatives are at most 25% costlier than the cheapest route, share
+	 *  at most 80% of its cost with better routes, and are locally optimal.
+	 *  If plateaus give too few alternatives, each missing one takes about one
+	 *  more search, with the roads of the routes found made costlier.
+	 * @param start The starting location
+	 * @param goal The goal location
+	 * @param maxAlternatives The maximal number of alternatives
+	 * @param profile The cost model of roads
+	 * @return The list of intersections that form the cheapest route from
+	 *   start to goal (including both start and goal), followed by up to
+	 *   maxAlternatives alternatives, best first, or an empty list if route
+	 *   doesn't exist.
+	 * @throws IllegalArgumentException If start or goal is null or not a vertex
+	 *   in the graph, if maxAlternatives is negative, or if profile is null or
+	 *   gives a negative cost.
+	 */
+	public List<List<GeographicPoint>> alternativeRoutes(GeographicPoint start,
+			GeographicPoint goal, int maxAlternatives, CostProfile profile)
+			throws IllegalArgumentException {
+		if (maxAlternatives < 0)
+			throw new IllegalArgumentException("Number of alternatives must be greater than or equal to 0",
+					new Throwable("maxAlternatives=" + maxAlternatives));
+		if (profile == null)
+			throw new IllegalArgumentException("Cost profile is null");
+		CompactGraph graph = getCompactGraph();
+		int[] ids = toVertexIds(graph, Arrays.asList(start, goal));
+		List<List<GeographicPoint>> routes = new ArrayList<>(maxAlternatives + 1);
+		for (int[] route : AlternativeRoutes.find(graph, graph.weights(profile), ids[0], ids[1],
+				maxAlternatives))
+			routes.add(graph.toPath(route));
+		return routes;
+	}
+	
+	/**
+	 * Finds all intersections within a road distance of origin, using a
+	 *  Dijkstra's search which stops as soon as the distance budget is used
+	 *  up. Intersections are passed to the listener as they are settled,
+	 *  nearest first, and nothing is collected.
+	 * @param origin The starting location
+	 * @param maxKm The distance budget, in km
+	 * @param listener Listener of reached intersections
+	 * @return The number of reached intersections.
+	 * @throws IllegalArgumentException If origin is null or not a vertex in the
+	 *   graph, if maxKm is negative or not a number, or if listener is null.
+	 */
+	public int reachableWithin(GeographicPoint origin, double maxKm, ReachabilityListener listener) 
+			throws IllegalArgumentException {
+		return reachableWithin(origin, maxKm, listener, false, null);
+	}
+	
+	/**
+	 * Finds all intersections within a road distance of origin, and the roads
+	 *  which leave the distance budget, using a Dijkstra's search which stops
+	 *  as soon as the budget is used up. Each road out of a reached
+	 *  intersection which is longer than the budget left is passed to the
+	 *  listener with the point where the budget runs out, on the road's
+	 *  segment geometry if it is found in segments and on the straight line
+	 *  between its intersections otherwise.
+	 * @param origin The starting location
+	 * @param maxKm The distance budget, in km
+	 * @param segments The road segments of the map by end point, or {@code null}
+	 * @param listener Listener of reached intersections and partially reached roads
+	 * @return The number of reached intersections.
+	 * @throws IllegalArgumentException If origin is null or not a vertex in the
+	 *   graph, if maxKm is negative or not a number, or if listener is null.
+	 */
+	public int reachableWithin(GeographicPoint origin, double maxKm, 
+			Map<GeographicPoint, ? extends Set<RoadSegment>> segments, ReachabilityListener listener) 
+			throws IllegalArgumentException {
+		return reachableWithin(origin, maxKm, listener, true, segments);
+	}
+	
+	private int reachableWithin(GeographicPoint origin, double maxKm, ReachabilityListener listener,
+			boolean reportEdges, Map<GeographicPoint, ? extends Set<RoadSegment>> segments) 
+			throws IllegalArgumentException {
+		if (!(maxKm >= 0))
+			throw new IllegalArgumentException("Distance budget must be greater than or equal to 0",
+					new Throwable("maxKm=" + maxKm));
+		if (listener == null)
+			throw new IllegalArgumentException("Listener is null");
+		CompactGraph graph = getCompactGraph();
+		int originId = toVertexIds(graph, Collections.singletonList(origin))[0];
+		DijkstraEngine engine = getSearchEngine(graph);
+		engine.searchWithin(originId, maxKm, new DijkstraEngine.ReachListener() {
+			@Override
+			public void vertexReached(int v, double distance) {
+				listener.vertexReached(graph.pointAt(v), distance);
+			}
+
+			@Override
+			public void edgeCut(int e, double reachedLength) {
+				if (!reportEdges)
+					return;
+				GeographicPoint from = graph.pointAt(graph.edgeSource[e]);
+				GeographicPoint to = graph.pointAt(graph.edgeTarget[e]);
+				listener.edgePartiallyReached(from, to, reachedLength,
+						cutPoint(graph, e, reachedLength, segments));
+			}
+		});
+		SearchStats stats = engine.getStats();
+		lastSearchStats = stats;
+		return stats.getSettledCount();
+	}
+	
+	/**
+	 * Finds the point at a distance along an edge.
+	 * @param graph Snapshot of the Map
+	 * @param e Edge id
+	 * @param distance Distance from source of edge
+	 * @param segments The road segments of the map by end point, or {@code null}
+	 * @return The point on the edge's road segment if it is found,
+	 *   or on the straight line between the edge's vertices otherwise.
+	 */
+	private GeographicPoint cutPoint(CompactGraph graph, int e, double distance,
+			Map<GeographicPoint, ? extends Set<RoadSegment>> segments) {
+		GeographicPoint from = graph.pointAt(graph.edgeSource[e]);
+		GeographicPoint to = graph.pointAt(graph.edgeTarget[e]);
+		Set<RoadSegment> candidates = segments == null ? null : segments.get(from);
+		if (candidates != null) {
+			for (RoadSegment seg : candidates) {
+				if (seg.getLength() == graph.edgeLength[e]
+						&& seg.getRoadName().equals(graph.roadName(e))
+						&& (seg.getPoint1().equals(from) && seg.getPoint2().equals(to)
+							|| seg.getPoint2().equals(from) && seg.getPoint1().equals(to)))
+					return seg.getPointAlong(from, distance);
+			}
+		}
+		double length = graph.edgeLength[e];
+		double ratio = length > 0 ? Math.min(distance / length, 1) : 0;
+		return new GeographicPoint(from.getX() + ratio * (to.getX() - from.getX()),
+				from.getY() + ratio * (to.getY() - from.getY()));
+	}
+	
+	/**
+	 * Translates locations to vertex ids of the snapshot.
+	 * @param graph Snapshot of the Map
+	 * @param locations Locations on map
+	 * @return The vertex id of each location.
+	 * @throws IllegalArgumentException If any location is null or not a vertex
+	 *   in the graph.
+	 */
+	private int[] toVertexIds(CompactGraph graph, List<GeographicPoint> locations) 
+			throws IllegalArgumentException {
+		if (locations == null)
+			throw new IllegalArgumentException("List of locations is null");
+		int[] ids = new int[locations.size()];
+		int i = 0;
+		for (GeographicPoint pt : locations) {
+			ids[i] = pt == null ? -1 : graph.indexOf(pt);
+			if (ids[i] < 0)
+				throw new IllegalArgumentException("GeographicPoint doesn't exist in Map",
+						new Throwable("location=" + pt));
+			i++;
+		}
+		return ids;
+	}
+	
+	/**
+	 * Creates a search engine of the current snapshot. Engines only hold the
+	 *  workspace of their last search, so one is created per search, and a
+	 *  search started from a hook of another doesn't replace its results.
+	 * @param graph The current snapshot of the Map
+	 * @return A new {@link DijkstraEngine} for the snapshot.
+	 */
+	private DijkstraEngine getSearchEngine(CompactGraph graph) {
+		return new DijkstraEngine(graph);
+	}
+	
+	/** 
+	 * Find the path from start to goal using bidirectional Dijkstra's algorithm.
+	 * @param start The starting location
+	 * @param goal The goal location
+	 * @return The list of intersections that form the shortest path from 
+	 *   start to goal (including both start and goal).
+	 */
+	public List<GeographicPoint> bidirectionalDijkstra(GeographicPoint start, GeographicPoint goal) {
+		// Dummy variable for calling the search algorithms
+        Consumer<GeographicPoint> temp = (x) -> {};
+        return bidirectionalDijkstra(start, goal, temp);
+	}
+	
+	/** 
+	 * Find the path from start to goal using bidirectional Dijkstra's algorithm,
+	 *  searching forward from start and backward from goal at the same time.
+	 * @param start The starting location
+	 * @param goal The goal location
+	 * @param nodeSearched A hook for visualization
+	 * @return The list of intersections that form the shortest path from 
+	 *   start to goal (including both start and goal), or {@code null} if path doesn't exist.
+	 */
+	public List<GeographicPoint> bidirectionalDijkstra(GeographicPoint start, GeographicPoint goal, 
 			Consumer<GeographicPoint> nodeSearched) {
-		PriorityQueue<WeightedMapVertex> toExplore = new PriorityQueue<>();
-		//maps points to their total weight
-		Map<GeographicPoint, Double> visited = new HashMap<>();
-		
-		visited.put(start, 0.0);
-		toExplore.add(new WeightedMapVertex(vertices.get(start), 0.0, 0.0));
-		
-		while(! toExplore.isEmpty()) {
-			WeightedMapVertex currVertex = toExplore.poll();
-			GeographicPoint currPt = currVertex.getGeoPoint();
-			nodeSearched.accept(currPt); //visualization for search
-			
-			if (currPt.equals(goal))
-				return true;
-			
-			Double currWeight = currVertex.getWeight();
-			Iterator<DirectedEdge> it = currVertex.getEdges().iterator();
-			while(it.hasNext()) {
-				DirectedEdge edge = it.next();
-				GeographicPoint next = edge.getEnd();
-				//if total weight less than found before
-				Double visitedTotal = visited.get(next);
-				double predictedDistance = next.distance(goal);
-				double nextWeight = edge.getLength() + currWeight;
-				double totalWeight = predictedDistance + nextWeight;
-				if (visitedTotal == null || totalWeight < visitedTotal ) {
-					visited.put(next, totalWeight);
-					parentMap.put(next, currVertex.getGeoPoint());
-					toExplore.add(new WeightedMapVertex(
-							vertices.get(next), nextWeight, predictedDistance));
-				}
-			}//inner while
-		}//outer while
-		return false;
+		return bidirectionalSearch(start, goal, nodeSearched, false);
+	}
+	
+	/** 
+	 * Find the path from start to goal using bidirectional A-Star search.
+	 * @param start The starting location
+	 * @param goal The goal location
+	 * @return The list of intersections that form the shortest path from 
+	 *   start to goal (including both start and goal).
+	 */
+	public List<GeographicPoint> bidirectionalAStar(GeographicPoint start, GeographicPoint goal) {
+		// Dummy variable for calling the search algorithms
+        Consumer<GeographicPoint> temp = (x) -> {};
+        return bidirectionalAStar(start, goal, temp);
+	}
+	
+	/** 
+	 * Find the path from start to goal using bidirectional A-Star search.<br>
+	 * Both directions use the average of the straight-line distance to goal and
+	 *  the straight-line distance from start as potential, which keeps the
+	 *  heuristic consistent for both searches.
+	 * @param start The starting location
+	 * @param goal The goal location
+	 * @param nodeSearched A hook for visualization
+	 * @return The list of intersections that form the shortest path from 
+	 *   start to goal (including both start and goal), or {@code null} if path doesn't exist.
+	 */
+	public List<GeographicPoint> bidirectionalAStar(GeographicPoint start, GeographicPoint goal, 
+			Consumer<GeographicPoint> nodeSearched) {
+		return bidirectionalSearch(start, goal, nodeSearched, true);
+	}
+	
+	/**
+	 * Performs a bidirectional search on Map.
+	 * @param start The starting location
+	 * @param goal The goal location
+	 * @param nodeSearched A hook for visualization
+	 * @param useHeuristic Whether to use the average straight-line potential
+	 * @return The list of intersections that form the shortest path from 
+	 *   start to goal (including both start and goal), or {@code null} if path doesn't exist.
+	 */
+	private List<GeographicPoint> bidirectionalSearch(GeographicPoint start, GeographicPoint goal, 
+			Consumer<GeographicPoint> nodeSearched, boolean useHeuristic) {
+		if (! isValidGeographicPoints(start, goal))
+			return null;
+		CompactGraph graph = getCompactGraph();
+		int startId = graph.indexOf(start);
+		int goalId = graph.indexOf(goal);
+		if (startId < 0 || goalId < 0)
+			return null;
+		BidirectionalEngine engine = new BidirectionalEngine(graph);
+		IntToDoubleFunction potential = useHeuristic 
+				? BidirectionalEngine.averagePotential(graph, startId, goalId)
+				: null;
+		boolean found = engine.search(startId, goalId, potential, nodeSearched);
+		lastSearchStats = engine.getStats();
+		if (found)
+			return engine.getPath();
+		return null;
+	}
+	
+	/**
+	 * Preprocesses the graph into a Contraction Hierarchy, which is used by
+	 *  {@link #contractionHierarchySearch(GeographicPoint, GeographicPoint)}.
+	 *  Preprocessing takes far longer than a single search, but afterwards
+	 *  each query only settles a small number of vertices.<br>
+	 * Adding vertices or edges afterwards discards the hierarchy.
+	 */
+	public void buildContractionHierarchy() {
+		getContractionHierarchy();
+	}
+	
+	/**
+	 * Gets the Contraction Hierarchy of the graph, building it if needed.
+	 * @return The current {@link ContractionHierarchy} of this graph.
+	 */
+	private ContractionHierarchy getContractionHierarchy() {
+		ContractionHierarchy hierarchy = contractionHierarchy;
+		if (hierarchy == null) {
+			CompactGraph graph = getCompactGraph();
+			synchronized (this) {
+				hierarchy = contractionHierarchy;
+				if (hierarchy == null)
+					contractionHierarchy = hierarchy = new ContractionHierarchy(graph);
+			}
+		}
+		return hierarchy;
+	}
+	
+	/** 
+	 * Find the shortest path from start to goal on the Contraction Hierarchy of
+	 *  the graph, building it first if needed.<br>
+	 * The path has the same length as the one found by 
+	 *  {@link #dijkstra(GeographicPoint, GeographicPoint)}.
+	 * @param start The starting location
+	 * @param goal The goal location
+	 * @return The list of intersections that form the shortest path from 
+	 *   start to goal (including both start and goal), or {@code null} if path doesn't exist.
+	 */
+	public List<GeographicPoint> contractionHierarchySearch(GeographicPoint start, GeographicPoint goal) {
+		if (! isValidGeographicPoints(start, goal))
+			return null;
+		ContractionHierarchy hierarchy = getContractionHierarchy();
+		CompactGraph graph = hierarchy.getGraph();
+		int startId = graph.indexOf(start);
+		int goalId = graph.indexOf(goal);
+		if (startId < 0 || goalId < 0)
+			return null;
+		ContractionHierarchy.Query query = hierarchyQuery;
+		if (query == null || query.getHierarchy() != hierarchy)
+			hierarchyQuery = query = hierarchy.newQuery();
+		boolean found = query.search(startId, goalId);
+		lastSearchStats = query.getStats();
+		if (found)
+			return query.getPath();
+		return null;
+	}
+	
+	/**
+	 * Gets statistics of the last route search, saved when it returned, of
+	 *  the searches for routes between two locations, {@link #oneToManyPaths}
+	 *  and {@link #reachableWithin}. Preprocessing and queries built of many
+	 *  searches, such as alternative routes or distance matrices, don't change it.
+	 * @return The {@link SearchStats} of the last search,
+	 *   or {@code null} if no search was performed.
+	 */
+	public SearchStats getLastSearchStats() {
+		return lastSearchStats;
 	}
 	
 
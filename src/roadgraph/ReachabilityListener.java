@@ -0,0 +1,35 @@
+package roadgraph;
+
+import geography.GeographicPoint;
+
+/**
+ * Receives the results of a reachability query on a {@link MapGraph} as they
+ *  are found, instead of collecting them. A listener may run searches on the
+ *  graph, such as routing from each reached intersection; they don't change
+ *  the results of the query.
+ * 
+ * @author Miri Yehezkel
+ *
+ */
+@FunctionalInterface
+public interface ReachabilityListener {
+	
+	/**
+	 * Called for each intersection within the distance budget, in order of distance.
+	 * @param vertex The intersection
+	 * @param distance The shortest distance to the intersection from origin, in km
+	 */
+	void vertexReached(GeographicPoint vertex, double distance);
+	
+	/**
+	 * Called for each road out of a reached intersection which leaves the
+	 *  distance budget before its end.
+	 * @param from The reached intersection the road starts at
+	 * @param to The intersection the road ends at
+	 * @param reachedLength The length of road within budget, in km
+	 * @param cutPoint The location on the road where the budget runs out
+	 */
+	default void edgePartiallyReached(GeographicPoint from, GeographicPoint to, 
+			double reachedLength, GeographicPoint cutPoint) {}
+	
+}
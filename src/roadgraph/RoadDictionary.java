@@ -0,0 +1,139 @@
+package roadgraph;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A pool of the distinct road names and road types of a map, so that edges
+ *  store small ids instead of strings and compare roads by id.<br>
+ * Names get int ids and types get byte codes, both numbered from 0 in order
+ *  of first use; a dictionary holds at most {@link #MAX_ROAD_TYPES} types.
+ *  Ids are only meaningful within the dictionary that assigned them. Names
+ *  and types are only ever added, so the strings of ids already assigned
+ *  never change.<br>
+ * A dictionary isn't thread-safe while strings are being added.
+ *
+ * @author Miri Yehezkel
+ *
+ */
+public final class RoadDictionary {
+	/** Largest number of road types, the number of byte codes */
+	public static final int MAX_ROAD_TYPES = 256;
+
+	/** Id of each name */
+	private final Map<String, Integer> nameIds = new HashMap<>();
+
+	/** Name of each id */
+	private String[] names = new String[16];
+
+	/** Code of each type */
+	private final Map<String, Byte> typeCodes = new HashMap<>();
+
+	/** Type of each code */
+	private final String[] types = new String[MAX_ROAD_TYPES];
+
+	/** Get the number of distinct road names */
+	public int getNumNames() { return nameIds.size(); }
+
+	/** Get the number of distinct road types */
+	public int getNumTypes() { return typeCodes.size(); }
+
+	/**
+	 * Gets the id of a road name, adding it if it is new.
+	 * @param name The name of a road
+	 * @return The id of the name.
+	 * @throws IllegalArgumentException If name is null.
+	 */
+	public int nameId(String name) throws IllegalArgumentException {
+		if (name == null)
+			throw new IllegalArgumentException("Road name is null");
+		Integer id = nameIds.get(name);
+		if (id == null) {
+			id = nameIds.size();
+			if (id == names.length)
+				names = Arrays.copyOf(names, 2 * id);
+			names[id] = name;
+			nameIds.put(name, id);
+		}
+		return id;
+	}
+
+	/**
+	 * Gets the code of a road type, adding it if it is new.
+	 * @param type The type of a road
+	 * @return The code of the type.
+	 * @throws IllegalArgumentException If type is null, or if it is new and
+	 *   the dictionary already has {@link #MAX_ROAD_TYPES} types.
+	 */
+	public byte typeCode(String type) throws IllegalArgumentException {
+		if (type == null)
+			throw new IllegalArgumentException("Road type is null");
+		Byte code = typeCodes.get(type);
+		if (code == null) {
+			int index = typeCodes.size();
+			if (index == MAX_ROAD_TYPES)
+				throw new IllegalArgumentException("Too many road types",
+						new Throwable("type=" + type + ", max=" + MAX_ROAD_TYPES));
+			types[index] = type;
+			code = (byte) index;
+			typeCodes.put(type, code);
+		}
+		return code;
+	}
+
+	/**
+	 * Checks if a new road type can be added.
+	 * @param type The type of a road
+	 * @return true if the type has a code or can get one.
+	 */
+	boolean canAddType(String type) {
+		return typeCodes.size() < MAX_ROAD_TYPES || typeCodes.containsKey(type);
+	}
+
+	/**
+	 * Finds the id of a road name, without adding it.
+	 * @param name The name of a road
+	 * @return The id of the name, or -1 if it has none.
+	 */
+	public int findName(String name) {
+		Integer id = nameIds.get(name);
+		return id == null ? -1 : id;
+	}
+
+	/**
+	 * Finds the index of the code of a road type, without adding it.
+	 * @param type The type of a road
+	 * @return The code of the type as an unsigned int, or -1 if it has none.
+	 */
+	public int findType(String type) {
+		Byte code = typeCodes.get(type);
+		return code == null ? -1 : code & 0xFF;
+	}
+
+	/**
+	 * Gets a road name by id.
+	 * @param id An id of this dictionary
+	 * @return The name of the id.
+	 */
+	public String name(int id) { return names[id]; }
+
+	/**
+	 * Gets a road type by code.
+	 * @param code A code of this dictionary
+	 * @return The type of the code.
+	 */
+	public String type(byte code) { return types[code & 0xFF]; }
+
+	/** Get the names added so far, by id, in a new array */
+	String[] names() { return Arrays.copyOf(names, getNumNames()); }
+
+	/** Get the types added so far, by code as an unsigned int, in a new array */
+	String[] types() { return Arrays.copyOf(types, getNumTypes()); }
+
+	@Override
+	public String toString() {
+		return "RoadDictionary [numNames=" + getNumNames() + ", numTypes=" + getNumTypes() + "]";
+	}
+
+}
@@ -0,0 +1,153 @@
+package roadgraph;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+/**
+ * A bounded least-recently-used cache of routes, keyed by snapshot, start,
+ *  goal and search algorithm.<br>
+ * Routes are stored as arrays of vertex ids of the snapshot they were found
+ *  on, and are only found again on that snapshot, so changes to the graph
+ *  invalidate them without clearing the routes of other snapshots still in
+ *  use, such as those of older routers. Routes of snapshots no longer used
+ *  are evicted as least recently used. The cache is limited both by the
+ *  number of routes and by their estimated size in bytes. All methods are
+ *  synchronized, so it can be shared by concurrent searches.
+ *
+ * @author Miri Yehezkel
+ *
+ */
+final class RouteCache {
+	/** Cached value of a route which doesn't exist */
+	static final int[] NO_ROUTE = new int[0];
+
+	/** Estimated size of a cached route besides its vertex ids, in bytes */
+	static final long ENTRY_OVERHEAD = 96;
+
+	/** Maximal number of cached routes */
+	private final int maxEntries;
+
+	/** Maximal estimated size of cached routes, in bytes */
+	private final long maxBytes;
+
+	/** Cached routes, in order of access */
+	private final LinkedHashMap<Key, int[]> routes;
+
+	/** Estimated size of cached routes, in bytes */
+	private long bytes;
+
+	private long hitCount;
+	private long missCount;
+	private long evictionCount;
+
+	/**
+	 * Constructs an empty cache.
+	 * @param maxEntries Maximal number of cached routes
+	 * @param maxBytes Maximal estimated size of cached routes, in bytes
+	 * @throws IllegalArgumentException If a limit is not positive.
+	 */
+	RouteCache(int maxEntries, long maxBytes) throws IllegalArgumentException {
+		if (maxEntries <= 0 || maxBytes <= 0)
+			throw new IllegalArgumentException("Cache limits must be positive",
+					new Throwable("maxEntries=" + maxEntries + ", maxBytes=" + maxBytes));
+		this.maxEntries = maxEntries;
+		this.maxBytes = maxBytes;
+		routes = new LinkedHashMap<>(16, 0.75f, true);
+	}
+
+	/**
+	 * Gets a cached route, marking it as most recently used.
+	 * @param graph Snapshot to search on
+	 * @param start Vertex id of start
+	 * @param goal Vertex id of goal
+	 * @param algorithm Search algorithm
+	 * @return The vertex ids of the route, {@link #NO_ROUTE} if the route is
+	 *   cached as not existing, or {@code null} if it isn't cached.
+	 */
+	synchronized int[] get(CompactGraph graph, int start, int goal, SearchAlgorithm algorithm) {
+		int[] route = routes.get(new Key(graph, start, goal, algorithm));
+		if (route == null)
+			missCount++;
+		else
+			hitCount++;
+		return route;
+	}
+
+	/**
+	 * Caches a route, evicting least recently used routes to stay within limits.
+	 *  A route larger than the byte limit is not cached.
+	 * @param graph Snapshot the route was found on
+	 * @param start Vertex id of start
+	 * @param goal Vertex id of goal
+	 * @param algorithm Search algorithm
+	 * @param route Vertex ids of the route, or {@link #NO_ROUTE}
+	 */
+	synchronized void put(CompactGraph graph, int start, int goal, SearchAlgorithm algorithm,
+			int[] route) {
+		long size = sizeOf(route);
+		if (size > maxBytes)
+			return;
+		int[] old = routes.put(new Key(graph, start, goal, algorithm), route);
+		if (old != null)
+			bytes -= sizeOf(old);
+		bytes += size;
+
+		Iterator<int[]> eldest = routes.values().iterator();
+		while (routes.size() > maxEntries || bytes > maxBytes) {
+			bytes -= sizeOf(eldest.next());
+			eldest.remove();
+			evictionCount++;
+		}
+	}
+
+	/**
+	 * Gets the statistics of the cache.
+	 * @return The current {@link RouteCacheStats}.
+	 */
+	synchronized RouteCacheStats getStats() {
+		return new RouteCacheStats(hitCount, missCount, evictionCount, routes.size(), bytes);
+	}
+
+	private static long sizeOf(int[] route) {
+		return ENTRY_OVERHEAD + (long) route.length * Integer.BYTES;
+	}
+
+	@Override
+	public synchronized String toString() {
+		return "RouteCache [maxEntries=" + maxEntries + ", maxBytes=" + maxBytes
+				+ ", size=" + routes.size() + "]";
+	}
+
+	/**
+	 * Key of a cached route.
+	 */
+	private static final class Key {
+		private final CompactGraph graph;
+		private final int start;
+		private final int goal;
+		private final SearchAlgorithm algorithm;
+
+		Key(CompactGraph graph, int start, int goal, SearchAlgorithm algorithm) {
+			this.graph = graph;
+			this.start = start;
+			this.goal = goal;
+			this.algorithm = algorithm;
+		}
+
+		@Override
+		public int hashCode() {
+			return ((31 * System.identityHashCode(graph) + start) * 31 + goal) * 31 + algorithm.ordinal();
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj)
+				return true;
+			if (!(obj instanceof Key))
+				return false;
+			Key other = (Key) obj;
+			return graph == other.graph && start == other.start && goal == other.goal && algorithm == other.algorithm;
+		}
+	}
+
+}
@@ -0,0 +1,58 @@
+package roadgraph;
+
+/**
+ * Statistics of the route cache of a {@link MapGraph}.
+ * 
+ * @author Miri Yehezkel
+ *
+ */
+public final class RouteCacheStats {
+	/** Number of lookups which found a cached route */
+	private final long hitCount;
+	
+	/** Number of lookups which didn't find a cached route */
+	private final long missCount;
+	
+	/** Number of routes evicted to stay within limits */
+	private final long evictionCount;
+	
+	/** Number of cached routes */
+	private final int size;
+	
+	/** Estimated size of cached routes, in bytes */
+	private final long bytes;
+	
+	RouteCacheStats(long hitCount, long missCount, long evictionCount, int size, long bytes) {
+		this.hitCount = hitCount;
+		this.missCount = missCount;
+		this.evictionCount = evictionCount;
+		this.size = size;
+		this.bytes = bytes;
+	}
+	
+	public long getHitCount() { return hitCount; }
+	
+	public long getMissCount() { return missCount; }
+	
+	public long getEvictionCount() { return evictionCount; }
+	
+	public int getSize() { return size; }
+	
+	public long getBytes() { return bytes; }
+	
+	/**
+	 * Gets the ratio of lookups which found a cached route.
+	 * @return The hit rate, or {@code 0} if there were no lookups.
+	 */
+	public double getHitRate() {
+		long lookups = hitCount + missCount;
+		return lookups == 0 ? 0 : (double) hitCount / lookups;
+	}
+
+	@Override
+	public String toString() {
+		return "RouteCacheStats [hits=" + hitCount + ", misses=" + missCount 
+				+ ", evictions=" + evictionCount + ", size=" + size + ", bytes=" + bytes + "]";
+	}
+	
+}
@@ -0,0 +1,53 @@
+package roadgraph;
+
+import geography.GeographicPoint;
+
+/**
+ * A request for a route from start to goal using a search algorithm.
+ * 
+ * @author Miri Yehezkel
+ *
+ */
+public final class RouteRequest {
+	/** Starting location */
+	private final GeographicPoint start;
+	
+	/** Goal location */
+	private final GeographicPoint goal;
+	
+	/** Algorithm used to find route */
+	private final SearchAlgorithm algorithm;
+	
+	/**
+	 * Constructs a request for a shortest route using Dijkstra's algorithm.
+	 * @param start The starting location
+	 * @param goal The goal location
+	 */
+	public RouteRequest(GeographicPoint start, GeographicPoint goal) {
+		this(start, goal, SearchAlgorithm.DIJKSTRA);
+	}
+	
+	/**
+	 * Constructs a request for a route.
+	 * @param start The starting location
+	 * @param goal The goal location
+	 * @param algorithm The algorithm used to find the route
+	 */
+	public RouteRequest(GeographicPoint start, GeographicPoint goal, SearchAlgorithm algorithm) {
+		this.start = start;
+		this.goal = goal;
+		this.algorithm = algorithm;
+	}
+	
+	public GeographicPoint getStart() { return start; }
+	
+	public GeographicPoint getGoal() { return goal; }
+	
+	public SearchAlgorithm getAlgorithm() { return algorithm; }
+
+	@Override
+	public String toString() {
+		return "RouteRequest [start=" + start + ", goal=" + goal + ", algorithm=" + algorithm + "]";
+	}
+	
+}
@@ -0,0 +1,30 @@
+package roadgraph;
+
+/**
+ * Search algorithms which can find a route on a {@link MapGraph}.
+ * 
+ * @author Miri Yehezkel
+ *
+ */
+public enum SearchAlgorithm {
+	/** Breadth-first search, shortest by number of intersections */
+	BFS,
+	
+	/** Dijkstra's algorithm */
+	DIJKSTRA,
+	
+	/** A* search with straight-line distance heuristic */
+	A_STAR,
+	
+	/** A* search with landmark (ALT) heuristic */
+	A_STAR_LANDMARKS,
+	
+	/** Bidirectional Dijkstra's algorithm */
+	BIDIRECTIONAL_DIJKSTRA,
+	
+	/** Bidirectional A* search with average straight-line potential */
+	BIDIRECTIONAL_A_STAR,
+	
+	/** Query on a Contraction Hierarchy */
+	CONTRACTION_HIERARCHY
+}
@@ -0,0 +1,46 @@
+package roadgraph;
+
+/**
+ * Statistics of a weighted search on a {@link MapGraph}.
+ * 
+ * @author Miri Yehezkel
+ *
+ */
+public final class SearchStats {
+	/** Statistics of a route found without searching, all counts 0 */
+	public static final SearchStats NONE = new SearchStats(0, 0, 0, 0);
+
+	/** Number of vertices settled */
+	private final int settledCount;
+	
+	/** Number of heap insert operations */
+	private final long insertCount;
+	
+	/** Number of heap poll operations */
+	private final long pollCount;
+	
+	/** Number of heap decrease-key operations */
+	private final long decreaseKeyCount;
+	
+	SearchStats(int settledCount, long insertCount, long pollCount, long decreaseKeyCount) {
+		this.settledCount = settledCount;
+		this.insertCount = insertCount;
+		this.pollCount = pollCount;
+		this.decreaseKeyCount = decreaseKeyCount;
+	}
+	
+	public int getSettledCount() { return settledCount; }
+	
+	public long getInsertCount() { return insertCount; }
+	
+	public long getPollCount() { return pollCount; }
+	
+	public long getDecreaseKeyCount() { return decreaseKeyCount; }
+
+	@Override
+	public String toString() {
+		return "SearchStats [settled=" + settledCount + ", inserts=" + insertCount 
+				+ ", polls=" + pollCount + ", decreaseKeys=" + decreaseKeyCount + "]";
+	}
+	
+}
@@ -0,0 +1,205 @@
+package roadgraph;
+
+import java.util.Arrays;
+
+/**
+ * Reusable state of a search: distance, parent, reached and settled state of
+ *  each vertex, a heap and a queue, all pre-sized primitive arrays.<br>
+ * Reached and settled state are stamped with the generation of the search
+ *  that set them, so {@link #reset()} only increments the generation instead
+ *  of clearing the arrays. Workspaces are pooled per thread by
+ *  {@link #get(int, int)}, so back-to-back searches allocate close to nothing.
+ *
+ * @author Miri Yehezkel
+ *
+ */
+final class SearchWorkspace {
+	/** Slot of the workspace of a forward (or only) search */
+	static final int FORWARD = 0;
+
+	/** Slot of the workspace of a backward search */
+	static final int BACKWARD = 1;
+
+	/** Number of workspaces pooled per thread */
+	private static final int SLOTS = 2;
+
+	/** Outermost workspaces of each thread, by slot */
+	private static final ThreadLocal<SearchWorkspace[]> POOL =
+			ThreadLocal.withInitial(() -> new SearchWorkspace[SLOTS]);
+
+	/** Number of vertices the workspace can hold */
+	private final int capacity;
+
+	/** Distance of each vertex, valid only if reached in current generation */
+	private final double[] distances;
+
+	/** Parent of each vertex, valid only if reached in current generation */
+	private final int[] parents;
+
+	/** Generation in which each vertex was last reached */
+	private final int[] reachedStamps;
+
+	/** Generation in which each vertex was last settled */
+	private final int[] settledStamps;
+
+	/** Priority queue of weighted searches */
+	private final IndexedDaryHeap heap;
+
+	/** Queue of unweighted searches */
+	private final int[] queue;
+
+	/** Generation of current search */
+	private int generation;
+
+	/** Number of vertices settled in current generation */
+	private int settledCount;
+
+	/** Whether a search is using the workspace */
+	private boolean inUse;
+
+	/** Workspace of a search nested in the search using this one, or {@code null} */
+	private SearchWorkspace nested;
+
+	/**
+	 * Constructs a workspace.
+	 * @param capacity Number of vertices
+	 */
+	SearchWorkspace(int capacity) {
+		this.capacity = capacity;
+		distances = new double[capacity];
+		parents = new int[capacity];
+		reachedStamps = new int[capacity];
+		settledStamps = new int[capacity];
+		heap = new IndexedDaryHeap(capacity);
+		queue = new int[capacity];
+		generation = 1;
+	}
+
+	/**
+	 * Gets the first workspace of the current thread in a slot which isn't in
+	 *  use, allocating a new one only if the pooled one is too small or if
+	 *  all of them are in use. The workspace is reset and marked in use until
+	 *  {@link #release()}.
+	 * @param slot {@link #FORWARD} or {@link #BACKWARD}
+	 * @param numVertices Number of vertices of the graph to search
+	 * @return A reset workspace for at least numVertices vertices.
+	 */
+	static SearchWorkspace get(int slot, int numVertices) {
+		SearchWorkspace[] pool = POOL.get();
+		SearchWorkspace outer = null;
+		SearchWorkspace workspace = pool[slot];
+		while (workspace != null && workspace.inUse) {
+			outer = workspace;
+			workspace = workspace.nested;
+		}
+		if (workspace == null || workspace.capacity < numVertices) {
+			SearchWorkspace created = new SearchWorkspace(numVertices);
+			if (workspace != null)
+				created.nested = workspace.nested;
+			if (outer == null)
+				pool[slot] = created;
+			else
+				outer.nested = created;
+			workspace = created;
+		}
+		workspace.reset();
+		workspace.inUse = true;
+		return workspace;
+	}
+
+	/**
+	 * Ends the search using the workspace, so the next search on the thread
+	 *  may reuse it. Its results stay valid until then.
+	 */
+	void release() {
+		inUse = false;
+	}
+
+	/**
+	 * Starts a new search, in constant time except on generation overflow.
+	 */
+	void reset() {
+		generation++;
+		if (generation == 0) {
+			Arrays.fill(reachedStamps, 0);
+			Arrays.fill(settledStamps, 0);
+			generation = 1;
+		}
+		settledCount = 0;
+		heap.clear();
+		heap.resetCounters();
+	}
+
+	boolean isReached(int v) { return reachedStamps[v] == generation; }
+
+	boolean isSettled(int v) { return settledStamps[v] == generation; }
+
+	/**
+	 * Gets the distance of a vertex.
+	 * @param v Vertex id
+	 * @return The distance, or infinity if vertex wasn't reached.
+	 */
+	double getDistance(int v) {
+		return reachedStamps[v] == generation ? distances[v] : Double.POSITIVE_INFINITY;
+	}
+
+	/**
+	 * Gets the parent array, only valid for reached vertices.
+	 * @return The parent of each vertex.
+	 */
+	int[] getParents() { return parents; }
+
+	/**
+	 * Sets the distance and parent of a vertex.
+	 * @param v Vertex id
+	 * @param parent Parent of vertex
+	 * @param distance Distance of vertex
+	 */
+	void reach(int v, int parent, double distance) {
+		reachedStamps[v] = generation;
+		distances[v] = distance;
+		parents[v] = parent;
+	}
+
+	/**
+	 * Marks a vertex as settled.
+	 * @param v Vertex id
+	 */
+	void settle(int v) {
+		settledStamps[v] = generation;
+		settledCount++;
+	}
+
+	int getSettledCount() { return settledCount; }
+
+	IndexedDaryHeap getHeap() { return heap; }
+
+	int[] getQueue() { return queue; }
+
+	/**
+	 * Copies the distances of current search.
+	 * @param dest Array of at least numVertices entries, unreached
+	 *   vertices are set to infinity
+	 * @param numVertices Number of vertices to copy
+	 */
+	void copyDistances(double[] dest, int numVertices) {
+		for (int v = 0; v < numVertices; v++)
+			dest[v] = getDistance(v);
+	}
+
+	/**
+	 * Gets statistics of the heap operations performed by current search.
+	 * @return The {@link SearchStats} of current search.
+	 */
+	SearchStats getStats() {
+		return new SearchStats(settledCount, heap.getInsertCount(),
+				heap.getPollCount(), heap.getDecreaseKeyCount());
+	}
+
+	@Override
+	public String toString() {
+		return "SearchWorkspace [capacity=" + capacity + ", generation=" + generation
+				+ ", inUse=" + inUse + "]";
+	}
+
+}
@@ -0,0 +1,109 @@
+package roadgraph;
+
+import java.util.LinkedList;
+import java.util.List;
+
+import geography.GeographicPoint;
+
+/**
+ * The shortest paths from one source to every intersection of a snapshot of
+ *  a {@link MapGraph}.<br>
+ * Distances and parents are arrays indexed by the snapshot's vertex index,
+ *  which {@link #indexOf(GeographicPoint)} and {@link #getLocation(int)}
+ *  translate to and from locations.
+ *
+ * @author Miri Yehezkel
+ *
+ */
+public final class ShortestPathTree {
+	/** Snapshot the tree spans */
+	private final CompactGraph graph;
+
+	/** Vertex index of source */
+	private final int source;
+
+	/** Distance of each vertex from source, infinity if unreachable */
+	private final double[] distances;
+
+	/** Parent of each vertex, {@code -1} for source and unreachable vertices */
+	private final int[] parents;
+
+	ShortestPathTree(CompactGraph graph, int source, double[] distances, int[] parents) {
+		this.graph = graph;
+		this.source = source;
+		this.distances = distances;
+		this.parents = parents;
+	}
+
+	/** Get the source of the tree */
+	public GeographicPoint getSource() { return graph.pointAt(source); }
+
+	/** Get the number of vertices of the snapshot, which are indexed from 0 */
+	public int getNumVertices() { return graph.numVertices; }
+
+	/**
+	 * Get the distance of each vertex from source.
+	 * @return A copy of the distances, by vertex index, in km, with
+	 *   {@link Double#POSITIVE_INFINITY} for unreachable vertices.
+	 */
+	public double[] getDistances() { return distances.clone(); }
+
+	/**
+	 * Get the parent of each vertex on its shortest path from source.
+	 * @return A copy of the parents, by vertex index, with {@code -1} for
+	 *   source and unreachable vertices.
+	 */
+	public int[] getParents() { return parents.clone(); }
+
+	/**
+	 * Get the location of a vertex.
+	 * @param index Vertex index
+	 * @return The location of the vertex.
+	 * @throws IndexOutOfBoundsException If index is not a vertex index.
+	 */
+	public GeographicPoint getLocation(int index) { return graph.pointAt(index); }
+
+	/**
+	 * Get the vertex index of a location.
+	 * @param location Location on map
+	 * @return The vertex index of location, or {@code -1} if it isn't a vertex.
+	 */
+	public int indexOf(GeographicPoint location) {
+		return location == null ? -1 : graph.indexOf(location);
+	}
+
+	/**
+	 * Get the distance of a location from source.
+	 * @param location Location on map
+	 * @return The distance in km, or {@link Double#POSITIVE_INFINITY} if
+	 *   location is unreachable or isn't a vertex.
+	 */
+	public double getDistance(GeographicPoint location) {
+		int v = indexOf(location);
+		return v < 0 ? Double.POSITIVE_INFINITY : distances[v];
+	}
+
+	/**
+	 * Get the shortest path from source to a location.
+	 * @param goal Location on map
+	 * @return The list of intersections that form the shortest path from
+	 *   source to goal (including both), or {@code null} if goal is
+	 *   unreachable or isn't a vertex.
+	 */
+	public List<GeographicPoint> getPath(GeographicPoint goal) {
+		int v = indexOf(goal);
+		if (v < 0 || distances[v] == Double.POSITIVE_INFINITY)
+			return null;
+		LinkedList<GeographicPoint> path = new LinkedList<>();
+		for (; v != source; v = parents[v])
+			path.addFirst(graph.pointAt(v));
+		path.addFirst(graph.pointAt(source));
+		return path;
+	}
+
+	@Override
+	public String toString() {
+		return "ShortestPathTree [source=" + getSource() + ", numVertices=" + graph.numVertices + "]";
+	}
+
+}
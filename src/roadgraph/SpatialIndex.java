@@ -0,0 +1,322 @@
+package roadgraph;
+
+import java.util.Arrays;
+
+/**
+ * A static KD-tree over the vertices of a {@link CompactGraph}, for snapping
+ *  arbitrary coordinates to nearby intersections.<br>
+ * Vertices are projected to a plane in km, with longitude scaled by the cosine
+ *  of the graph's mean latitude (equirectangular projection), which matches
+ *  the great-circle distance closely at city scale. The tree is packed into
+ *  arrays: the vertices of each subtree occupy a contiguous range, split
+ *  at the median alternately by x and y, with no per-node objects.
+ *
+ * @author Miri Yehezkel
+ *
+ */
+final class SpatialIndex {
+	/** Length of a degree of latitude, in km, on the sphere used by GeographicPoint */
+	static final double KM_PER_DEGREE = 6373 * Math.PI / 180;
+
+	/** Maximal number of vertices of a subtree which is scanned instead of split */
+	private static final int LEAF_SIZE = 8;
+
+	/** Graph of indexed vertices */
+	private final CompactGraph graph;
+
+	/** Length of a degree of longitude, in km, at the mean latitude */
+	private final double kmPerLonDegree;
+
+	/** Vertex ids in tree order */
+	private final int[] ids;
+
+	/** Projected x of each vertex, in tree order */
+	private final double[] xs;
+
+	/** Projected y of each vertex, in tree order */
+	private final double[] ys;
+
+	/**
+	 * Builds an index of all vertices of a graph.
+	 * @param graph Graph to index
+	 */
+	SpatialIndex(CompactGraph graph) {
+		this.graph = graph;
+		int n = graph.numVertices;
+		double meanLat = 0;
+		for (int v = 0; v < n; v++)
+			meanLat += graph.lat[v];
+		meanLat = n == 0 ? 0 : meanLat / n;
+		kmPerLonDegree = KM_PER_DEGREE * Math.cos(Math.toRadians(meanLat));
+
+		double[] x = new double[n];
+		double[] y = new double[n];
+		ids = new int[n];
+		for (int v = 0; v < n; v++) {
+			x[v] = projectX(graph.lon[v]);
+			y[v] = projectY(graph.lat[v]);
+			ids[v] = v;
+		}
+		build(0, n, true, x, y);
+
+		xs = new double[n];
+		ys = new double[n];
+		for (int i = 0; i < n; i++) {
+			xs[i] = x[ids[i]];
+			ys[i] = y[ids[i]];
+		}
+	}
+
+	CompactGraph getGraph() { return graph; }
+
+	private double projectX(double lon) {
+		return lon * kmPerLonDegree;
+	}
+
+	private double projectY(double lat) {
+		return lat * KM_PER_DEGREE;
+	}
+
+	/**
+	 * Arranges the vertices of a subtree, so that the median by the split
+	 *  axis is in the middle of its range, with the smaller vertices before it.
+	 */
+	private void build(int lo, int hi, boolean byX, double[] x, double[] y) {
+		while (hi - lo > LEAF_SIZE) {
+			int mid = (lo + hi) >>> 1;
+			select(lo, hi - 1, mid, byX ? x : y);
+			build(lo, mid, !byX, x, y);
+			lo = mid + 1;
+			byX = !byX;
+		}
+	}
+
+	/**
+	 * Partially sorts ids in {@code [lo, hi]} by key so that the k-th id is in place.
+	 */
+	private void select(int lo, int hi, int k, double[] key) {
+		while (lo < hi) {
+			double pivot = key[ids[(lo + hi) >>> 1]];
+			int i = lo;
+			int j = hi;
+			while (i <= j) {
+				while (key[ids[i]] < pivot)
+					i++;
+				while (key[ids[j]] > pivot)
+					j--;
+				if (i <= j) {
+					int tmp = ids[i];
+					ids[i++] = ids[j];
+					ids[j--] = tmp;
+				}
+			}
+			if (k <= j)
+				hi = j;
+			else if (k >= i)
+				lo = i;
+			else
+				return;
+		}
+	}
+
+	/**
+	 * Finds the vertex nearest to a location.
+	 * @param lat Latitude of location
+	 * @param lon Longitude of location
+	 * @return The vertex id of the nearest vertex, or {@code -1} if graph is empty.
+	 */
+	int nearest(double lat, double lon) {
+		if (ids.length == 0)
+			return -1;
+		Search search = new Search(projectX(lon), projectY(lat), 1, Double.POSITIVE_INFINITY);
+		nearest(0, ids.length, true, search);
+		return ids[search.items[0]];
+	}
+
+	/**
+	 * Finds the k vertices nearest to a location.
+	 * @param lat Latitude of location
+	 * @param lon Longitude of location
+	 * @param k Number of vertices to find
+	 * @return The vertex ids of the (at most) k nearest vertices, nearest first.
+	 */
+	int[] nearest(double lat, double lon, int k) {
+		Search search = new Search(projectX(lon), projectY(lat), Math.min(k, ids.length),
+				Double.POSITIVE_INFINITY);
+		if (search.capacity > 0)
+			nearest(0, ids.length, true, search);
+		return search.sortedIds();
+	}
+
+	/**
+	 * Finds the vertices within a distance of a location.
+	 * @param lat Latitude of location
+	 * @param lon Longitude of location
+	 * @param radius Distance from location, in km
+	 * @return The vertex ids of the vertices within radius, nearest first.
+	 */
+	int[] withinRadius(double lat, double lon, double radius) {
+		Search search = new Search(projectX(lon), projectY(lat), 0, radius * radius);
+		within(0, ids.length, true, search);
+		return search.sortedIds();
+	}
+
+	/**
+	 * Searches a subtree for vertices nearer than the current k-th nearest.
+	 */
+	private void nearest(int lo, int hi, boolean byX, Search search) {
+		if (hi - lo <= LEAF_SIZE) {
+			for (int i = lo; i < hi; i++)
+				search.offer(i, squaredDistance(i, search));
+			return;
+		}
+		int mid = (lo + hi) >>> 1;
+		search.offer(mid, squaredDistance(mid, search));
+		double delta = byX ? search.x - xs[mid] : search.y - ys[mid];
+		//search the side of the query first, the other side only if it may be nearer
+		if (delta < 0) {
+			nearest(lo, mid, !byX, search);
+			if (delta * delta < search.bound())
+				nearest(mid + 1, hi, !byX, search);
+		}
+		else {
+			nearest(mid + 1, hi, !byX, search);
+			if (delta * delta < search.bound())
+				nearest(lo, mid, !byX, search);
+		}
+	}
+
+	/**
+	 * Collects the vertices of a subtree within the radius of search.
+	 */
+	private void within(int lo, int hi, boolean byX, Search search) {
+		if (hi - lo <= LEAF_SIZE) {
+			for (int i = lo; i < hi; i++)
+				search.add(i, squaredDistance(i, search));
+			return;
+		}
+		int mid = (lo + hi) >>> 1;
+		search.add(mid, squaredDistance(mid, search));
+		double delta = byX ? search.x - xs[mid] : search.y - ys[mid];
+		if (delta < 0 || delta * delta <= search.maxDistance)
+			within(lo, mid, !byX, search);
+		if (delta >= 0 || delta * delta <= search.maxDistance)
+			within(mid + 1, hi, !byX, search);
+	}
+
+	private double squaredDistance(int i, Search search) {
+		double dx = xs[i] - search.x;
+		double dy = ys[i] - search.y;
+		return dx * dx + dy * dy;
+	}
+
+	/**
+	 * State of a query: the vertices found so far, by tree position, with
+	 *  their squared distances. With a capacity, it keeps the nearest ones
+	 *  in a max-heap; without one, it collects all vertices within maxDistance.
+	 */
+	private final class Search {
+		final double x;
+		final double y;
+		final int capacity;
+		final double maxDistance;
+		int[] items;
+		double[] distances;
+		int size;
+
+		Search(double x, double y, int capacity, double maxDistance) {
+			this.x = x;
+			this.y = y;
+			this.capacity = capacity;
+			this.maxDistance = maxDistance;
+			items = new int[Math.max(capacity, 4)];
+			distances = new double[items.length];
+		}
+
+		/** Squared distance a vertex must be nearer than to be kept */
+		double bound() {
+			return size < capacity ? Double.POSITIVE_INFINITY : distances[0];
+		}
+
+		/** Adds a vertex within maxDistance, without a capacity */
+		void add(int item, double distance) {
+			if (distance > maxDistance)
+				return;
+			if (size == items.length) {
+				items = Arrays.copyOf(items, size * 2);
+				distances = Arrays.copyOf(distances, size * 2);
+			}
+			items[size] = item;
+			distances[size++] = distance;
+		}
+
+		/** Keeps a vertex if it is among the capacity nearest so far */
+		void offer(int item, double distance) {
+			if (size < capacity)
+				push(item, distance);
+			else if (distance < distances[0])
+				siftDown(item, distance, size);
+		}
+
+		/** Adds a vertex to the max-heap */
+		private void push(int item, double distance) {
+			int i = size++;
+			while (i > 0) {
+				int parent = (i - 1) / 2;
+				if (distances[parent] >= distance)
+					break;
+				items[i] = items[parent];
+				distances[i] = distances[parent];
+				i = parent;
+			}
+			items[i] = item;
+			distances[i] = distance;
+		}
+
+		/** Replaces the farthest vertex of the first n with a vertex, keeping them a max-heap */
+		private void siftDown(int item, double distance, int n) {
+			int i = 0;
+			while (true) {
+				int child = 2 * i + 1;
+				if (child >= n)
+					break;
+				if (child + 1 < n && distances[child + 1] > distances[child])
+					child++;
+				if (distances[child] <= distance)
+					break;
+				items[i] = items[child];
+				distances[i] = distances[child];
+				i = child;
+			}
+			items[i] = item;
+			distances[i] = distance;
+		}
+
+		/** Gets the vertex ids found, nearest first, emptying the search */
+		int[] sortedIds() {
+			int[] result = new int[size];
+			//collected vertices are not a heap yet, push them again
+			if (capacity == 0) {
+				int n = size;
+				size = 0;
+				int[] collected = Arrays.copyOf(items, n);
+				double[] collectedDistances = Arrays.copyOf(distances, n);
+				for (int i = 0; i < n; i++)
+					push(collected[i], collectedDistances[i]);
+			}
+			//pop the farthest vertex to the end until heap is empty
+			while (size > 0) {
+				result[size - 1] = ids[items[0]];
+				size--;
+				siftDown(items[size], distances[size], size);
+			}
+			return result;
+		}
+	}
+
+	@Override
+	public String toString() {
+		return "SpatialIndex [numVertices=" + ids.length + "]";
+	}
+
+}
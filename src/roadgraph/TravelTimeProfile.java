@@ -0,0 +1,188 @@
+package roadgraph;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * A {@link CostProfile} whose cost of a road is the time to travel it in
+ *  minutes, by the speed of its road type.<br>
+ * Road types can be avoided by multiplying their travel time by a penalty
+ *  factor, so they are only used when there is no reasonable alternative.
+ * 
+ * @author Miri Yehezkel
+ *
+ */
+public final class TravelTimeProfile implements CostProfile {
+	/** Speed in km/h of each road type */
+	private final Map<String, Double> speeds;
+	
+	/** Speed in km/h of road types without a speed */
+	private final double defaultSpeed;
+	
+	/** Road types which are avoided */
+	private final Set<String> avoidedTypes;
+	
+	/** Factor travel time of avoided road types is multiplied by */
+	private final double avoidFactor;
+	
+	/** Highest speed of any road type, in km/h */
+	private final double maxSpeed;
+	
+	/** Profile returned by {@link #car()} */
+	private static final TravelTimeProfile CAR = createCar();
+	
+	/** Profile returned by {@link #truck()} */
+	private static final TravelTimeProfile TRUCK = createTruck();
+	
+	/**
+	 * Constructs a profile.
+	 * @param speeds Speed in km/h of each road type
+	 * @param defaultSpeed Speed in km/h of road types without a speed
+	 * @throws IllegalArgumentException If speeds is null, or any speed is not positive.
+	 */
+	public TravelTimeProfile(Map<String, Double> speeds, double defaultSpeed) 
+			throws IllegalArgumentException {
+		this(speeds, defaultSpeed, Collections.emptySet(), 1);
+	}
+	
+	/**
+	 * Constructs a profile which avoids road types.
+	 * @param speeds Speed in km/h of each road type
+	 * @param defaultSpeed Speed in km/h of road types without a speed
+	 * @param avoidedTypes Road types which are avoided
+	 * @param avoidFactor Factor travel time of avoided road types is multiplied by
+	 * @throws IllegalArgumentException If speeds or avoidedTypes is null, if
+	 *   any speed is not positive, or if avoidFactor is less than 1.
+	 */
+	public TravelTimeProfile(Map<String, Double> speeds, double defaultSpeed, 
+			Set<String> avoidedTypes, double avoidFactor) throws IllegalArgumentException {
+		if (speeds == null || avoidedTypes == null)
+			throw new IllegalArgumentException("Speeds and avoided road types must not be null");
+		if (!(avoidFactor >= 1))
+			throw new IllegalArgumentException("Avoid factor must be at least 1",
+					new Throwable("avoidFactor=" + avoidFactor));
+		double max = checkSpeed(null, defaultSpeed);
+		for (Map.Entry<String, Double> entry : speeds.entrySet())
+			max = Math.max(max, checkSpeed(entry.getKey(), entry.getValue()));
+		this.speeds = new HashMap<>(speeds);
+		this.defaultSpeed = defaultSpeed;
+		this.avoidedTypes = new HashSet<>(avoidedTypes);
+		this.avoidFactor = avoidFactor;
+		maxSpeed = max;
+	}
+	
+	private static double checkSpeed(String roadType, Double speed) {
+		if (speed == null || !(speed > 0) || speed.isInfinite())
+			throw new IllegalArgumentException("Speed must be positive",
+					new Throwable("roadType=" + roadType + ", speed=" + speed));
+		return speed;
+	}
+	
+	/**
+	 * Gets the profile of a car, by typical speeds of OpenStreetMap road types.
+	 * @return The car profile, the same instance on every call.
+	 */
+	public static TravelTimeProfile car() {
+		return CAR;
+	}
+	
+	private static TravelTimeProfile createCar() {
+		Map<String, Double> speeds = new HashMap<>();
+		speeds.put("motorway", 100.0);
+		speeds.put("motorway_link", 60.0);
+		speeds.put("trunk", 80.0);
+		speeds.put("trunk_link", 50.0);
+		speeds.put("primary", 60.0);
+		speeds.put("primary_link", 40.0);
+		speeds.put("secondary", 50.0);
+		speeds.put("secondary_link", 40.0);
+		speeds.put("tertiary", 40.0);
+		speeds.put("tertiary_link", 30.0);
+		speeds.put("unclassified", 30.0);
+		speeds.put("residential", 30.0);
+		speeds.put("living_street", 10.0);
+		return new TravelTimeProfile(speeds, 30.0);
+	}
+	
+	/**
+	 * Gets the profile of a truck, which is slower than a car and avoids
+	 *  residential roads and living streets by a factor of 10.
+	 * @return The truck profile, the same instance on every call.
+	 */
+	public static TravelTimeProfile truck() {
+		return TRUCK;
+	}
+	
+	private static TravelTimeProfile createTruck() {
+		Map<String, Double> speeds = new HashMap<>();
+		speeds.put("motorway", 80.0);
+		speeds.put("motorway_link", 50.0);
+		speeds.put("trunk", 70.0);
+		speeds.put("trunk_link", 40.0);
+		speeds.put("primary", 50.0);
+		speeds.put("primary_link", 35.0);
+		speeds.put("secondary", 45.0);
+		speeds.put("secondary_link", 35.0);
+		speeds.put("tertiary", 35.0);
+		speeds.put("tertiary_link", 25.0);
+		speeds.put("unclassified", 25.0);
+		speeds.put("residential", 25.0);
+		speeds.put("living_street", 10.0);
+		return new TravelTimeProfile(speeds, 25.0,
+				new HashSet<>(Arrays.asList("residential", "living_street")), 10);
+	}
+	
+	/**
+	 * Gets the speed of a road type.
+	 * @param roadType The type of the road
+	 * @return The speed in km/h.
+	 */
+	public double getSpeed(String roadType) {
+		Double speed = speeds.get(roadType);
+		return speed == null ? defaultSpeed : speed;
+	}
+	
+	@Override
+	public double edgeCost(String roadName, String roadType, double length) {
+		double minutes = length / getSpeed(roadType) * 60;
+		return avoidedTypes.contains(roadType) ? minutes * avoidFactor : minutes;
+	}
+	
+	@Override
+	public double minCostPerKm() {
+		return 60 / maxSpeed;
+	}
+
+	/**
+	 * Profiles are equal if they have the same speeds and avoid the same road
+	 *  types by the same factor, so equal profiles share cached edge weights.
+	 */
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj)
+			return true;
+		if (!(obj instanceof TravelTimeProfile))
+			return false;
+		TravelTimeProfile other = (TravelTimeProfile) obj;
+		return speeds.equals(other.speeds) && Double.compare(defaultSpeed, other.defaultSpeed) == 0
+				&& avoidedTypes.equals(other.avoidedTypes)
+				&& Double.compare(avoidFactor, other.avoidFactor) == 0;
+	}
+
+	@Override
+	public int hashCode() {
+		return Objects.hash(speeds, defaultSpeed, avoidedTypes, avoidFactor);
+	}
+
+	@Override
+	public String toString() {
+		return "TravelTimeProfile [defaultSpeed=" + defaultSpeed + ", maxSpeed=" + maxSpeed
+				+ ", avoidedTypes=" + avoidedTypes + ", avoidFactor=" + avoidFactor + "]";
+	}
+	
+}
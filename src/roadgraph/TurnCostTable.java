@@ -0,0 +1,228 @@
+package roadgraph;
+
+import java.util.Arrays;
+
+import geography.GeographicPoint;
+
+/**
+ * Costs of turns at the intersections of a snapshot of a {@link MapGraph},
+ *  keyed by the pair of incoming and outgoing edge.<br>
+ * Only turns which are restricted or given a cost are stored, in an
+ *  open-addressing table of {@code long} keys. Every other turn costs a
+ *  default computed from its change of bearing: nothing for going straight,
+ *  rising to {@code sharpTurnCost} for turning back, and {@code uTurnCost}
+ *  for returning to the intersection the incoming road came from.<br>
+ * Costs are in the units of the edge weights searched with the table. The
+ *  table is not thread-safe while turns are being set, and it is bound to
+ *  the snapshot it was created for.
+ *
+ * @author Miri Yehezkel
+ *
+ */
+public final class TurnCostTable {
+	/** Key of an empty table entry, no pair of edge ids maps to it */
+	private static final long EMPTY = -1;
+
+	/** Initial capacity of the table, a power of 2 */
+	private static final int INITIAL_CAPACITY = 16;
+
+	/** Snapshot whose edges are keyed */
+	private final CompactGraph graph;
+
+	/** Cost of turning back on a different road */
+	private final double sharpTurnCost;
+
+	/** Cost of a U-turn back to the previous intersection */
+	private final double uTurnCost;
+
+	/** Keys of entries, {@code in << 32 | out}, or {@link #EMPTY} */
+	private long[] keys;
+
+	/** Costs of entries */
+	private double[] costs;
+
+	/** Number of entries */
+	private int size;
+
+	/**
+	 * Constructs a table with default costs only.
+	 * @param graph Snapshot whose turns are costed
+	 * @param sharpTurnCost Cost of turning back on a different road
+	 * @param uTurnCost Cost of a U-turn back to the previous intersection,
+	 *   infinity to forbid U-turns
+	 */
+	TurnCostTable(CompactGraph graph, double sharpTurnCost, double uTurnCost) {
+		this.graph = graph;
+		this.sharpTurnCost = sharpTurnCost;
+		this.uTurnCost = uTurnCost;
+		keys = new long[INITIAL_CAPACITY];
+		Arrays.fill(keys, EMPTY);
+		costs = new double[INITIAL_CAPACITY];
+	}
+
+	CompactGraph getGraph() { return graph; }
+
+	/** Get the number of turns which are restricted or given a cost */
+	public int size() { return size; }
+
+	/**
+	 * Forbids a turn.
+	 * @param from The intersection the turn comes from
+	 * @param via The intersection of the turn
+	 * @param to The intersection the turn goes to
+	 * @throws IllegalArgumentException If there is no road from "from" to via,
+	 *   or from via to "to".
+	 */
+	public void restrictTurn(GeographicPoint from, GeographicPoint via, GeographicPoint to)
+			throws IllegalArgumentException {
+		setTurnCost(from, via, to, Double.POSITIVE_INFINITY);
+	}
+
+	/**
+	 * Sets the cost of a turn, replacing its default cost. Roads with more
+	 *  than one edge between the same intersections all get the cost.
+	 * @param from The intersection the turn comes from
+	 * @param via The intersection of the turn
+	 * @param to The intersection the turn goes to
+	 * @param cost The cost of the turn, infinity to forbid it
+	 * @throws IllegalArgumentException If there is no road from "from" to via,
+	 *   or from via to "to", or if cost is negative or not a number.
+	 */
+	public void setTurnCost(GeographicPoint from, GeographicPoint via, GeographicPoint to,
+			double cost) throws IllegalArgumentException {
+		if (!(cost >= 0))
+			throw new IllegalArgumentException("Turn cost must be greater than or equal to 0",
+					new Throwable("cost=" + cost));
+		int[] in = edgesBetween(from, via);
+		int[] out = edgesBetween(via, to);
+		for (int e : in)
+			for (int f : out)
+				put(key(e, f), cost);
+	}
+
+	/**
+	 * Gets the cost of a turn, by the cheapest roads between its intersections.
+	 * @param from The intersection the turn comes from
+	 * @param via The intersection of the turn
+	 * @param to The intersection the turn goes to
+	 * @return The cost of the turn, infinity if it is forbidden.
+	 * @throws IllegalArgumentException If there is no road from "from" to via,
+	 *   or from via to "to".
+	 */
+	public double getTurnCost(GeographicPoint from, GeographicPoint via, GeographicPoint to)
+			throws IllegalArgumentException {
+		double cost = Double.POSITIVE_INFINITY;
+		for (int e : edgesBetween(from, via))
+			for (int f : edgesBetween(via, to))
+				cost = Math.min(cost, cost(e, f));
+		return cost;
+	}
+
+	/**
+	 * Gets the cost of turning from one edge to the next.
+	 * @param in Edge id of incoming edge
+	 * @param out Edge id of outgoing edge, starting at the target of in
+	 * @return The cost of the turn, infinity if it is forbidden.
+	 */
+	double cost(int in, int out) {
+		if (size > 0) {
+			long key = key(in, out);
+			for (int i = slot(key); keys[i] != EMPTY; i = (i + 1) & (keys.length - 1))
+				if (keys[i] == key)
+					return costs[i];
+		}
+		return defaultCost(in, out);
+	}
+
+	/**
+	 * Computes the cost of a turn from its change of bearing, with longitude
+	 *  scaled by the cosine of latitude.
+	 */
+	private double defaultCost(int in, int out) {
+		int from = graph.edgeSource[in];
+		int via = graph.edgeTarget[in];
+		int to = graph.edgeTarget[out];
+		if (to == from)
+			return uTurnCost;
+		double scale = Math.cos(Math.toRadians(graph.lat[via]));
+		double inX = (graph.lon[via] - graph.lon[from]) * scale;
+		double inY = graph.lat[via] - graph.lat[from];
+		double outX = (graph.lon[to] - graph.lon[via]) * scale;
+		double outY = graph.lat[to] - graph.lat[via];
+		double norms = Math.sqrt((inX * inX + inY * inY) * (outX * outX + outY * outY));
+		if (norms == 0)
+			return 0;
+		double cos = (inX * outX + inY * outY) / norms;
+		return sharpTurnCost * Math.max(0, 1 - cos) / 2;
+	}
+
+	private void put(long key, double cost) {
+		int i = slot(key);
+		while (keys[i] != EMPTY && keys[i] != key)
+			i = (i + 1) & (keys.length - 1);
+		if (keys[i] == EMPTY) {
+			keys[i] = key;
+			size++;
+		}
+		costs[i] = cost;
+		if (size * 2 > keys.length)
+			grow();
+	}
+
+	/** Doubles the capacity of the table, keeping it at most half full */
+	private void grow() {
+		long[] oldKeys = keys;
+		double[] oldCosts = costs;
+		keys = new long[oldKeys.length * 2];
+		Arrays.fill(keys, EMPTY);
+		costs = new double[keys.length];
+		for (int j = 0; j < oldKeys.length; j++) {
+			if (oldKeys[j] == EMPTY)
+				continue;
+			int i = slot(oldKeys[j]);
+			while (keys[i] != EMPTY)
+				i = (i + 1) & (keys.length - 1);
+			keys[i] = oldKeys[j];
+			costs[i] = oldCosts[j];
+		}
+	}
+
+	private int slot(long key) {
+		long h = key * 0x9E3779B97F4A7C15L;
+		return (int) (h >>> 32) & (keys.length - 1);
+	}
+
+	private static long key(int in, int out) {
+		return (long) in << 32 | out & 0xFFFFFFFFL;
+	}
+
+	/**
+	 * Finds the edge ids of the roads from one intersection to another.
+	 * @throws IllegalArgumentException If there is no such road.
+	 */
+	private int[] edgesBetween(GeographicPoint from, GeographicPoint to)
+			throws IllegalArgumentException {
+		int u = from == null ? -1 : graph.indexOf(from);
+		int v = to == null ? -1 : graph.indexOf(to);
+		int count = 0;
+		if (u >= 0 && v >= 0)
+			for (int e = graph.firstEdge[u]; e < graph.firstEdge[u + 1]; e++)
+				if (graph.edgeTarget[e] == v)
+					count++;
+		if (count == 0)
+			throw new IllegalArgumentException("No road between GeographicPoints",
+					new Throwable("from=" + from + ", to=" + to));
+		int[] edges = new int[count];
+		for (int e = graph.firstEdge[u], i = 0; i < count; e++)
+			if (graph.edgeTarget[e] == v)
+				edges[i++] = e;
+		return edges;
+	}
+
+	@Override
+	public String toString() {
+		return "TurnCostTable [size=" + size + ", sharpTurnCost=" + sharpTurnCost
+				+ ", uTurnCost=" + uTurnCost + "]";
+	}
+
+}
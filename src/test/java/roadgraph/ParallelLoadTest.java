@@ -0,0 +1,133 @@
+package roadgraph;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Test;
+
+import geography.GeographicPoint;
+import geography.RoadSegment;
+import util.GraphLoader;
+
+/**
+ * Checks that loading a map file in parallel chunks gives exactly the graph
+ *  of loading it sequentially, on every map file in {@code data/maps}, and
+ *  that both fail the same way on a malformed file. It lives in
+ *  {@code roadgraph} to read the edges of the loaded graphs.
+ *
+ * @author Miri Yehezkel
+ *
+ */
+public class ParallelLoadTest {
+	/** Directory of map files, relative to the repository root */
+	private static final String MAP_DIR = "data/maps";
+
+	/** Numbers of threads the files are loaded on */
+	private static final int[] THREADS = { 1, 2, 3, 8 };
+
+	/** A loaded map, with the collections filled by the loader */
+	private static class LoadedMap {
+		final MapGraph graph = new MapGraph();
+		final HashMap<GeographicPoint, HashSet<RoadSegment>> segments = new HashMap<>();
+		final HashSet<GeographicPoint> intersections = new HashSet<>();
+	}
+
+	@Test
+	public void parallelLoadMatchesSequentialLoad() {
+		File[] files = new File(MAP_DIR).listFiles((dir, name) -> name.endsWith(".map"));
+		assertTrue("No map files in " + MAP_DIR, files != null && files.length > 0);
+		Arrays.sort(files);
+		for (File file : files) {
+			LoadedMap sequential = new LoadedMap();
+			GraphLoader.loadRoadMap(file.getPath(), sequential.graph, sequential.segments,
+					sequential.intersections);
+			for (int threads : THREADS) {
+				ForkJoinPool pool = new ForkJoinPool(threads);
+				try {
+					LoadedMap parallel = new LoadedMap();
+					GraphLoader.loadRoadMap(file.getPath(), parallel.graph, parallel.segments,
+							parallel.intersections, pool);
+					String name = file.getName() + " on " + threads + " threads";
+					assertEquals(name + ": vertices", sequential.graph.getVertices(),
+							parallel.graph.getVertices());
+					assertEquals(name + ": number of edges", sequential.graph.getNumEdges(),
+							parallel.graph.getNumEdges());
+					assertEquals(name + ": edges", edges(sequential.graph), edges(parallel.graph));
+					assertEquals(name + ": segments", sequential.segments, parallel.segments);
+					assertEquals(name + ": intersections", sequential.intersections,
+							parallel.intersections);
+				} finally {
+					pool.shutdown();
+				}
+			}
+		}
+	}
+
+	@Test
+	public void malformedLineFailsBothLoads() throws IOException {
+		//read and written as ISO-8859-1 to keep the bytes of the file as they are
+		List<String> lines = Files.readAllLines(new File(MAP_DIR, "utc.map").toPath(),
+				StandardCharsets.ISO_8859_1);
+		String[] malformedLines = { "32.1 34.8 32.2", "32.1 34.8 x 34.9 \"Main\" residential" };
+		for (String malformed : malformedLines) {
+			//near the end, so lines before it would make a partial graph
+			List<String> copy = new ArrayList<>(lines);
+			copy.set(copy.size() - 3, malformed);
+			Path file = Files.createTempFile("malformed", ".map");
+			try {
+				Files.write(file, copy, StandardCharsets.ISO_8859_1);
+				LoadedMap sequential = new LoadedMap();
+				IllegalArgumentException sequentialError = assertThrows(IllegalArgumentException.class,
+						() -> GraphLoader.loadRoadMap(file.toString(), sequential.graph,
+								sequential.segments, sequential.intersections));
+				assertEquals(malformed + ": sequential vertices", 0, sequential.graph.getNumVertices());
+				for (int threads : THREADS) {
+					ForkJoinPool pool = new ForkJoinPool(threads);
+					try {
+						LoadedMap parallel = new LoadedMap();
+						IllegalArgumentException parallelError = assertThrows(IllegalArgumentException.class,
+								() -> GraphLoader.loadRoadMap(file.toString(), parallel.graph,
+										parallel.segments, parallel.intersections, pool));
+						String name = malformed + " on " + threads + " threads";
+						assertEquals(name + ": exception", sequentialError.getClass(),
+								parallelError.getClass());
+						assertEquals(name + ": vertices", 0, parallel.graph.getNumVertices());
+					} finally {
+						pool.shutdown();
+					}
+				}
+			} finally {
+				Files.delete(file);
+			}
+		}
+	}
+
+	/**
+	 * Describes the edges of a graph's search snapshot.
+	 * @return The description of each edge, sorted.
+	 */
+	private static List<String> edges(MapGraph graph) {
+		CompactGraph snapshot = graph.getCompactGraph();
+		List<String> edges = new ArrayList<>(snapshot.numEdges);
+		for (int e = 0; e < snapshot.numEdges; e++)
+			edges.add(snapshot.pointAt(snapshot.edgeSource[e]) + " " + snapshot.pointAt(snapshot.edgeTarget[e])
+					+ " " + snapshot.roadName(e) + " " + snapshot.roadType(e) + " " + snapshot.edgeLength[e]);
+		Collections.sort(edges);
+		return edges;
+	}
+
+}
@@ -0,0 +1,132 @@
+package roadgraph;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.function.BiFunction;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import geography.GeographicPoint;
+import util.GraphLoader;
+
+/**
+ * Checks that back-to-back searches run on pooled {@link SearchWorkspace}s
+ *  and allocate close to nothing beyond the returned path, by the bytes
+ *  allocated by the test thread as counted by {@code ThreadMXBean}.<br>
+ * A bfs which allocates its queue and visited state per query allocates
+ *  about 40 KB per query on TLV.map, the path list about 1 KB. Searches
+ *  run from the hook of another search or from a reachability listener get
+ *  nested workspaces, and must leave the outer search's result unchanged.
+ *
+ * @author Miri Yehezkel
+ *
+ */
+public class SearchWorkspaceTest {
+	/** Map file queried, relative to the repository root */
+	private static final String MAP_FILE = "data/maps/TLV.map";
+
+	/** Number of queries run before measuring, so the JIT has compiled them */
+	private static final int WARMUP_QUERIES = 2000;
+
+	/** Number of queries measured */
+	private static final int QUERIES = 1000;
+
+	/** Bytes a query may allocate on average, a few times its path list */
+	private static final long MAX_BYTES_PER_QUERY = 8 * 1024;
+
+	private static MapGraph graph;
+
+	/** Start and goal of each query, cycled through */
+	private static GeographicPoint[][] queries;
+
+	private static com.sun.management.ThreadMXBean threadBean;
+
+	@BeforeClass
+	public static void setUp() {
+		java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+		assumeTrue(bean instanceof com.sun.management.ThreadMXBean);
+		threadBean = (com.sun.management.ThreadMXBean) bean;
+		assumeTrue(threadBean.isThreadAllocatedMemorySupported());
+		threadBean.setThreadAllocatedMemoryEnabled(true);
+
+		graph = new MapGraph();
+		GraphLoader.loadRoadMap(MAP_FILE, graph);
+		List<GeographicPoint> vertices = new ArrayList<>(graph.getVertices());
+		Random random = new Random(42);
+		queries = new GeographicPoint[QUERIES][];
+		for (int i = 0; i < QUERIES; i++)
+			queries[i] = new GeographicPoint[] { vertices.get(random.nextInt(vertices.size())),
+					vertices.get(random.nextInt(vertices.size())) };
+	}
+
+	@Test
+	public void bfsAllocatesLittlePerQuery() {
+		assertAllocatesLittle("bfs", graph::bfs);
+	}
+
+	@Test
+	public void dijkstraAllocatesLittlePerQuery() {
+		assertAllocatesLittle("dijkstra", graph::dijkstra);
+	}
+
+	@Test
+	public void aStarSearchAllocatesLittlePerQuery() {
+		assertAllocatesLittle("aStarSearch", graph::aStarSearch);
+	}
+
+	@Test
+	public void searchesFromHookLeaveOuterSearchIntact() {
+		for (int i = 0; i < 5; i++) {
+			GeographicPoint start = queries[i][0];
+			GeographicPoint goal = queries[i][1];
+			GeographicPoint other = queries[i + 1][1];
+			assertEquals("dijkstra with bfs in hook", graph.dijkstra(start, goal),
+					graph.dijkstra(start, goal, x -> graph.bfs(x, other)));
+			assertEquals("bfs with dijkstra in hook", graph.bfs(start, goal),
+					graph.bfs(start, goal, x -> graph.dijkstra(x, other)));
+			assertEquals("aStarSearch with bidirectional search in hook", graph.aStarSearch(start, goal),
+					graph.aStarSearch(start, goal, x -> graph.bidirectionalDijkstra(other, x)));
+			assertEquals("bidirectionalDijkstra with aStarSearch in hook",
+					graph.bidirectionalDijkstra(start, goal),
+					graph.bidirectionalDijkstra(start, goal, x -> graph.aStarSearch(x, other)));
+		}
+	}
+
+	@Test
+	public void searchesFromReachabilityListenerLeaveQueryIntact() {
+		GeographicPoint origin = queries[0][0];
+		GeographicPoint other = queries[0][1];
+		int[] reached = new int[2];
+		int count = graph.reachableWithin(origin, 1.0, (vertex, distance) -> reached[0]++);
+		int routingCount = graph.reachableWithin(origin, 1.0, (vertex, distance) -> {
+			reached[1]++;
+			graph.dijkstra(vertex, other);
+		});
+		assertTrue("No intersections reached", count > 1);
+		assertEquals("reached intersections", reached[0], reached[1]);
+		assertEquals("number returned", count, routingCount);
+		assertEquals("number returned", reached[0], count);
+	}
+
+	private static void assertAllocatesLittle(String name,
+			BiFunction<GeographicPoint, GeographicPoint, List<GeographicPoint>> search) {
+		for (int i = 0; i < WARMUP_QUERIES; i++)
+			search.apply(queries[i % QUERIES][0], queries[i % QUERIES][1]);
+
+		long threadId = Thread.currentThread().getId();
+		long before = threadBean.getThreadAllocatedBytes(threadId);
+		for (GeographicPoint[] query : queries)
+			search.apply(query[0], query[1]);
+		long bytesPerQuery = (threadBean.getThreadAllocatedBytes(threadId) - before) / QUERIES;
+		assertTrue(name + " allocated " + bytesPerQuery + " bytes per query, at most "
+				+ MAX_BYTES_PER_QUERY + " expected", bytesPerQuery <= MAX_BYTES_PER_QUERY);
+	}
+
+}
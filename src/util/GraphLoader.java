@@ -10,20 +10,25 @@ import java.io.BufferedReader;
 import java.io.FileReader;
 import java.io.IOException;
 import java.io.PrintWriter;
-import java.util.ArrayList;
-import java.util.Collection;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Set;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 import basicgraph.Graph;
 import geography.GeographicPoint;
 import geography.RoadSegment;
 import roadgraph.MapGraph;
+import roadgraph.RoadDictionary;
 
 
 public class GraphLoader 
@@ -45,32 +50,26 @@ public class GraphLoader
 	 */
 	public static void createIntersectionsFile(String roadDataFile, String intersectionsFile)
 	{
-		Collection<GeographicPoint> nodes = new HashSet<GeographicPoint>();
-        HashMap<GeographicPoint,List<LinkedList<RoadLineInfo>>> pointMap = 
-        		buildPointMapOneWay(roadDataFile);
+        PointMap pointMap = buildPointMapOneWay(roadDataFile, new RoadDictionary());
 		
         // Print the intersections to the file
-		List<GeographicPoint> intersections = findIntersections(pointMap);
-		for (GeographicPoint pt : intersections) {
-			nodes.add(pt);
-		}
+		boolean[] nodes = findIntersections(pointMap);
 
 		try {
 			PrintWriter writer = new PrintWriter(intersectionsFile, "UTF-8");
 
 			// Now we need to add the edges
 			// This is the tricky part
-			for (GeographicPoint pt : nodes) {
+			for (int id = 0; id < pointMap.size(); id++) {
+				if (!nodes[id]) {
+					continue;
+				}
 				// Trace the node to its next node, building up the points 
 				// on the edge as you go.
-				List<LinkedList<RoadLineInfo>> inAndOut = pointMap.get(pt);
-				LinkedList<RoadLineInfo> outgoing = inAndOut.get(0);
-				for (RoadLineInfo info : outgoing) {
-					HashSet<GeographicPoint> used = new HashSet<GeographicPoint>();
-					used.add(pt);
-				
+				GeographicPoint pt = pointMap.points.point(id);
+				for (int k = pointMap.firstOut[id]; k < pointMap.firstOut[id + 1]; k++) {
 					List<GeographicPoint> pointsOnEdge = 
-							findPointsOnEdge(pointMap, info, nodes);
+							findPointsOnEdge(pointMap, pointMap.outLines[k], nodes);
 					GeographicPoint end = pointsOnEdge.remove(pointsOnEdge.size()-1);
 					writer.println(pt + " " + end);
 				}
@@ -129,23 +128,71 @@ public class GraphLoader
 	 *   described.
 	 * @param map The graph to load the map into.  The graph is
 	 *   assumed to be directed.
+	 * @throws IllegalArgumentException If a line of the file is malformed, 
+	 *   before anything is added to the graph.
 	 */
 	public static void loadRoadMap(String filename, roadgraph.MapGraph map,  
 			HashMap<GeographicPoint,HashSet<RoadSegment>> segments, 
-			Set<GeographicPoint> intersectionsToLoad)
+			Set<GeographicPoint> intersectionsToLoad) throws IllegalArgumentException
 	{
-		Collection<GeographicPoint> nodes = new HashSet<GeographicPoint>();
-        HashMap<GeographicPoint,List<LinkedList<RoadLineInfo>>> pointMap = 
-        		buildPointMapOneWay(filename);
+        PointMap pointMap = buildPointMapOneWay(filename, map.getRoadDictionary());
 		
         // Add the nodes to the graph
-		List<GeographicPoint> intersections = findIntersections(pointMap);
-		for (GeographicPoint pt : intersections) {
-			map.addVertex(pt);
-			if (intersectionsToLoad != null) {
-				intersectionsToLoad.add(pt);
+		boolean[] nodes = findIntersections(pointMap);
+		for (int id = 0; id < pointMap.size(); id++) {
+			if (nodes[id]) {
+				GeographicPoint pt = pointMap.points.point(id);
+				map.addVertex(pt);
+				if (intersectionsToLoad != null) {
+					intersectionsToLoad.add(pt);
+				}
+			}
+		}
+		
+		
+		addEdgesAndSegments(nodes, pointMap, map, segments);
+	}
+
+	
+	/**	  
+	 *  Read in a file specifying a map, parsing it in parallel.
+	 *
+	 * The file is split into chunks of whole lines, which are parsed 
+	 * in parallel on pool and then added to the graph in file order, so 
+	 * the graph and segments are exactly those of 
+	 * {@link #loadRoadMap(String, MapGraph, HashMap, Set)}, and a 
+	 * malformed file fails the same way.
+	 * 
+	 * @param filename The file containing the road data, in the format 
+	 *   described.
+	 * @param map The graph to load the map into.  The graph is
+	 *   assumed to be directed.
+	 * @param segments The collection of RoadSegments that define the 
+	 *   shape of a road, or null.
+	 * @param intersectionsToLoad The set to add the intersections to, or null.
+	 * @param pool Pool the chunks are parsed on
+	 * @throws IllegalArgumentException If pool is null, or if a line of 
+	 *   the file is malformed, before anything is added to the graph.
+	 */
+	public static void loadRoadMap(String filename, roadgraph.MapGraph map,  
+			HashMap<GeographicPoint,HashSet<RoadSegment>> segments, 
+			Set<GeographicPoint> intersectionsToLoad, ForkJoinPool pool)
+			throws IllegalArgumentException
+	{
+		if (pool == null)
+			throw new IllegalArgumentException("Pool is null");
+        PointMap pointMap = buildPointMapOneWay(filename, map.getRoadDictionary(), pool);
+		
+        // Add the nodes to the graph
+		boolean[] nodes = findIntersections(pointMap);
+		for (int id = 0; id < pointMap.size(); id++) {
+			if (nodes[id]) {
+				GeographicPoint pt = pointMap.points.point(id);
+				map.addVertex(pt);
+				if (intersectionsToLoad != null) {
+					intersectionsToLoad.add(pt);
+				}
 			}
-			nodes.add(pt);
 		}
 		
 		
@@ -173,38 +220,36 @@ public class GraphLoader
 	 */
 	public static void loadRoadMap(String filename, basicgraph.Graph theGraph)
 	{
-		HashMap<GeographicPoint,List<LinkedList<RoadLineInfo>>> pointMap = 
-        		buildPointMapOneWay(filename);
+		PointMap pointMap = buildPointMapOneWay(filename, new RoadDictionary());
 		
-		HashMap<Integer,GeographicPoint> vertexMap = 
-				new HashMap<Integer,GeographicPoint>();
-		HashMap<GeographicPoint,Integer> reverseMap = 
-				new HashMap<GeographicPoint,Integer>();
+		// The vertex number of each point id, -1 if it isn't a vertex
+		int[] vertexNums = new int[pointMap.size()];
 		
         // Add the nodes to the graph
-		List<GeographicPoint> intersections = findIntersections(pointMap);
+		boolean[] nodes = findIntersections(pointMap);
 		
 		int index = 0;
-		for (GeographicPoint pt : intersections) {
-			theGraph.addVertex();
-			vertexMap.put(index, pt);
-			reverseMap.put(pt, index);
-			index++;
+		for (int id = 0; id < pointMap.size(); id++) {
+			if (nodes[id]) {
+				theGraph.addVertex();
+				vertexNums[id] = index;
+				index++;
+			}
+			else {
+				vertexNums[id] = -1;
+			}
 		}
 		
 		// Now add the edges
-		Collection<Integer> nodes = vertexMap.keySet();
-		for (Integer nodeNum : nodes) {
+		for (int id = 0; id < pointMap.size(); id++) {
+			if (!nodes[id]) {
+				continue;
+			}
 			// Trace the node to its next node, building up the points 
 			// on the edge as you go.
-			GeographicPoint pt = vertexMap.get(nodeNum);
-			List<LinkedList<RoadLineInfo>> inAndOut = pointMap.get(pt);
-			List<RoadLineInfo> infoList = inAndOut.get(0);
-			for (RoadLineInfo info : infoList) {
-				GeographicPoint end = findEndOfEdge(pointMap, info, theGraph, 
-						reverseMap);
-				Integer endNum = reverseMap.get(end);
-				theGraph.addEdge(nodeNum, endNum);
+			for (int k = pointMap.firstOut[id]; k < pointMap.firstOut[id + 1]; k++) {
+				int end = findEndOfEdge(pointMap, pointMap.outLines[k], vertexNums);
+				theGraph.addEdge(vertexNums[id], vertexNums[end]);
 			}
 		}
 	}
@@ -320,28 +365,29 @@ public class GraphLoader
 	// Once you have built the pointMap and added the Nodes, 
 	// add the edges and build the road segments if the segments
 	// map is not null.
-	private static void addEdgesAndSegments(Collection<GeographicPoint> nodes, 
-			HashMap<GeographicPoint,List<LinkedList<RoadLineInfo>>> pointMap,
+	private static void addEdgesAndSegments(boolean[] nodes, PointMap pointMap,
 			MapGraph map, 
 			HashMap<GeographicPoint,HashSet<RoadSegment>> segments)
 	{
 	
 		// Now we need to add the edges
 		// This is the tricky part
-		for (GeographicPoint pt : nodes) {
+		for (int id = 0; id < pointMap.size(); id++) {
+			if (!nodes[id]) {
+				continue;
+			}
 			// Trace the node to its next node, building up the points 
 			// on the edge as you go.
-			List<LinkedList<RoadLineInfo>> inAndOut = pointMap.get(pt);
-			LinkedList<RoadLineInfo> outgoing = inAndOut.get(0);
-			for (RoadLineInfo info : outgoing) {
-				HashSet<GeographicPoint> used = new HashSet<GeographicPoint>();
-				used.add(pt);
-				
+			GeographicPoint pt = pointMap.points.point(id);
+			for (int k = pointMap.firstOut[id]; k < pointMap.firstOut[id + 1]; k++) {
+				int line = pointMap.outLines[k];
+				String roadName = pointMap.roads.name(pointMap.roadName[line]);
+				String roadType = pointMap.roads.type(pointMap.roadType[line]);
 				List<GeographicPoint> pointsOnEdge = 
-						findPointsOnEdge(pointMap, info, nodes);
+						findPointsOnEdge(pointMap, line, nodes);
 				GeographicPoint end = pointsOnEdge.remove(pointsOnEdge.size()-1);
 				double length = getRoadLength(pt, end, pointsOnEdge);
-				map.addEdge(pt, end, info.roadName, info.roadType, length);
+				map.addEdge(pt, end, roadName, roadType, length);
 
 				// If the segments variable is not null, then we 
 				// save the road geometry
@@ -353,7 +399,7 @@ public class GraphLoader
 						segments.put(pt,segs);
 					}
 					RoadSegment seg = new RoadSegment(pt, end, pointsOnEdge, 
-							info.roadName, info.roadType, length);
+							roadName, roadType, length);
 					segs.add(seg);
 					segs = segments.get(end);
 					if (segs == null) {
@@ -383,119 +429,105 @@ public class GraphLoader
 	}
 	
 	private static List<GeographicPoint>
-	findPointsOnEdge(HashMap<GeographicPoint,List<LinkedList<RoadLineInfo>>> pointMap,
-		RoadLineInfo info, Collection<GeographicPoint> nodes) 
+	findPointsOnEdge(PointMap pointMap, int line, boolean[] nodes) 
 	{
 		List<GeographicPoint> toReturn = new LinkedList<GeographicPoint>();
-		GeographicPoint pt = info.point1;
-		GeographicPoint end = info.point2;
-		List<LinkedList<RoadLineInfo>> nextInAndOut = pointMap.get(end);
-		LinkedList<RoadLineInfo> nextLines = nextInAndOut.get(0);
-		while (!nodes.contains(end)) {
-			toReturn.add(end);
-			RoadLineInfo nextInfo = nextLines.get(0);
-			if (nextLines.size() == 2) {
-				if (nextInfo.point2.equals(pt)) {
-					nextInfo = nextLines.get(1);
-				}
-			}
-			else if (nextLines.size() != 1) {
-				System.out.println("Something went wrong building edges");
-			}
+		int pt = pointMap.start[line];
+		int end = pointMap.end[line];
+		while (!nodes[end]) {
+			toReturn.add(pointMap.points.point(end));
+			int nextLine = nextLine(pointMap, pt, end);
 			pt = end;
-			end = nextInfo.point2;
-			nextInAndOut = pointMap.get(end);
-			nextLines = nextInAndOut.get(0);
+			end = pointMap.end[nextLine];
 		}
-		toReturn.add(end);
+		toReturn.add(pointMap.points.point(end));
 		
 		return toReturn;
 	}
 
 	// Find the other end of the road segment.  Trace through the pointMap 
-	// starting from the first point in this info until you get to the second.
-	private static GeographicPoint
-	findEndOfEdge(HashMap<GeographicPoint,List<LinkedList<RoadLineInfo>>> pointMap,
-		RoadLineInfo info, basicgraph.Graph graph, 
-		HashMap<GeographicPoint, Integer> reverseMap) 
+	// starting from the first point in this line until you get to a 
+	// point with a vertex number.
+	private static int findEndOfEdge(PointMap pointMap, int line, 
+			int[] vertexNums) 
 	{
 		
-		GeographicPoint pt = info.point1;
-		GeographicPoint end = info.point2;
-		Integer endNum = reverseMap.get(end);
-		while (endNum==null) {
-			List<LinkedList<RoadLineInfo>> inAndOut = pointMap.get(end);
-			List<RoadLineInfo> nextLines = inAndOut.get(0);
-			RoadLineInfo nextInfo = nextLines.get(0);
-			if (nextLines.size() == 2) {
-				if (nextInfo.point2.equals(pt)) {
-					nextInfo = nextLines.get(1);
-				}
-			}
-			else if (nextLines.size() != 1) {
-				System.out.println("Something went wrong building edges");
-			}
+		int pt = pointMap.start[line];
+		int end = pointMap.end[line];
+		while (vertexNums[end] < 0) {
+			int nextLine = nextLine(pointMap, pt, end);
 			pt = end;
-			end = nextInfo.point2;
-			endNum = reverseMap.get(end);
+			end = pointMap.end[nextLine];
 		}
 		
 		return end;
 	}
 	
+	// Find the line out of a point which isn't an intersection, that 
+	// doesn't go back to the point before it.
+	private static int nextLine(PointMap pointMap, int pt, int end)
+	{
+		int first = pointMap.firstOut[end];
+		int numLines = pointMap.firstOut[end + 1] - first;
+		int nextLine = pointMap.outLines[first];
+		if (numLines == 2) {
+			if (pointMap.end[nextLine] == pt) {
+				nextLine = pointMap.outLines[first + 1];
+			}
+		}
+		else if (numLines != 1) {
+			System.out.println("Something went wrong building edges");
+		}
+		return nextLine;
+	}
+	
 	// Find all the intersections.  Intersections are either dead ends 
 	// (1 road in and 1 road out, which are the reverse of each other)
 	// or intersections between two different roads, or where three
 	// or more segments of the same road meet.
-	private static List<GeographicPoint> 
-	findIntersections(HashMap<GeographicPoint,List<LinkedList<RoadLineInfo>>> pointMap) {
+	// The intersections are flagged by point id.
+	private static boolean[] findIntersections(PointMap pointMap) {
 		// Now find the intersections.  These are roads that do not have
 		// Exactly 1 or 2 roads coming in and out, where the roads in
 		// match the roads out.
-		List<GeographicPoint> intersections = new LinkedList<GeographicPoint>();
-		for (GeographicPoint pt : pointMap.keySet()) {
-			List<LinkedList<RoadLineInfo>> roadsInAndOut = pointMap.get(pt);
-			LinkedList<RoadLineInfo> roadsOut = roadsInAndOut.get(0);
-			LinkedList<RoadLineInfo> roadsIn = roadsInAndOut.get(1);
+		int[] roadName = pointMap.roadName;
+		boolean[] intersections = new boolean[pointMap.size()];
+		for (int id = 0; id < pointMap.size(); id++) {
+			int firstOut = pointMap.firstOut[id];
+			int numOut = pointMap.firstOut[id + 1] - firstOut;
+			int firstIn = pointMap.firstIn[id];
+			int numIn = pointMap.firstIn[id + 1] - firstIn;
 			
 			boolean isNode = true;
 			
-			if (roadsIn.size() == 1 && roadsOut.size() == 1) {
+			if (numIn == 1 && numOut == 1) {
 				// If these are the reverse of each other, then this is
 				// and intersection (dead end)
-				if (!(roadsIn.get(0).point1.equals(roadsOut.get(0).point2) &&
-						roadsIn.get(0).point2.equals(roadsOut.get(0).point1))
-						&& roadsIn.get(0).roadName.equals(roadsOut.get(0).roadName)) {
+				int in = pointMap.inLines[firstIn];
+				int out = pointMap.outLines[firstOut];
+				if (!(pointMap.start[in] == pointMap.end[out] &&
+						pointMap.end[in] == pointMap.start[out])
+						&& roadName[in] == roadName[out]) {
 					isNode = false;
 				}
 			}
-			if (roadsIn.size() == 2 && roadsOut.size() == 2) {
+			if (numIn == 2 && numOut == 2) {
 				// If all the road segments have the same name, 
 				// And there are two pairs of reversed nodes, then 
 				// this is not an intersection because the roads pass
 				// through.
+				int in1 = pointMap.inLines[firstIn];
+				int in2 = pointMap.inLines[firstIn + 1];
+				int out1 = pointMap.outLines[firstOut];
+				int out2 = pointMap.outLines[firstOut + 1];
 			
-				String name = roadsIn.get(0).roadName;
-				boolean sameName = true;
-				for (RoadLineInfo info : roadsIn) {
-					if (!info.roadName.equals(name)) {
-						sameName = false;
-					}
-				}
-				for (RoadLineInfo info : roadsOut) {
-					if (!info.roadName.equals(name)) {
-						sameName = false;
-					}
-				}
-				
-				RoadLineInfo in1 = roadsIn.get(0);
-				RoadLineInfo in2 = roadsIn.get(1);
-				RoadLineInfo out1 = roadsOut.get(0);
-				RoadLineInfo out2 = roadsOut.get(1);
+				int name = roadName[in1];
+				boolean sameName = name == roadName[in2] && 
+						name == roadName[out1] && name == roadName[out2];
 		
 				boolean passThrough = false;
-				if ((in1.isReverse(out1) && in2.isReverse(out2)) ||
-						(in1.isReverse(out2) && in2.isReverse(out1))) {
+				if ((pointMap.isReverse(in1, out1) && pointMap.isReverse(in2, out2)) ||
+						(pointMap.isReverse(in1, out2) && pointMap.isReverse(in2, out1))) {
 					
 					passThrough = true;
 				} 
@@ -505,95 +537,70 @@ public class GraphLoader
 				} 
 
 			} 
-			if (isNode) {
-				intersections.add(pt);
-			}
+			intersections[id] = isNode;
 		}
 		return intersections;
 	}
 		
-	// Build the map from points to lists of lists of lines.
-	// The map returned is indexed by a GeographicPoint.  The values
-	// are lists of length two where each entry in the list is a list.
-	// The first list stores the outgoing roads while the second 
-	// stores the outgoing roads.
-	private static HashMap<GeographicPoint, List<LinkedList<RoadLineInfo>>>
-	buildPointMapOneWay(String filename)
+	// Build the map from point ids to the lines out of and into 
+	// each point.  The points are interned in the order they are 
+	// read from the file, and the road names and types are added
+	// to the dictionary.  A malformed line fails the whole load.
+	private static PointMap buildPointMapOneWay(String filename, RoadDictionary roads)
+			throws IllegalArgumentException
 	{
-		BufferedReader reader = null;
-        HashMap<GeographicPoint,List<LinkedList<RoadLineInfo>>> pointMap = 
-        		new HashMap<GeographicPoint,List<LinkedList<RoadLineInfo>>>();
+		RoadLines lines = new RoadLines();
 		try {
-            String nextLine;
-            reader = new BufferedReader(new FileReader(filename));
-            // Read the lines out of the file and put them in a HashMap by points
-            while ((nextLine = reader.readLine()) != null) {
-            	RoadLineInfo line = splitInputString(nextLine);
-            	addToPointsMapOneWay(line, pointMap);
-            }
-            reader.close();
+            // Parse the mapped bytes of the file, in the charset FileReader would use
+            MappedByteBuffer buf = MapFileParser.map(filename);
+            new MapFileParser(buf, 0, buf.limit(), Charset.defaultCharset())
+            		.parseAll(lines);
         } catch (IOException e) {
             System.err.println("Problem loading dictionary file: " + filename);
             e.printStackTrace();
         }
 		
-		return pointMap;
+		return buildPointMapOneWay(Collections.singletonList(lines), roads);
 	}
 
-
-	// Add the next line read from the file to the points map.
-	private static void 
-	addToPointsMapOneWay(RoadLineInfo line,
-						HashMap<GeographicPoint,List<LinkedList<RoadLineInfo>>> map)
+	// Build the same map as buildPointMapOneWay(filename, roads), parsing
+	// chunks of the file in parallel into buffers of lines.  The  
+	// buffers are then added to the map in file order.  A malformed
+	// line in any chunk fails the whole load, as it does sequentially.
+	private static PointMap buildPointMapOneWay(String filename, RoadDictionary roads, 
+			ForkJoinPool pool) throws IllegalArgumentException
 	{
-		List<LinkedList<RoadLineInfo>> pt1Infos = map.get(line.point1);
-		if (pt1Infos == null) {
-			pt1Infos = new ArrayList<LinkedList<RoadLineInfo>>();
-			pt1Infos.add(new LinkedList<RoadLineInfo>());
-			pt1Infos.add(new LinkedList<RoadLineInfo>());
-			map.put(line.point1, pt1Infos);
-		}
-		List<RoadLineInfo> outgoing = pt1Infos.get(0);
-		outgoing.add(line);
-		
-		List<LinkedList<RoadLineInfo>> pt2Infos = map.get(line.point2);
-		if (pt2Infos == null) {
-			pt2Infos = new ArrayList<LinkedList<RoadLineInfo>>();
-			pt2Infos.add(new LinkedList<RoadLineInfo>());
-			pt2Infos.add(new LinkedList<RoadLineInfo>());
-			map.put(line.point2, pt2Infos);
-		}
-		List<RoadLineInfo> incoming = pt2Infos.get(1);
-		incoming.add(line);
+		List<RoadLines> chunks = Collections.emptyList();
+		try {
+            MappedByteBuffer buf = MapFileParser.map(filename);
+            int[] bounds = MapFileParser.split(buf, 4 * pool.getParallelism());
+            chunks = pool.submit(() -> 
+            		IntStream.range(0, bounds.length - 1).parallel()
+            		.mapToObj(i -> parseChunk(buf, bounds[i], bounds[i + 1]))
+            		.collect(Collectors.toList())).join();
+        } catch (IOException e) {
+            System.err.println("Problem loading dictionary file: " + filename);
+            e.printStackTrace();
+        }
 		
+		return buildPointMapOneWay(chunks, roads);
 	}
-	
-	// Split the input string into the line information
-	private static RoadLineInfo splitInputString(String input)
-	{	
-		
-		ArrayList<String> tokens = new ArrayList<String>();
-		Pattern tokSplitter = Pattern.compile("[^\\s\"']+|\"([^\"]*)\"");
-		Matcher m = tokSplitter.matcher(input);
-		
-		while (m.find()) {
-			if (m.group(1) != null) {
-				tokens.add(m.group(1));	
-			}
-			else {
-				tokens.add(m.group());
-			}
-		}
 
-    	double lat1 = Double.parseDouble(tokens.get(0));
-        double lon1 = Double.parseDouble(tokens.get(1));
-        double lat2 = Double.parseDouble(tokens.get(2));
-        double lon2 = Double.parseDouble(tokens.get(3));
-        GeographicPoint p1 = new GeographicPoint(lat1, lon1);
-        GeographicPoint p2 = new GeographicPoint(lat2, lon2);
+	// Parse the lines of a chunk of the file
+	private static RoadLines parseChunk(ByteBuffer buf, int start, int end)
+	{
+		RoadLines lines = new RoadLines();
+		new MapFileParser(buf.duplicate(), start, end, Charset.defaultCharset())
+				.parseAll(lines);
+		return lines;
+	}
 
-        return new RoadLineInfo(p1, p2, tokens.get(4), tokens.get(5));
-		
+	// Intern the points of the lines in order and index the lines 
+	// by point.
+	private static PointMap buildPointMapOneWay(List<RoadLines> chunks, 
+			RoadDictionary roads)
+	{
+		return new PointMap(chunks, roads);
 	}
 	
 	public static void main(String[] args)
@@ -610,104 +617,88 @@ public class GraphLoader
 
 	}
 	
-}	
-	
-
-// A class to store information about the lines in the road files.
-class RoadLineInfo
-{
-	GeographicPoint point1;
-	GeographicPoint point2;
 	
-	String roadName;
-	String roadType;
-	
-	/** Create a new RoadLineInfo object to store information about the line 
-	 * read from the file
-	 * @param p1 One of the points
-	 * @param p2 The other point
-	 * @param roadName The name of the road
-	 * @param roadType The type of the road
-	 */
-	RoadLineInfo(GeographicPoint p1, GeographicPoint p2, String roadName, String roadType) 
+	// The points read from a map file, numbered by a PointInterner, and 
+	// the lines between them, numbered in file order.  The lines out of 
+	// point id are outLines[firstOut[id]..firstOut[id+1]-1] and the lines
+	// into it are inLines[firstIn[id]..firstIn[id+1]-1], both in file 
+	// order.  Roads are stored as their name id and type code in a 
+	// RoadDictionary.  The arrays are sized exactly, so the memory used
+	// only depends on the numbers of lines and points.
+	private static class PointMap
 	{
-		point1 = p1;
-		point2 = p2;
-		this.roadName = roadName;
-		this.roadType = roadType;
-	}
-	
-	
-	/** Get the other point from this roadLineInfo */
-	public GeographicPoint getOtherPoint(GeographicPoint pt)
-	{
-		if (pt == null) throw new IllegalArgumentException();
-		if (pt.equals(point1)) {
-			return point2;
-		}
-		else if (pt.equals(point2)) {
-			return point1;
+		final PointInterner points = new PointInterner();
+		final RoadDictionary roads;
+		
+		// The point ids and road of each line
+		final int[] start;
+		final int[] end;
+		final int[] roadName;
+		final byte[] roadType;
+		
+		final int[] firstOut;
+		final int[] outLines;
+		final int[] firstIn;
+		final int[] inLines;
+		
+		PointMap(List<RoadLines> chunks, RoadDictionary roads)
+		{
+			this.roads = roads;
+			int numLines = 0;
+			for (RoadLines lines : chunks) {
+				numLines += lines.size;
+			}
+			start = new int[numLines];
+			end = new int[numLines];
+			roadName = new int[numLines];
+			roadType = new byte[numLines];
+			
+			int line = 0;
+			for (RoadLines lines : chunks) {
+				for (int i = 0; i < lines.size; i++) {
+					start[line] = points.intern(lines.lat1[i], lines.lon1[i]);
+					end[line] = points.intern(lines.lat2[i], lines.lon2[i]);
+					roadName[line] = roads.nameId(lines.roadName[i]);
+					roadType[line] = roads.typeCode(lines.roadType[i]);
+					line++;
+				}
+			}
+			
+			firstOut = new int[size() + 1];
+			outLines = new int[numLines];
+			groupLines(start, firstOut, outLines);
+			firstIn = new int[size() + 1];
+			inLines = new int[numLines];
+			groupLines(end, firstIn, inLines);
 		}
-		else throw new IllegalArgumentException();
-	}
-	
-	/** Two RoadLineInfo objects are considered equal if they have the same
-	 * two points and the same roadName and roadType.
-	 */
-	public boolean equals(Object o)
-	{
-		if (o == null || !(o instanceof RoadLineInfo))
+		
+		int size() 
 		{
-			return false;
+			return points.size();
 		}
-		RoadLineInfo info = (RoadLineInfo)o;
-		return info.point1.equals(this.point1) && info.point2.equals(this.point2)  &&
-				info.roadType.equals(this.roadType) && info.roadName.equals(this.roadName);
-				
-	}
-	
-	/** Calculate the hashCode based on the hashCodes of the two points
-	 * @return The hashcode for this object.
-	 */
-	public int hashCode()
-	{
-		return point1.hashCode() + point2.hashCode();
 		
-	}
-	
-	/** Returns whether these segments are part of the same road in terms of
-	 * road name and road type.
-	 * @param info The RoadLineInfo to compare against.
-	 * @return true if these represent the same road, false otherwise.
-	 */
-	public boolean sameRoad(RoadLineInfo info)
-	{
-		return info.roadName.equals(this.roadName) && info.roadType.equals(this.roadType);
-	}
-	
-	/** Return a copy of this LineInfo in the other direction */
-	public RoadLineInfo getReverseCopy()
-	{
-		return new RoadLineInfo(this.point2, this.point1, this.roadName, this.roadType);
-	}
-	
-	/** Return true if this road is the same segment as other, but in reverse
-	 *   Otherwise return false.
-	 */
-	public boolean isReverse(RoadLineInfo other)
-	{
-		return this.point1.equals(other.point2) && this.point2.equals(other.point1) &&
-				this.roadName.equals(other.roadName) && this.roadType.equals(other.roadType);
-	}
-	
-	/** Return the string representation of this LineInfo. */
-	public String toString()
-	{
-		return this.point1 + " " + this.point2 + " " + this.roadName + " " + this.roadType;
+		// Return true if line b is line a in reverse, on the same road
+		boolean isReverse(int a, int b)
+		{
+			return start[a] == end[b] && end[a] == start[b] &&
+					roadName[a] == roadName[b] && roadType[a] == roadType[b];
+		}
 		
+		// Counting sort of the lines by the point ids in ids, keeping 
+		// lines of the same point in file order
+		private static void groupLines(int[] ids, int[] first, int[] grouped)
+		{
+			for (int id : ids) {
+				first[id + 1]++;
+			}
+			for (int id = 1; id < first.length; id++) {
+				first[id] += first[id - 1];
+			}
+			int[] next = Arrays.copyOf(first, first.length - 1);
+			for (int line = 0; line < ids.length; line++) {
+				grouped[next[ids[line]]++] = line;
+			}
+		}
 	}
 	
-	
-	
-	
 }
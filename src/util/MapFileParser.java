@@ -0,0 +1,292 @@
+package util;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Parses the lines of a road map file straight from its bytes, usually a
+ *  memory-mapped file.<br>
+ * Tokens are split like {@code MapParsingBenchmark.splitInputString}, the
+ *  line tokenizer this parser replaced in {@link GraphLoader}, splits them:
+ *  runs of characters other than whitespace and quotes, or text between
+ *  double quotes, skipping any other quote. Only ASCII bytes are whitespace
+ *  or quotes, so this holds for the bytes of any ASCII-compatible charset.
+ *  Coordinates are parsed without creating strings, exactly like
+ *  {@link Double#parseDouble(String)} does, and names and types are decoded
+ *  once per run of lines sharing them.<br>
+ * A parser reads a range of the buffer and isn't thread-safe.
+ *
+ * @author Miri Yehezkel
+ *
+ */
+final class MapFileParser {
+	/** Number of tokens on a line */
+	private static final int NUM_TOKENS = 6;
+
+	/** Most digits a long holds in any case */
+	private static final int MAX_DIGITS = 18;
+
+	/** Smallest chunk a file is split into, in bytes */
+	static final int MIN_CHUNK_SIZE = 1 << 16;
+
+	/** Powers of ten which are exact doubles */
+	private static final double[] POWERS_OF_TEN = new double[23];
+	static {
+		POWERS_OF_TEN[0] = 1;
+		for (int i = 1; i < POWERS_OF_TEN.length; i++)
+			POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10;
+	}
+
+	/** Buffer being parsed */
+	private final ByteBuffer buf;
+
+	/** End of range being parsed, exclusive */
+	private final int end;
+
+	/** Charset of names and types */
+	private final Charset charset;
+
+	/** Position of next line */
+	private int position;
+
+	/** Start and end of each token of current line */
+	private final int[] tokenStart = new int[NUM_TOKENS];
+	private final int[] tokenEnd = new int[NUM_TOKENS];
+
+	/** Bytes and decoded strings of last name and type */
+	private final Token lastName = new Token();
+	private final Token lastType = new Token();
+
+	/**
+	 * Constructs a parser of a range of lines of a buffer.
+	 * @param buf Buffer to parse
+	 * @param start Start of range, at the start of a line
+	 * @param end End of range, exclusive, at the end of a line
+	 * @param charset Charset of names and types
+	 */
+	MapFileParser(ByteBuffer buf, int start, int end, Charset charset) {
+		this.buf = buf;
+		this.position = start;
+		this.end = end;
+		this.charset = charset;
+	}
+
+	/**
+	 * Maps a file to memory.
+	 * @param filename The file to map
+	 * @return The read-only buffer of the file.
+	 * @throws IOException If the file can't be read, or is 2GB or larger.
+	 */
+	static MappedByteBuffer map(String filename) throws IOException {
+		try (FileChannel channel = FileChannel.open(Paths.get(filename), StandardOpenOption.READ)) {
+			if (channel.size() > Integer.MAX_VALUE)
+				throw new IOException("Map file is too large: " + filename);
+			return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+		}
+	}
+
+	/**
+	 * Splits a buffer into ranges of whole lines, to be parsed separately.
+	 *  Ranges end after a {@code '\n'}, which always ends a line, and are
+	 *  at least {@link #MIN_CHUNK_SIZE} bytes except for the last one.
+	 * @param buf The buffer to split
+	 * @param numChunks The number of ranges wanted
+	 * @return The boundaries of the ranges, starting at 0 and ending at the
+	 *   limit of buf; range i is from entry i to entry i + 1.
+	 */
+	static int[] split(ByteBuffer buf, int numChunks) {
+		int limit = buf.limit();
+		int chunkSize = Math.max(MIN_CHUNK_SIZE, limit / Math.max(1, numChunks));
+		int[] bounds = new int[limit / chunkSize + 2];
+		int count = 1;
+		int position = 0;
+		while (position < limit) {
+			int next = limit - position <= chunkSize ? limit : position + chunkSize;
+			while (next < limit && buf.get(next - 1) != '\n')
+				next++;
+			bounds[count++] = position = next;
+		}
+		return Arrays.copyOf(bounds, count);
+	}
+
+	/**
+	 * Parses the next line of the range, skipping blank lines, and appends
+	 *  it to lines.
+	 * @param lines The buffer of lines to append to
+	 * @return true if a line was parsed, false at the end of range.
+	 * @throws IllegalArgumentException If the line doesn't have six tokens.
+	 * @throws NumberFormatException If a coordinate isn't a number.
+	 */
+	boolean next(RoadLines lines) throws IllegalArgumentException {
+		int numTokens = 0;
+		while (numTokens == 0) {
+			if (position >= end)
+				return false;
+			numTokens = tokenizeLine();
+		}
+		if (numTokens < NUM_TOKENS)
+			throw new IllegalArgumentException("Malformed map line",
+					new Throwable("byte=" + tokenStart[0] + ", numTokens=" + numTokens));
+
+		lines.add(parseDouble(0), parseDouble(1), parseDouble(2), parseDouble(3),
+				decode(4, lastName), decode(5, lastType));
+		return true;
+	}
+
+	/**
+	 * Parses the rest of the range.
+	 * @param lines The buffer of lines to append to
+	 * @throws IllegalArgumentException If a line doesn't have six tokens.
+	 * @throws NumberFormatException If a coordinate isn't a number.
+	 */
+	void parseAll(RoadLines lines) throws IllegalArgumentException {
+		while (next(lines))
+			;
+	}
+
+	/**
+	 * Splits the line at position into tokens, and moves to the next line.
+	 * @return The number of tokens found, up to six; any more are ignored.
+	 */
+	private int tokenizeLine() {
+		int numTokens = 0;
+		int i = position;
+		while (i < end) {
+			byte b = buf.get(i);
+			if (b == '\n' || b == '\r')
+				break;
+			if (isWhitespace(b) || b == '\'') {
+				i++;
+			}
+			else if (b == '"') {
+				//quoted token, or a stray quote if it is never closed
+				int close = i + 1;
+				while (close < end && buf.get(close) != '"' && buf.get(close) != '\n'
+						&& buf.get(close) != '\r')
+					close++;
+				if (close < end && buf.get(close) == '"') {
+					if (numTokens < NUM_TOKENS) {
+						tokenStart[numTokens] = i + 1;
+						tokenEnd[numTokens++] = close;
+					}
+					i = close + 1;
+				}
+				else {
+					i++;
+				}
+			}
+			else {
+				int start = i;
+				while (i < end && !isDelimiter(buf.get(i)))
+					i++;
+				if (numTokens < NUM_TOKENS) {
+					tokenStart[numTokens] = start;
+					tokenEnd[numTokens++] = i;
+				}
+			}
+		}
+		//skip the line terminator, \r\n counting as one
+		if (i < end && buf.get(i) == '\r')
+			i++;
+		if (i < end && buf.get(i) == '\n')
+			i++;
+		position = i;
+		return numTokens;
+	}
+
+	/** Whitespace as matched by {@code \s} of a regular expression */
+	private static boolean isWhitespace(byte b) {
+		return b == ' ' || b == '\t' || b == '\n' || b == 0x0B || b == '\f' || b == '\r';
+	}
+
+	private static boolean isDelimiter(byte b) {
+		return isWhitespace(b) || b == '"' || b == '\'';
+	}
+
+	/**
+	 * Parses a token as a double. Decimals of up to 18 digits and 22
+	 *  fractional digits are the quotient of two exact doubles, which is
+	 *  rounded correctly; anything else is left to {@link Double#parseDouble(String)}.
+	 */
+	private double parseDouble(int token) {
+		int i = tokenStart[token];
+		int tokenEnd = this.tokenEnd[token];
+		boolean negative = false;
+		if (i < tokenEnd && (buf.get(i) == '-' || buf.get(i) == '+'))
+			negative = buf.get(i++) == '-';
+		long mantissa = 0;
+		int digits = 0;
+		int fractionDigits = -1;
+		for (; i < tokenEnd; i++) {
+			byte b = buf.get(i);
+			if (b >= '0' && b <= '9') {
+				mantissa = mantissa * 10 + (b - '0');
+				digits++;
+				if (fractionDigits >= 0)
+					fractionDigits++;
+			}
+			else if (b == '.' && fractionDigits < 0) {
+				fractionDigits = 0;
+			}
+			else {
+				break;
+			}
+		}
+		if (i < tokenEnd || digits == 0 || digits > MAX_DIGITS || mantissa >= 1L << 53
+				|| fractionDigits >= POWERS_OF_TEN.length)
+			return Double.parseDouble(new String(bytes(token), charset));
+		double value = fractionDigits > 0 ? mantissa / POWERS_OF_TEN[fractionDigits] : mantissa;
+		return negative ? -value : value;
+	}
+
+	/**
+	 * Decodes a token, reusing the string of the last token of its column
+	 *  when the bytes are the same.
+	 */
+	private String decode(int token, Token last) {
+		int start = tokenStart[token];
+		int length = tokenEnd[token] - start;
+		if (last.string != null && last.length == length) {
+			int i = 0;
+			while (i < length && last.bytes[i] == buf.get(start + i))
+				i++;
+			if (i == length)
+				return last.string;
+		}
+		if (last.bytes.length < length)
+			last.bytes = new byte[Math.max(length, 2 * last.bytes.length)];
+		for (int i = 0; i < length; i++)
+			last.bytes[i] = buf.get(start + i);
+		last.length = length;
+		last.string = new String(last.bytes, 0, length, charset);
+		return last.string;
+	}
+
+	private byte[] bytes(int token) {
+		byte[] bytes = new byte[tokenEnd[token] - tokenStart[token]];
+		for (int i = 0; i < bytes.length; i++)
+			bytes[i] = buf.get(tokenStart[token] + i);
+		return bytes;
+	}
+
+	/**
+	 * The bytes of a token and their decoded string.
+	 */
+	private static final class Token {
+		byte[] bytes = new byte[64];
+		int length;
+		String string;
+	}
+
+	@Override
+	public String toString() {
+		return "MapFileParser [position=" + position + ", end=" + end + ", charset=" + charset + "]";
+	}
+
+}
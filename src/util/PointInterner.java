@@ -0,0 +1,150 @@
+package util;
+
+import java.util.Arrays;
+import java.util.HashMap;
+
+import geography.GeographicPoint;
+
+/**
+ * Assigns dense int ids to the distinct points of a map file, in order of
+ *  first appearance, and keeps one {@link GeographicPoint} per id.<br>
+ * Coordinates are quantized to fixed-point tenths of micro-degrees, the
+ *  precision of map files, and the two ints are packed into a {@code long}
+ *  key of an open-addressing table. A coordinate is only quantized when the
+ *  fixed-point value converts back to exactly the same double, so points
+ *  get the same id exactly when they would be the same key of a
+ *  {@link HashMap} of {@link GeographicPoint}s; the rare points with finer
+ *  coordinates are looked up in such a map instead.<br>
+ * An interner isn't thread-safe.
+ *
+ * @author Miri Yehezkel
+ *
+ */
+final class PointInterner {
+	/** Fixed-point units per degree */
+	static final double SCALE = 1e7;
+
+	/** Key of an empty table entry, no quantized point maps to it */
+	private static final long EMPTY = Long.MIN_VALUE;
+
+	/** Initial capacity of the table, a power of 2 */
+	private static final int INITIAL_CAPACITY = 1024;
+
+	/** Keys of entries, {@code lat << 32 | lon} in fixed point, or {@link #EMPTY} */
+	private long[] keys;
+
+	/** Ids of entries */
+	private int[] ids;
+
+	/** Number of table entries */
+	private int tableSize;
+
+	/** Ids of points whose coordinates can't be quantized exactly */
+	private final HashMap<GeographicPoint, Integer> unquantized = new HashMap<>();
+
+	/** Point of each id */
+	private GeographicPoint[] points = new GeographicPoint[INITIAL_CAPACITY];
+
+	/** Number of ids */
+	private int size;
+
+	PointInterner() {
+		keys = new long[INITIAL_CAPACITY];
+		Arrays.fill(keys, EMPTY);
+		ids = new int[INITIAL_CAPACITY];
+	}
+
+	/** Get the number of distinct points */
+	int size() { return size; }
+
+	/**
+	 * Gets the point of an id.
+	 * @param id Id of a point, {@code 0..size()-1}
+	 * @return The one {@link GeographicPoint} of this id.
+	 */
+	GeographicPoint point(int id) { return points[id]; }
+
+	/**
+	 * Gets the id of a point, assigning the next id to a new point.
+	 * @param lat Latitude of the point
+	 * @param lon Longitude of the point
+	 * @return The id of the point.
+	 */
+	int intern(double lat, double lon) {
+		long fixedLat = quantize(lat);
+		long fixedLon = quantize(lon);
+		if (fixedLat == EMPTY || fixedLon == EMPTY) {
+			GeographicPoint pt = new GeographicPoint(lat, lon);
+			Integer id = unquantized.get(pt);
+			if (id == null) {
+				id = add(pt);
+				unquantized.put(pt, id);
+			}
+			return id;
+		}
+		long key = fixedLat << 32 | fixedLon & 0xFFFFFFFFL;
+		int i = slot(key);
+		while (keys[i] != EMPTY) {
+			if (keys[i] == key)
+				return ids[i];
+			i = (i + 1) & (keys.length - 1);
+		}
+		int id = add(new GeographicPoint(lat, lon));
+		keys[i] = key;
+		ids[i] = id;
+		if (++tableSize * 2 > keys.length)
+			grow();
+		return id;
+	}
+
+	/**
+	 * Quantizes a coordinate.
+	 * @return The fixed-point coordinate, or {@link #EMPTY} if it doesn't
+	 *   convert back exactly or doesn't fit an int.
+	 */
+	private static long quantize(double coordinate) {
+		long fixed = Math.round(coordinate * SCALE);
+		if (fixed <= Integer.MIN_VALUE || fixed > Integer.MAX_VALUE || fixed / SCALE != coordinate)
+			return EMPTY;
+		//-0.0 equals 0.0 as a point coordinate, but is hashed differently
+		if (fixed == 0 && Double.doubleToRawLongBits(coordinate) != 0)
+			return EMPTY;
+		return fixed;
+	}
+
+	private int add(GeographicPoint pt) {
+		if (size == points.length)
+			points = Arrays.copyOf(points, 2 * size);
+		points[size] = pt;
+		return size++;
+	}
+
+	/** Doubles the capacity of the table, keeping it at most half full */
+	private void grow() {
+		long[] oldKeys = keys;
+		int[] oldIds = ids;
+		keys = new long[oldKeys.length * 2];
+		Arrays.fill(keys, EMPTY);
+		ids = new int[keys.length];
+		for (int j = 0; j < oldKeys.length; j++) {
+			if (oldKeys[j] == EMPTY)
+				continue;
+			int i = slot(oldKeys[j]);
+			while (keys[i] != EMPTY)
+				i = (i + 1) & (keys.length - 1);
+			keys[i] = oldKeys[j];
+			ids[i] = oldIds[j];
+		}
+	}
+
+	private int slot(long key) {
+		long h = key * 0x9E3779B97F4A7C15L;
+		return (int) (h >>> 32) & (keys.length - 1);
+	}
+
+	@Override
+	public String toString() {
+		return "PointInterner [size=" + size + ", unquantized=" + unquantized.size() + "]";
+	}
+
+}
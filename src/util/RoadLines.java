@@ -0,0 +1,67 @@
+package util;
+
+import java.util.Arrays;
+
+/**
+ * A growable buffer of the lines of a map file, in parallel arrays, so
+ *  parsing allocates no objects per line.<br>
+ * Line {@code i} goes from {@code (lat1[i], lon1[i])} to
+ *  {@code (lat2[i], lon2[i])} on road {@code roadName[i]} of type
+ *  {@code roadType[i]}.
+ *
+ * @author Miri Yehezkel
+ *
+ */
+final class RoadLines {
+	/** Initial capacity of the buffer */
+	private static final int INITIAL_CAPACITY = 256;
+
+	double[] lat1 = new double[INITIAL_CAPACITY];
+	double[] lon1 = new double[INITIAL_CAPACITY];
+	double[] lat2 = new double[INITIAL_CAPACITY];
+	double[] lon2 = new double[INITIAL_CAPACITY];
+	String[] roadName = new String[INITIAL_CAPACITY];
+	String[] roadType = new String[INITIAL_CAPACITY];
+
+	/** Number of lines */
+	int size;
+
+	/**
+	 * Appends a line.
+	 */
+	void add(double lat1, double lon1, double lat2, double lon2, String roadName,
+			String roadType) {
+		if (size == this.lat1.length)
+			grow();
+		this.lat1[size] = lat1;
+		this.lon1[size] = lon1;
+		this.lat2[size] = lat2;
+		this.lon2[size] = lon2;
+		this.roadName[size] = roadName;
+		this.roadType[size] = roadType;
+		size++;
+	}
+
+	/** Removes all lines, keeping the capacity */
+	void clear() {
+		Arrays.fill(roadName, 0, size, null);
+		Arrays.fill(roadType, 0, size, null);
+		size = 0;
+	}
+
+	private void grow() {
+		int capacity = 2 * lat1.length;
+		lat1 = Arrays.copyOf(lat1, capacity);
+		lon1 = Arrays.copyOf(lon1, capacity);
+		lat2 = Arrays.copyOf(lat2, capacity);
+		lon2 = Arrays.copyOf(lon2, capacity);
+		roadName = Arrays.copyOf(roadName, capacity);
+		roadType = Arrays.copyOf(roadType, capacity);
+	}
+
+	@Override
+	public String toString() {
+		return "RoadLines [size=" + size + "]";
+	}
+
+}